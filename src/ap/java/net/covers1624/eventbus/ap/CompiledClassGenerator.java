@@ -0,0 +1,400 @@
+package net.covers1624.eventbus.ap;
+
+import net.covers1624.eventbus.Event;
+import net.covers1624.eventbus.EventFactory;
+import net.covers1624.eventbus.ReuseEventInstance;
+import net.covers1624.eventbus.internal.CompiledClasses;
+import net.covers1624.eventbus.internal.EventFactoryDecorator;
+import net.covers1624.eventbus.internal.EventFactoryInternal;
+import net.covers1624.eventbus.internal.EventListenerList;
+import net.covers1624.quack.collection.FastStream;
+import net.covers1624.quack.util.SneakyUtils;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates the source of event classes and factory decorators at compile time, equivalent to
+ * those generated at runtime by {@code EventClassGenerator} and {@link EventFactoryDecorator}.
+ * <p>
+ * These are generated for each {@link Event} with an enclosed {@link EventFactory}. Anything which
+ * can't be mirrored exactly, such as fields typed by a type variable, is skipped and left to runtime
+ * generation. The runtime verifies each compiled class before using it, see {@link CompiledClasses}.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+public class CompiledClassGenerator {
+
+    private final ProcessingEnvironment processingEnv;
+    private final Elements elements;
+    private final Types types;
+    private final TypeMirror eventType;
+    private final TypeMirror eventFactoryType;
+
+    private final Set<String> processed = new HashSet<>();
+
+    public CompiledClassGenerator(ProcessingEnvironment processingEnv) {
+        this.processingEnv = processingEnv;
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        eventType = elements.getTypeElement(Event.class.getName()).asType();
+        eventFactoryType = elements.getTypeElement(EventFactory.class.getName()).asType();
+    }
+
+    public void generate(Iterable<? extends Element> elements) {
+        for (Element element : elements) {
+            if (!element.getKind().isInterface() && !element.getKind().isClass()) continue;
+            if (element.getKind() == ElementKind.INTERFACE) {
+                generate((TypeElement) element);
+            }
+            generate(element.getEnclosedElements());
+        }
+    }
+
+    private void generate(TypeElement event) {
+        if (!isSubtype(event, eventType) || !isAccessible(event)) return;
+
+        List<TypeElement> factories = FastStream.of(ElementFilter.typesIn(event.getEnclosedElements()))
+                .filter(e -> isSubtype(e, eventFactoryType))
+                .toList();
+        if (factories.size() != 1) return;
+        TypeElement factory = factories.get(0);
+
+        if (!processed.add(elements.getBinaryName(event).toString())) return;
+        try {
+            Map<String, Field> fields = getFields(event);
+            if (fields != null) {
+                boolean reusable = event.getAnnotation(ReuseEventInstance.class) != null || factory.getAnnotation(ReuseEventInstance.class) != null;
+                writeEventClass(event, fields, reusable);
+            }
+            ExecutableElement method = getFactoryMethod(factory);
+            if (method != null) {
+                writeDecorator(factory, method);
+            }
+        } catch (IOException ex) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Unable to generate compiled classes for " + event + ". " + ex, event);
+        } catch (IllegalArgumentException ex) {
+            // Some type we can't name, left to runtime generation.
+        }
+    }
+
+    // region Event classes
+
+    /**
+     * Mirrors {@code EventFieldExtractor}, returning {@code null} for anything
+     * which would be rejected at runtime, or can't be generated at compile time.
+     */
+    @Nullable
+    private Map<String, Field> getFields(TypeElement clazz) {
+        Map<String, Field> allFields = new LinkedHashMap<>();
+        for (TypeMirror iFace : clazz.getInterfaces()) {
+            TypeElement element = (TypeElement) types.asElement(iFace);
+            if (!isSubtype(element, eventType)) continue;
+
+            Map<String, Field> iFaceFields = getFields(element);
+            if (iFaceFields == null) return null;
+            for (Field field : iFaceFields.values()) {
+                Field existing = allFields.get(field.name);
+                if (existing != null && !existing.getter.equals(field.getter)) return null;
+                allFields.put(field.name, field);
+            }
+        }
+
+        Map<String, Field> found = new LinkedHashMap<>();
+        for (ExecutableElement method : ElementFilter.methodsIn(clazz.getEnclosedElements())) {
+            Set<Modifier> modifiers = method.getModifiers();
+            if (modifiers.contains(Modifier.STATIC) || modifiers.contains(Modifier.PRIVATE)) continue;
+            if (!method.getTypeParameters().isEmpty()) return null;
+
+            String name = method.getSimpleName().toString();
+            TypeMirror type;
+            Field field;
+            if (name.startsWith("get") || name.startsWith("is")) {
+                if (!method.getParameters().isEmpty()) return null;
+
+                field = found.computeIfAbsent(uncapitalize(name.substring(name.startsWith("is") ? 2 : 3)), Field::new);
+                if (field.getter != null) return null;
+                field.getter = method;
+                type = method.getReturnType();
+            } else if (name.startsWith("set")) {
+                if (method.getReturnType().getKind() != TypeKind.VOID || method.getParameters().size() != 1) return null;
+
+                field = found.computeIfAbsent(uncapitalize(name.substring(3)), Field::new);
+                if (field.setter != null) return null;
+                field.setter = method;
+                type = method.getParameters().get(0).asType();
+            } else {
+                return null;
+            }
+            if (hasTypeVariable(type)) return null;
+            if (field.type != null && !types.isSameType(field.type, type)) return null;
+            field.type = type;
+        }
+
+        // Sorted, same as the runtime.
+        Map<String, Field> fields = new TreeMap<>();
+        for (Field field : found.values()) {
+            if (field.getter == null) return null;
+            fields.put(field.name, field);
+        }
+        allFields.putAll(fields);
+        return allFields;
+    }
+
+    private void writeEventClass(TypeElement event, Map<String, Field> fields, boolean reusable) throws IOException {
+        String cName = generatedName(event, reusable ? CompiledClasses.REUSABLE_EVENT_SUFFIX : CompiledClasses.EVENT_SUFFIX);
+        List<Field> fieldList = new ArrayList<>(fields.values());
+        String params = FastStream.of(fieldList)
+                .map(e -> typeName(e.type) + " p" + fieldList.indexOf(e))
+                .join(", ");
+
+        try (PrintWriter pw = openSource(event, cName)) {
+            pw.println("public final class " + simpleName(cName) + " implements " + typeName(event.asType()) + " {");
+            pw.println();
+            pw.println("    public static final String " + CompiledClasses.FIELDS_FIELD + " = \"" + String.join(",", fields.keySet()) + "\";");
+            pw.println();
+            for (Field field : fieldList) {
+                // Reusable instances have their fields reset for each fire, so they can't be final.
+                String modifiers = field.setter == null && !reusable ? "private final " : "private ";
+                pw.println("    " + modifiers + typeName(field.type) + " $" + field.name + ";");
+            }
+            if (reusable) {
+                pw.println("    private boolean $$inUse;");
+                pw.println();
+                pw.println("    public " + simpleName(cName) + "() {");
+                pw.println("    }");
+                pw.println();
+                pw.println("    public final boolean " + CompiledClasses.ACQUIRE + "(" + params + ") {");
+                pw.println("        if ($$inUse) return false;");
+                pw.println("        $$inUse = true;");
+                writeFieldAssignments(pw, fieldList);
+                pw.println("        return true;");
+                pw.println("    }");
+                pw.println();
+                pw.println("    public final void " + CompiledClasses.RELEASE + "() {");
+                pw.println("        $$inUse = false;");
+                pw.println("    }");
+            } else {
+                pw.println();
+                pw.println("    public " + simpleName(cName) + "(" + params + ") {");
+                writeFieldAssignments(pw, fieldList);
+                pw.println("    }");
+            }
+            for (Field field : fieldList) {
+                ExecutableElement getter = field.getter;
+                pw.println();
+                pw.println("    @Override");
+                pw.println("    public final " + typeName(field.type) + " " + getter.getSimpleName() + "() {");
+                pw.println("        return $" + field.name + ";");
+                pw.println("    }");
+                if (field.setter != null) {
+                    pw.println();
+                    pw.println("    @Override");
+                    pw.println("    public final void " + field.setter.getSimpleName() + "(" + typeName(field.type) + " value) {");
+                    pw.println("        $" + field.name + " = value;");
+                    pw.println("    }");
+                }
+            }
+            pw.println("}");
+        }
+    }
+
+    private static void writeFieldAssignments(PrintWriter pw, List<Field> fields) {
+        for (int i = 0; i < fields.size(); i++) {
+            pw.println("        $" + fields.get(i).name + " = p" + i + ";");
+        }
+    }
+    // endregion
+
+    // region Decorators
+
+    @Nullable
+    private ExecutableElement getFactoryMethod(TypeElement factory) {
+        if (!isAccessible(factory) || factory.getModifiers().contains(Modifier.FINAL) || !factory.getTypeParameters().isEmpty()) return null;
+
+        // The decorator calls the factory's no-args constructor.
+        List<ExecutableElement> ctors = ElementFilter.constructorsIn(factory.getEnclosedElements());
+        if (!ctors.isEmpty() && FastStream.of(ctors).noneMatch(e -> e.getParameters().isEmpty() && !e.getModifiers().contains(Modifier.PRIVATE))) {
+            return null;
+        }
+
+        // The runtime allows the abstract method to be inherited, we only handle the common case.
+        List<ExecutableElement> methods = FastStream.of(ElementFilter.methodsIn(factory.getEnclosedElements()))
+                .filter(e -> e.getModifiers().contains(Modifier.ABSTRACT))
+                .toList();
+        if (methods.size() != 1) return null;
+        ExecutableElement method = methods.get(0);
+        if (!method.getModifiers().contains(Modifier.PUBLIC) || !method.getTypeParameters().isEmpty()) return null;
+        return method;
+    }
+
+    private void writeDecorator(TypeElement factory, ExecutableElement method) throws IOException {
+        String cName = generatedName(factory, CompiledClasses.DECORATOR_SUFFIX);
+        String factoryName = typeName(factory.asType());
+        String name = method.getSimpleName().toString();
+        boolean isVoid = method.getReturnType().getKind() == TypeKind.VOID;
+        String returnType = typeName(method.getReturnType());
+
+        List<String> args = new ArrayList<>();
+        List<String> params = new ArrayList<>();
+        for (VariableElement param : method.getParameters()) {
+            args.add("p" + args.size());
+            params.add(typeName(param.asType()) + " p" + params.size());
+        }
+        String throwsClause = method.getThrownTypes().isEmpty() ? "" : " throws " + FastStream.of(method.getThrownTypes()).map(this::typeName).join(", ");
+        String signature = "(" + String.join(", ", params) + ")" + throwsClause;
+
+        List<String> invokerArgs = new ArrayList<>();
+        invokerArgs.add("(" + factoryName + ") this");
+        invokerArgs.addAll(args);
+
+        try (PrintWriter pw = openSource(factory, cName)) {
+            pw.println("public final class " + simpleName(cName) + " extends " + factoryName + " implements " + EventFactoryInternal.class.getName() + " {");
+            pw.println();
+            pw.println("    private final " + EventListenerList.class.getName() + " $$event;");
+            // An instance field, the class is shared by every factory constructed for the event.
+            pw.println("    private final " + MethodHandle.class.getName() + " $$invoker;");
+            pw.println("    private " + factoryName + " $$factory;");
+            pw.println("    private volatile boolean $$dirty;");
+            pw.println();
+            pw.println("    public " + simpleName(cName) + "(" + EventListenerList.class.getName() + " event, " + MethodHandle.class.getName() + " invoker) {");
+            pw.println("        $$event = event;");
+            pw.println("        $$invoker = invoker;");
+            pw.println("        $$dirty = true;");
+            pw.println("    }");
+            pw.println();
+            pw.println("    @Override");
+            pw.println("    public final void setFactory(Object factory) {");
+            pw.println("        $$factory = (" + factoryName + ") factory;");
+            pw.println("        $$dirty = false;");
+            pw.println("    }");
+            pw.println();
+            pw.println("    @Override");
+            pw.println("    public final void setDirty() {");
+            pw.println("        $$dirty = true;");
+            pw.println("    }");
+            pw.println();
+            pw.println("    @Override");
+            pw.println("    public final boolean isDirty() {");
+            pw.println("        return $$dirty;");
+            pw.println("    }");
+            pw.println();
+            pw.println("    @Override");
+            pw.println("    public final " + returnType + " " + name + signature + " {");
+            pw.println("        try {");
+            // The cast on the invokeExact result is required, it forms part of the call's descriptor.
+            String invoke = "$$invoker.invokeExact(" + String.join(", ", invokerArgs) + ");";
+            pw.println("            " + (isVoid ? invoke : "return (" + returnType + ") " + invoke));
+            pw.println("        } catch (Throwable ex) {");
+            pw.println("            throw " + SneakyUtils.class.getName() + ".<RuntimeException>throwUnchecked(ex);");
+            pw.println("        }");
+            pw.println("    }");
+            pw.println();
+            pw.println("    public final " + returnType + " " + name + "$checked" + signature + " {");
+            pw.println("        if ($$dirty) {");
+            pw.println("            $$event.rebuildEventList();");
+            pw.println("        }");
+            pw.println("        " + (isVoid ? "" : "return ") + "$$factory." + name + "(" + String.join(", ", args) + ");");
+            pw.println("    }");
+            pw.println("}");
+        }
+    }
+    // endregion
+
+    private PrintWriter openSource(TypeElement owner, String cName) throws IOException {
+        JavaFileObject file = processingEnv.getFiler().createSourceFile(cName, owner);
+        PrintWriter pw = new PrintWriter(file.openWriter());
+        int lastDot = cName.lastIndexOf('.');
+        if (lastDot != -1) {
+            pw.println("package " + cName.substring(0, lastDot) + ";");
+            pw.println();
+        }
+        pw.println("/**");
+        pw.println(" * Generated by the EventBus annotation processor, from {@link " + owner.getQualifiedName() + "}.");
+        pw.println(" */");
+        pw.println("@SuppressWarnings ({ \"rawtypes\", \"unchecked\" })");
+        return pw;
+    }
+
+    // Named after the binary name of the owner, so they are a top level class next to it.
+    private String generatedName(TypeElement owner, String suffix) {
+        return elements.getBinaryName(owner) + suffix;
+    }
+
+    private static String simpleName(String cName) {
+        return cName.substring(cName.lastIndexOf('.') + 1);
+    }
+
+    // The erased source name of the given type. Erased, as the runtime only deals with erased types.
+    private String typeName(TypeMirror type) {
+        TypeMirror erased = types.erasure(type);
+        switch (erased.getKind()) {
+            case ARRAY:
+                return typeName(((ArrayType) erased).getComponentType()) + "[]";
+            case DECLARED:
+                return ((TypeElement) ((DeclaredType) erased).asElement()).getQualifiedName().toString();
+            default:
+                if (!erased.getKind().isPrimitive() && erased.getKind() != TypeKind.VOID) {
+                    throw new IllegalArgumentException("Unhandled type kind: " + erased.getKind());
+                }
+                return erased.getKind().name().toLowerCase();
+        }
+    }
+
+    private static boolean hasTypeVariable(TypeMirror type) {
+        if (type.getKind() == TypeKind.ARRAY) return hasTypeVariable(((ArrayType) type).getComponentType());
+        return type.getKind() == TypeKind.TYPEVAR;
+    }
+
+    private boolean isSubtype(TypeElement element, TypeMirror type) {
+        return types.isSubtype(types.erasure(element.asType()), types.erasure(type));
+    }
+
+    // If the generated classes, in the same package, are able to reference the element.
+    private static boolean isAccessible(Element element) {
+        for (Element e = element; e != null && e.getKind() != ElementKind.PACKAGE; e = e.getEnclosingElement()) {
+            if (e.getModifiers().contains(Modifier.PRIVATE)) return false;
+        }
+        return true;
+    }
+
+    private static String uncapitalize(String s) {
+        if (s.isEmpty()) return s;
+        return Character.toLowerCase(s.charAt(0)) + s.substring(1);
+    }
+
+    private static class Field {
+
+        public final String name;
+        @Nullable
+        public ExecutableElement getter;
+        @Nullable
+        public ExecutableElement setter;
+        @Nullable
+        public TypeMirror type;
+
+        public Field(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -3,7 +3,9 @@ package net.covers1624.eventbus.ap;
 import net.covers1624.eventbus.EventFactory;
 import net.covers1624.eventbus.EventListener;
 import net.covers1624.eventbus.SubscribeEvent;
+import net.covers1624.eventbus.internal.ParamIndex;
 import net.covers1624.quack.collection.FastStream;
+import org.jetbrains.annotations.Nullable;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
@@ -17,6 +19,7 @@ import javax.tools.Diagnostic;
 import javax.tools.FileObject;
 import javax.tools.StandardLocation;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
@@ -29,13 +32,28 @@ import java.util.Set;
  * Created by covers1624 on 12/5/23.
  */
 @SupportedAnnotationTypes ("*")
+@SupportedOptions (EventBusParameterProcessor.COMPILE_CLASSES)
 public class EventBusParameterProcessor extends AbstractProcessor {
 
+    /**
+     * Processor option, set to {@code false} to disable generating event classes and factory decorators
+     * at compile time. See {@link CompiledClassGenerator}.
+     */
+    public static final String COMPILE_CLASSES = "eventbus.compileClasses";
+
     private final Map<String, Map<String, List<String>>> params = new LinkedHashMap<>();
 
+    @Nullable
+    private CompiledClassGenerator classGenerator;
+    private SubscriberIndexGenerator subscriberIndex;
+
     @Override
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
+        subscriberIndex = new SubscriberIndexGenerator(processingEnv);
+        if (!"false".equals(processingEnv.getOptions().get(COMPILE_CLASSES))) {
+            classGenerator = new CompiledClassGenerator(processingEnv);
+        }
     }
 
     @Override
@@ -47,33 +65,61 @@ public class EventBusParameterProcessor extends AbstractProcessor {
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
         if (!env.processingOver()) {
             extractSubscribeEvent(env);
+            subscriberIndex.collect(env);
             extractFromClass(env.getRootElements(), EventFactory.class);
             extractFromClass(env.getRootElements(), EventListener.class);
+            if (classGenerator != null) {
+                classGenerator.generate(env.getRootElements());
+            }
             return false;
         }
 
         try {
             Filer filer = processingEnv.getFiler();
-            for (Map.Entry<String, Map<String, List<String>>> entry : params.entrySet()) {
-                String clazz = entry.getKey();
-                Map<String, List<String>> methods = entry.getValue();
-                if (methods.isEmpty()) continue;
-
-                FileObject fileObject = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/eventbus/" + clazz.replace("/", ".") + ".params");
-                try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(fileObject.openOutputStream(), StandardCharsets.UTF_8))) {
-                    for (Map.Entry<String, List<String>> methodEntry : methods.entrySet()) {
-                        pw.print(methodEntry.getKey());
-                        pw.print(" ");
-                        pw.println(String.join(",", methodEntry.getValue()));
-                    }
-                }
-            }
+            subscriberIndex.write(filer);
+            writeParamIndex(filer);
+            writeClassParams(filer);
         } catch (IOException ex) {
             processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "FATAL ERROR: Unable to create resource. " + ex);
         }
         return false;
     }
 
+    // A single index for the entire compilation, the runtime loads every index once, instead of a resource per class.
+    private void writeParamIndex(Filer filer) throws IOException {
+        Map<String, Map<String, List<String>>> index = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, List<String>>> entry : params.entrySet()) {
+            if (entry.getValue().isEmpty()) continue;
+
+            index.put(entry.getKey().replace("/", "."), entry.getValue());
+        }
+        if (index.isEmpty()) return;
+
+        FileObject fileObject = filer.createResource(StandardLocation.CLASS_OUTPUT, "", ParamIndex.RESOURCE.substring(1));
+        try (OutputStream os = fileObject.openOutputStream()) {
+            ParamIndex.write(os, index);
+        }
+    }
+
+    // The per-class files, read for any class not in an index. Environments which only implement getResourceStream
+    // see a single index, these keep every other jar resolving without falling back to reflection or bytecode.
+    private void writeClassParams(Filer filer) throws IOException {
+        for (Map.Entry<String, Map<String, List<String>>> entry : params.entrySet()) {
+            String clazz = entry.getKey();
+            Map<String, List<String>> methods = entry.getValue();
+            if (methods.isEmpty()) continue;
+
+            FileObject fileObject = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/eventbus/" + clazz.replace("/", ".") + ".params");
+            try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(fileObject.openOutputStream(), StandardCharsets.UTF_8))) {
+                for (Map.Entry<String, List<String>> methodEntry : methods.entrySet()) {
+                    pw.print(methodEntry.getKey());
+                    pw.print(" ");
+                    pw.println(String.join(",", methodEntry.getValue()));
+                }
+            }
+        }
+    }
+
     private void extractSubscribeEvent(RoundEnvironment env) {
         for (Element element : env.getElementsAnnotatedWith(SubscribeEvent.class)) {
             extractFromElement(element);
@@ -0,0 +1,201 @@
+package net.covers1624.eventbus.ap;
+
+import net.covers1624.eventbus.Event;
+import net.covers1624.eventbus.EventPriority;
+import net.covers1624.eventbus.ParameterNames;
+import net.covers1624.eventbus.SubscribeEvent;
+import net.covers1624.quack.collection.FastStream;
+import org.jetbrains.annotations.Nullable;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Builds an index of the {@link SubscribeEvent} methods declared by each class, read by {@code SubscriberLookup}
+ * in place of scanning the class's methods at runtime.
+ * <p>
+ * Each line describes a single method:
+ * <pre>
+ * &lt;name&gt;&lt;desc&gt; &lt;static|instance&gt; &lt;consumer|fast&gt; &lt;event&gt; &lt;priority&gt; &lt;receiveCanceled&gt; &lt;parallel&gt; [params]
+ * </pre>
+ * Classes with any subscriber the runtime would reject, or report an error for, are not indexed.
+ * These are left to the runtime to scan, and report.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+public class SubscriberIndexGenerator {
+
+    private static final Set<Modifier> ACCESS = EnumSet.of(Modifier.PUBLIC, Modifier.PROTECTED, Modifier.PRIVATE);
+
+    private final Elements elements;
+    private final Types types;
+    private final TypeMirror eventType;
+
+    private final Map<String, List<String>> index = new LinkedHashMap<>();
+    private final Set<String> invalid = new HashSet<>();
+
+    public SubscriberIndexGenerator(ProcessingEnvironment processingEnv) {
+        elements = processingEnv.getElementUtils();
+        types = processingEnv.getTypeUtils();
+        eventType = types.erasure(elements.getTypeElement(Event.class.getName()).asType());
+    }
+
+    public void collect(RoundEnvironment env) {
+        for (Element element : env.getElementsAnnotatedWith(SubscribeEvent.class)) {
+            if (element.getKind() != ElementKind.METHOD) continue;
+
+            ExecutableElement method = (ExecutableElement) element;
+            // Methods with any other modifiers are never registered, they are omitted from the index entirely.
+            // Non-public methods are indexed, they are registered when a lookup is provided.
+            Set<Modifier> modifiers = EnumSet.noneOf(Modifier.class);
+            modifiers.addAll(method.getModifiers());
+            modifiers.removeAll(ACCESS);
+            if (!modifiers.isEmpty() && !modifiers.equals(EnumSet.of(Modifier.STATIC))) continue;
+
+            String owner = elements.getBinaryName((TypeElement) method.getEnclosingElement()).toString();
+            String line;
+            try {
+                line = buildLine(method);
+            } catch (UnsupportedOperationException ex) {
+                // Some type we can't describe.
+                line = null;
+            }
+            if (line == null) {
+                invalid.add(owner);
+            } else {
+                index.computeIfAbsent(owner, e -> new ArrayList<>()).add(line);
+            }
+        }
+    }
+
+    public void write(Filer filer) throws IOException {
+        for (Map.Entry<String, List<String>> entry : index.entrySet()) {
+            if (invalid.contains(entry.getKey())) continue;
+
+            FileObject fileObject = filer.createResource(StandardLocation.CLASS_OUTPUT, "", "META-INF/eventbus/" + entry.getKey() + ".subscribers");
+            try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(fileObject.openOutputStream(), StandardCharsets.UTF_8))) {
+                for (String line : entry.getValue()) {
+                    pw.println(line);
+                }
+            }
+        }
+    }
+
+    @Nullable
+    private String buildLine(ExecutableElement method) {
+        AnnotationMirror annotation = getAnnotation(method, SubscribeEvent.class);
+        if (annotation == null) return null;
+
+        List<TypeMirror> events = new ArrayList<>();
+        String priority = EventPriority.NORMAL.name();
+        boolean receiveCanceled = false;
+        boolean parallel = false;
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : elements.getElementValuesWithDefaults(annotation).entrySet()) {
+            Object value = entry.getValue().getValue();
+            switch (entry.getKey().getSimpleName().toString()) {
+                case "value":
+                    for (Object e : (List<?>) value) {
+                        events.add((TypeMirror) ((AnnotationValue) e).getValue());
+                    }
+                    break;
+                case "priority":
+                    priority = ((VariableElement) value).getSimpleName().toString();
+                    break;
+                case "receiveCanceled":
+                    receiveCanceled = (Boolean) value;
+                    break;
+                case "parallel":
+                    parallel = (Boolean) value;
+                    break;
+            }
+        }
+        if (events.size() > 1) return null;
+
+        List<? extends VariableElement> params = method.getParameters();
+        TypeMirror annotationEvent = events.isEmpty() ? null : events.get(0);
+        TypeMirror paramEvent = params.size() == 1 && isEvent(params.get(0).asType()) ? params.get(0).asType() : null;
+
+        String kind;
+        TypeMirror event;
+        String paramNames = null;
+        if (paramEvent != null) {
+            if (annotationEvent != null && !types.isSameType(types.erasure(paramEvent), types.erasure(annotationEvent))) return null;
+            kind = "consumer";
+            event = paramEvent;
+        } else if (annotationEvent != null) {
+            kind = "fast";
+            event = annotationEvent;
+            List<String> names = getParamNames(method);
+            if (names == null) return null;
+            paramNames = String.join(",", names);
+        } else {
+            return null;
+        }
+        if (event.getKind() != TypeKind.DECLARED) return null;
+
+        StringBuilder line = new StringBuilder()
+                .append(method.getSimpleName()).append(getMethodDesc(method))
+                .append(' ').append(method.getModifiers().contains(Modifier.STATIC) ? "static" : "instance")
+                .append(' ').append(kind)
+                .append(' ').append(elements.getBinaryName((TypeElement) types.asElement(event)))
+                .append(' ').append(priority)
+                .append(' ').append(receiveCanceled)
+                .append(' ').append(parallel);
+        if (paramNames != null && !paramNames.isEmpty()) {
+            line.append(' ').append(paramNames);
+        }
+        return line.toString();
+    }
+
+    // Same as the runtime, ParameterNames takes priority over the declared names.
+    @Nullable
+    private List<String> getParamNames(ExecutableElement method) {
+        AnnotationMirror annotation = getAnnotation(method, ParameterNames.class);
+        if (annotation == null) {
+            return FastStream.of(method.getParameters()).map(e -> e.getSimpleName().toString()).toList();
+        }
+        List<String> names = new ArrayList<>();
+        for (AnnotationValue value : elements.getElementValuesWithDefaults(annotation).values()) {
+            for (Object e : (List<?>) value.getValue()) {
+                names.add((String) ((AnnotationValue) e).getValue());
+            }
+        }
+        return names.size() == method.getParameters().size() ? names : null;
+    }
+
+    private boolean isEvent(TypeMirror type) {
+        return type.getKind() == TypeKind.DECLARED && types.isSubtype(types.erasure(type), eventType);
+    }
+
+    private String getMethodDesc(ExecutableElement element) {
+        return "("
+                + FastStream.of(element.getParameters())
+                .map(e -> Utils.toInternalType(types.erasure(e.asType())))
+                .join("")
+                + ")"
+                + Utils.toInternalType(types.erasure(element.getReturnType()));
+    }
+
+    @Nullable
+    private static AnnotationMirror getAnnotation(Element element, Class<?> annotation) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().contentEquals(annotation.getName())) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+}
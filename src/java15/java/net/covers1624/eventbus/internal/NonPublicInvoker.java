@@ -0,0 +1,171 @@
+package net.covers1624.eventbus.internal;
+
+import net.covers1624.eventbus.Environment;
+import net.covers1624.eventbus.SubscribeEvent;
+import net.covers1624.quack.asm.ClassBuilder;
+import net.covers1624.quack.asm.ClassBuilder.FieldBuilder;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.invoke.MethodHandles.Lookup.ClassOption.NESTMATE;
+import static net.covers1624.eventbus.internal.Utils.asmName;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Calls a non-public {@link SubscribeEvent} method, registered with a {@link MethodHandles.Lookup}.
+ * <p>
+ * Dispatchers call {@link #method} on {@link #instance}, the same as any other listener.
+ * <p>
+ * Java 15+ version. The instance is a hidden class, nestmate of the method's class, calling the method directly.
+ * It implements a public interface defined alongside the method's class, which the dispatcher calls.
+ * Interfaces are shared by all methods of the class with the same signature, hidden classes are shared by
+ * all registered instances of the method. Interface names are derived from the signature, not the order of
+ * registration, keeping the class cache keys of dispatchers calling them stable between runs.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public final class NonPublicInvoker {
+
+    private static final Type OBJECT_TYPE = Type.getType(Object.class);
+
+    // The interfaces defined for each class, keyed by method descriptor.
+    private static final ClassValue<Map<String, Class<?>>> INTERFACES = new ClassValue<>() {
+        @Override
+        protected Map<String, Class<?>> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    // The invoker constructors for each class, keyed by method name and descriptor.
+    private static final ClassValue<Map<String, MethodHandle>> INVOKERS = new ClassValue<>() {
+        @Override
+        protected Map<String, MethodHandle> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    public final Object instance;
+    public final Method method;
+
+    private NonPublicInvoker(Object instance, Method method) {
+        this.instance = instance;
+        this.method = method;
+    }
+
+    /**
+     * Create an invoker for the given method.
+     *
+     * @param env      The environment to define classes in, unused.
+     * @param lookup   The lookup, with access to the method.
+     * @param receiver The instance to call the method on, {@code null} for static methods.
+     * @param method   The method.
+     * @return The invoker.
+     * @throws IllegalAccessException If the lookup does not have access to the method.
+     */
+    public static NonPublicInvoker create(Environment env, MethodHandles.Lookup lookup, @Nullable Object receiver, Method method) throws IllegalAccessException {
+        Class<?> owner = method.getDeclaringClass();
+        MethodHandles.Lookup ownerLookup = MethodHandles.privateLookupIn(owner, lookup);
+
+        Type desc = Type.getType(method);
+        Class<?> iFace = INTERFACES.get(owner).computeIfAbsent(desc.getDescriptor(), e -> defineInterface(ownerLookup, owner, desc));
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        MethodHandle ctor = INVOKERS.get(owner).computeIfAbsent(method.getName() + desc.getDescriptor(), e -> defineInvoker(ownerLookup, owner, method, desc, iFace, isStatic));
+        try {
+            Object instance = isStatic ? ctor.invoke() : ctor.invoke(receiver);
+            return new NonPublicInvoker(instance, iFace.getMethod("invoke", method.getParameterTypes()));
+        } catch (Throwable ex) {
+            throw new RuntimeException("Failed to create invoker for " + method, ex);
+        }
+    }
+
+    private static MethodHandle defineInvoker(MethodHandles.Lookup ownerLookup, Class<?> owner, Method method, Type desc, Class<?> iFace, boolean isStatic) {
+        ClassBuilder classGen = new ClassBuilder(
+                ACC_PUBLIC | ACC_SUPER | ACC_FINAL | ACC_SYNTHETIC,
+                Type.getObjectType(asmName(owner.getName()) + "$$Invoker")
+        )
+                .withVersion(V15)
+                .withInterface(Type.getType(iFace));
+        FieldBuilder receiverField = isStatic ? null : classGen.addField(ACC_PRIVATE | ACC_FINAL, "receiver", OBJECT_TYPE);
+        classGen.addMethod(ACC_PUBLIC, "<init>", isStatic ? Type.getMethodType(Type.VOID_TYPE) : Type.getMethodType(Type.VOID_TYPE, OBJECT_TYPE)).withBody(gen -> {
+            gen.loadThis();
+            gen.methodInsn(INVOKESPECIAL, OBJECT_TYPE, "<init>", Type.getMethodType(Type.VOID_TYPE), false);
+            if (receiverField != null) {
+                gen.loadThis();
+                gen.loadParam(0);
+                gen.putField(receiverField);
+            }
+            gen.ret();
+        });
+        classGen.addMethod(ACC_PUBLIC | ACC_FINAL, "invoke", desc).withBody(gen -> {
+            if (receiverField != null) {
+                gen.loadThis();
+                gen.getField(receiverField);
+                gen.typeInsn(CHECKCAST, Type.getType(owner));
+            }
+            for (int i = 0; i < desc.getArgumentTypes().length; i++) {
+                gen.loadParam(i);
+            }
+            // Direct call, the hidden class is a nestmate of the owner.
+            int opcode = isStatic ? INVOKESTATIC : owner.isInterface() ? INVOKEINTERFACE : INVOKEVIRTUAL;
+            gen.methodInsn(opcode, Type.getType(owner), method.getName(), desc, owner.isInterface());
+            gen.ret();
+        });
+
+        byte[] bytes = ClassCache.build(null, new ClassCache.Key("invoker"), classGen, Collections.emptyList());
+        try {
+            // Not STRONG, the invoker is unloaded along with the method's class.
+            MethodHandles.Lookup invokerLookup = ownerLookup.defineHiddenClass(bytes, true, NESTMATE);
+            Class<?> invokerClass = invokerLookup.lookupClass();
+            return isStatic
+                    ? invokerLookup.findConstructor(invokerClass, MethodType.methodType(void.class))
+                    : invokerLookup.findConstructor(invokerClass, MethodType.methodType(void.class, Object.class));
+        } catch (ReflectiveOperationException ex) {
+            throw new RuntimeException("Failed to define invoker for " + method, ex);
+        }
+    }
+
+    private static Class<?> defineInterface(MethodHandles.Lookup ownerLookup, Class<?> owner, Type desc) {
+        ClassBuilder classGen = new ClassBuilder(
+                ACC_PUBLIC | ACC_INTERFACE | ACC_ABSTRACT | ACC_SYNTHETIC,
+                Type.getObjectType(asmName(owner.getName()) + "$$Listener$$" + descriptorIndex(owner, desc))
+        );
+        classGen.addMethod(ACC_PUBLIC | ACC_ABSTRACT, "invoke", desc);
+
+        byte[] bytes = ClassCache.build(null, new ClassCache.Key("invoker"), classGen, Collections.emptyList());
+        try {
+            return ownerLookup.defineClass(bytes);
+        } catch (IllegalAccessException ex) {
+            throw new RuntimeException("Failed to define listener interface for " + owner, ex);
+        }
+    }
+
+    /**
+     * Gets the index of the given descriptor, within the sorted descriptors of the class's methods.
+     * <p>
+     * Stable between runs, unlike the order of {@link Class#getDeclaredMethods()}.
+     *
+     * @param owner The class.
+     * @param desc  The descriptor of one of its methods.
+     * @return The index.
+     */
+    private static int descriptorIndex(Class<?> owner, Type desc) {
+        NavigableSet<String> descs = new TreeSet<>();
+        for (Method method : owner.getDeclaredMethods()) {
+            descs.add(Type.getMethodDescriptor(method));
+        }
+        return descs.headSet(desc.getDescriptor(), false).size();
+    }
+}
@@ -0,0 +1,161 @@
+package net.covers1624.eventbus.benchmark;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.util.ThreadContextClassLoader;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of a fresh {@link EventBus} generating its classes, with and without {@link Environment#getClassCacheDir()}.
+ * <p>
+ * Each invocation builds a new bus, registers {@link #listeners} fast invoke listeners, and a
+ * {@link java.util.function.Consumer} listener, to each event, then constructs and fires each factory once.
+ * With {@link #cache}, every class is loaded from the warm cache, remapped to the new bus's class names.
+ * Without, every class is generated.
+ * <p>
+ * Run with {@code -bm ss -f 10 -wi 0 -i 1} to see the cost in a cold JVM.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class ClassCacheBenchmark {
+
+    @Param ({ "1", "10", "100" })
+    public int listeners;
+
+    @Param ({ "false", "true" })
+    public boolean cache;
+
+    @Nullable
+    private Path cacheDir;
+
+    private int value = 42;
+    private int sink;
+
+    @Setup (Level.Trial)
+    public void setup() throws IOException {
+        if (cache) {
+            cacheDir = Files.createTempDirectory("eventbus-benchmark");
+            // Populate the cache outside the measurement.
+            start();
+        }
+    }
+
+    @TearDown (Level.Trial)
+    public void tearDown() throws IOException {
+        if (cacheDir == null) return;
+
+        try (Stream<Path> files = Files.walk(cacheDir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public int start() {
+        EventBus bus = EventBus.create(new CacheEnvironment(cacheDir));
+        bus.registerListener(FirstEvent.class, EventPriority.HIGHEST, e -> sink += e.getValue());
+        bus.registerListener(SecondEvent.class, EventPriority.HIGHEST, e -> e.setValue(e.getValue() + 1));
+        bus.registerListener(ThirdEvent.class, EventPriority.HIGHEST, e -> sink += e.getValue());
+        for (int i = 0; i < listeners; i++) {
+            bus.registerListener(FirstEvent.Listener.class, value -> sink += value);
+            bus.registerListener(SecondEvent.Listener.class, value -> sink += value);
+            bus.registerListener(ThirdEvent.Listener.class, (name, value) -> sink += value);
+        }
+        bus.constructFactory(FirstEvent.Factory.class, FirstEvent.class).fire(value);
+        bus.constructFactory(SecondEvent.Factory.class, SecondEvent.class).fire(value);
+        bus.constructFactory(ThirdEvent.Factory.class, ThirdEvent.class).fire("name", value);
+        return sink;
+    }
+
+    private static final class CacheEnvironment implements Environment {
+
+        private final ThreadContextClassLoader cl = new ThreadContextClassLoader();
+        @Nullable
+        private final Path cacheDir;
+
+        private CacheEnvironment(@Nullable Path cacheDir) {
+            this.cacheDir = cacheDir;
+        }
+
+        @Override
+        @Nullable
+        public InputStream getResourceStream(String resource) {
+            return ClassCacheBenchmark.class.getResourceAsStream(resource);
+        }
+
+        @Override
+        @Nullable
+        public Path getClassCacheDir() {
+            return cacheDir;
+        }
+
+        @Override
+        public Class<?> defineClass(String cName, byte[] bytes) {
+            return cl.defineClass(cName, bytes);
+        }
+    }
+
+    public interface FirstEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+
+    public interface SecondEvent extends Event {
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+
+    public interface ThirdEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(String name, int value);
+        }
+    }
+}
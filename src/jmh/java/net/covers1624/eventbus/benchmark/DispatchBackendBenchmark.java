@@ -0,0 +1,137 @@
+package net.covers1624.eventbus.benchmark;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.util.ThreadContextClassLoader;
+import org.jetbrains.annotations.Nullable;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares each {@link DispatchBackend}.
+ * <p>
+ * {@link #fireFast} and {@link #fireMutable} measure steady-state dispatch, to {@link #listeners} fast invoke
+ * listeners, and to a {@link java.util.function.Consumer} listener ahead of them respectively.
+ * <p>
+ * {@link #reregister} measures the cost of an event's listeners changing, registering and unregistering
+ * a listener, and firing after each. Every fire after a change regenerates the event's dispatcher.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class DispatchBackendBenchmark {
+
+    @Param ({ "1", "10", "100" })
+    public int listeners;
+
+    @Param
+    public DispatchBackend backend;
+
+    private EventBus bus;
+    private FastEvent.Factory fastFactory;
+    private MutableEvent.Factory mutableFactory;
+
+    private int value = 42;
+    private int sink;
+
+    @Setup (Level.Trial)
+    public void setup() {
+        bus = EventBus.create(new BackendEnvironment(backend));
+        bus.registerListener(MutableEvent.class, EventPriority.HIGHEST, e -> e.setValue(e.getValue() + 1));
+        for (int i = 0; i < listeners; i++) {
+            bus.registerListener(FastEvent.Listener.class, value -> sink += value);
+            bus.registerListener(MutableEvent.Listener.class, value -> sink += value);
+        }
+        fastFactory = bus.constructFactory(FastEvent.Factory.class, FastEvent.class);
+        mutableFactory = bus.constructFactory(MutableEvent.Factory.class, MutableEvent.class);
+
+        // Generate the dispatchers outside the measurement.
+        fastFactory.fire(value);
+        mutableFactory.fire(value);
+    }
+
+    @Benchmark
+    public int fireFast() {
+        fastFactory.fire(value);
+        return sink;
+    }
+
+    @Benchmark
+    public int fireMutable() {
+        mutableFactory.fire(value);
+        return sink;
+    }
+
+    @Benchmark
+    public int reregister() {
+        ListenerRegistration registration = bus.registerListener(FastEvent.Listener.class, value -> sink -= value);
+        fastFactory.fire(value);
+        registration.unregister();
+        fastFactory.fire(value);
+        return sink;
+    }
+
+    private static final class BackendEnvironment implements Environment {
+
+        private final ThreadContextClassLoader cl = new ThreadContextClassLoader();
+        private final DispatchBackend backend;
+
+        private BackendEnvironment(DispatchBackend backend) {
+            this.backend = backend;
+        }
+
+        @Override
+        @Nullable
+        public InputStream getResourceStream(String resource) {
+            return DispatchBackendBenchmark.class.getResourceAsStream(resource);
+        }
+
+        @Override
+        public DispatchBackend getDispatchBackend() {
+            return backend;
+        }
+
+        @Override
+        public Class<?> defineClass(String cName, byte[] bytes) {
+            return cl.defineClass(cName, bytes);
+        }
+    }
+
+    public interface FastEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+
+    public interface MutableEvent extends Event {
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package net.covers1624.eventbus.benchmark;
+
+import net.covers1624.eventbus.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Steady-state throughput of firing events through generated factories.
+ * <p>
+ * Each trial builds a fresh {@link EventBus}, registers {@link #listeners} listeners of
+ * the given {@link #kind}, optionally freezes the bus, and fires once to generate the
+ * dispatcher before measurement.
+ * <p>
+ * The {@link ListenerKind#MIXED} case registers a single {@link java.util.function.Consumer} listener
+ * ahead of the fast invoke listeners.
+ * <p>
+ * The {@code 254} and {@code 255} cases straddle the method parameter limit, which the generated
+ * dispatcher's constructor previously took each listener instance as. Run with {@code -prof gc}
+ * (the default for the {@code jmh} task) to see allocation rates, {@link #fireReusable} should not allocate at all.
+ * <p>
+ * {@link #fireDecision} fires a short-circuiting {@link ResultEvent}, where the last listener decides.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class DispatchBenchmark {
+
+    @Param ({ "0", "1", "10", "254", "255", "10000" })
+    public int listeners;
+
+    @Param
+    public ListenerKind kind;
+
+    @Param ({ "false", "true" })
+    public boolean frozen;
+
+    private ImmutableEvent.Factory immutableFactory;
+    private MutableEvent.Factory mutableFactory;
+    private ReturningEvent.Factory returningFactory;
+    private ReusableEvent.Factory reusableFactory;
+    private VetoEvent.Factory vetoFactory;
+    private DecisionEvent.Factory decisionFactory;
+
+    private String name = "name";
+    private int value = 42;
+    private int sink;
+
+    @Setup (Level.Trial)
+    public void setup() {
+        EventBus bus = EventBus.create();
+        if (kind == ListenerKind.MIXED) {
+            // A single Consumer listener ahead of the fast invoke listeners, forcing them to read mutable fields from the event.
+            bus.registerListener(ImmutableEvent.class, EventPriority.HIGHEST, e -> sink += e.getValue());
+            bus.registerListener(MutableEvent.class, EventPriority.HIGHEST, e -> e.setValue(e.getValue() + 1));
+            bus.registerListener(ReturningEvent.class, EventPriority.HIGHEST, e -> sink += e.getValue());
+            bus.registerListener(ReusableEvent.class, EventPriority.HIGHEST, e -> sink += e.getValue());
+        }
+        for (int i = 0; i < listeners; i++) {
+            // FastInvokeOnly, registered as fast invoke for every kind.
+            bus.registerListener(VetoEvent.Listener.class, (name, value) -> value < 0);
+            bus.registerListener(DecisionEvent.Listener.class, (name, value) -> value < 0 ? ResultEvent.Result.DENY : null);
+            if (kind != ListenerKind.CONSUMER) {
+                bus.registerListener(ImmutableEvent.Listener.class, (name, value) -> sink += value);
+                bus.registerListener(MutableEvent.Listener.class, (name, value) -> sink += value);
+                bus.registerListener(ReturningEvent.Listener.class, (name, value) -> sink += value);
+                bus.registerListener(ReusableEvent.Listener.class, (name, value) -> sink += value);
+            } else {
+                bus.registerListener(ImmutableEvent.class, e -> sink += e.getValue());
+                bus.registerListener(MutableEvent.class, e -> sink += e.getValue());
+                bus.registerListener(ReturningEvent.class, e -> sink += e.getValue());
+                bus.registerListener(ReusableEvent.class, e -> sink += e.getValue());
+            }
+        }
+        immutableFactory = bus.constructFactory(ImmutableEvent.Factory.class, ImmutableEvent.class);
+        mutableFactory = bus.constructFactory(MutableEvent.Factory.class, MutableEvent.class);
+        returningFactory = bus.constructFactory(ReturningEvent.Factory.class, ReturningEvent.class);
+        reusableFactory = bus.constructFactory(ReusableEvent.Factory.class, ReusableEvent.class);
+        vetoFactory = bus.constructFactory(VetoEvent.Factory.class, VetoEvent.class);
+        decisionFactory = bus.constructFactory(DecisionEvent.Factory.class, DecisionEvent.class);
+        bus.registerListener(DecisionEvent.Listener.class, EventPriority.LOWEST, (name, value) -> ResultEvent.Result.ALLOW);
+        if (frozen) {
+            bus.freeze();
+        }
+
+        // Generate the dispatchers outside the measurement.
+        immutableFactory.fire(name, value);
+        mutableFactory.fire(name, value);
+        returningFactory.fire(name, value);
+        reusableFactory.fire(name, value);
+        vetoFactory.fire(name, value);
+        decisionFactory.fire(name, value);
+    }
+
+    @Benchmark
+    public int fireImmutable() {
+        immutableFactory.fire(name, value);
+        return sink;
+    }
+
+    @Benchmark
+    public int fireMutable() {
+        mutableFactory.fire(name, value);
+        return sink;
+    }
+
+    @Benchmark
+    public ReturningEvent fireReturning() {
+        return returningFactory.fire(name, value);
+    }
+
+    @Benchmark
+    public ReusableEvent fireReusable() {
+        return reusableFactory.fire(name, value);
+    }
+
+    @Benchmark
+    public boolean fireVeto() {
+        return vetoFactory.fire(name, value);
+    }
+
+    @Benchmark
+    public ResultEvent.Result fireDecision() {
+        return decisionFactory.fire(name, value);
+    }
+
+    public enum ListenerKind {
+        FAST_INVOKE,
+        CONSUMER,
+        MIXED,
+    }
+
+    public interface ImmutableEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(String name, int value);
+        }
+    }
+
+    public interface MutableEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(String name, int value);
+        }
+    }
+
+    public interface ReturningEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract ReturningEvent fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(String name, int value);
+        }
+    }
+
+    @FastInvokeOnly
+    public interface VetoEvent extends CancelableEvent {
+
+        String getName();
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract boolean fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            boolean fire(String name, int value);
+        }
+    }
+
+    @FastInvokeOnly
+    @ShortCircuit ({ ResultEvent.Result.DENY, ResultEvent.Result.ALLOW })
+    public interface DecisionEvent extends ResultEvent {
+
+        String getName();
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract Result fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            Result fire(String name, int value);
+        }
+    }
+
+    @ReuseEventInstance
+    public interface ReusableEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract ReusableEvent fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(String name, int value);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package net.covers1624.eventbus.benchmark;
+
+import net.covers1624.eventbus.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Listener-heavy dispatch, where the event's listeners are spread over several implementations.
+ * <p>
+ * {@link #fireBus} fires through the generated dispatcher, which loads each listener from a static final field.
+ * Registering {@link #listeners} listeners, cycling through the {@link #LISTENERS} implementations.
+ * <p>
+ * {@link #instanceFields} and {@link #staticFields} are hand-written equivalents of a dispatcher for the first
+ * 8 listeners, loading each from an instance final field, and a static final field respectively. These are
+ * the same for every {@link #listeners} value, and compare the two layouts directly. Run with
+ * {@code -prof perfasm} to see the type checks on each listener loaded from an instance field.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@State (Scope.Thread)
+@BenchmarkMode (Mode.Throughput)
+@OutputTimeUnit (TimeUnit.SECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (1)
+public class ListenerConstantBenchmark {
+
+    private static int sink;
+
+    // Each lambda is its own class, so the event's listeners are megamorphic.
+    private static final ConstantEvent.Listener[] LISTENERS = {
+            value -> sink += value,
+            value -> sink -= value,
+            value -> sink ^= value,
+            value -> sink |= value,
+            value -> sink &= ~value,
+            value -> sink += value << 1,
+            value -> sink -= value >> 1,
+            value -> sink ^= value << 2,
+    };
+
+    @Param ({ "8", "64", "512" })
+    public int listeners;
+
+    private ConstantEvent.Factory factory;
+    private final InstanceDispatcher instanceDispatcher = new InstanceDispatcher();
+    private final StaticDispatcher staticDispatcher = new StaticDispatcher();
+
+    private int value = 42;
+
+    @Setup (Level.Trial)
+    public void setup() {
+        EventBus bus = EventBus.create();
+        for (int i = 0; i < listeners; i++) {
+            bus.registerListener(ConstantEvent.Listener.class, LISTENERS[i % LISTENERS.length]);
+        }
+        factory = bus.constructFactory(ConstantEvent.Factory.class, ConstantEvent.class);
+        bus.freeze();
+
+        // Generate the dispatcher outside the measurement.
+        factory.fire(value);
+    }
+
+    @Benchmark
+    public int fireBus() {
+        factory.fire(value);
+        return sink;
+    }
+
+    @Benchmark
+    public int instanceFields() {
+        instanceDispatcher.fire(value);
+        return sink;
+    }
+
+    @Benchmark
+    public int staticFields() {
+        staticDispatcher.fire(value);
+        return sink;
+    }
+
+    // The dispatcher layout prior to static listener fields.
+    private static final class InstanceDispatcher {
+
+        private final ConstantEvent.Listener instance$0 = LISTENERS[0];
+        private final ConstantEvent.Listener instance$1 = LISTENERS[1];
+        private final ConstantEvent.Listener instance$2 = LISTENERS[2];
+        private final ConstantEvent.Listener instance$3 = LISTENERS[3];
+        private final ConstantEvent.Listener instance$4 = LISTENERS[4];
+        private final ConstantEvent.Listener instance$5 = LISTENERS[5];
+        private final ConstantEvent.Listener instance$6 = LISTENERS[6];
+        private final ConstantEvent.Listener instance$7 = LISTENERS[7];
+
+        public void fire(int value) {
+            instance$0.fire(value);
+            instance$1.fire(value);
+            instance$2.fire(value);
+            instance$3.fire(value);
+            instance$4.fire(value);
+            instance$5.fire(value);
+            instance$6.fire(value);
+            instance$7.fire(value);
+        }
+    }
+
+    private static final class StaticDispatcher {
+
+        private static final ConstantEvent.Listener instance$0 = LISTENERS[0];
+        private static final ConstantEvent.Listener instance$1 = LISTENERS[1];
+        private static final ConstantEvent.Listener instance$2 = LISTENERS[2];
+        private static final ConstantEvent.Listener instance$3 = LISTENERS[3];
+        private static final ConstantEvent.Listener instance$4 = LISTENERS[4];
+        private static final ConstantEvent.Listener instance$5 = LISTENERS[5];
+        private static final ConstantEvent.Listener instance$6 = LISTENERS[6];
+        private static final ConstantEvent.Listener instance$7 = LISTENERS[7];
+
+        public void fire(int value) {
+            instance$0.fire(value);
+            instance$1.fire(value);
+            instance$2.fire(value);
+            instance$3.fire(value);
+            instance$4.fire(value);
+            instance$5.fire(value);
+            instance$6.fire(value);
+            instance$7.fire(value);
+        }
+    }
+
+    public interface ConstantEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+}
@@ -1,15 +1,24 @@
 package net.covers1624.eventbus;
 
-import org.jetbrains.annotations.ApiStatus;
-
 /**
+ * An {@link Event} which may be canceled by its listeners.
+ * <p>
+ * Once canceled, listeners will not be called unless they opt in to receiving
+ * canceled events, via {@link SubscribeEvent#receiveCanceled()}, or the {@code receiveCanceled}
+ * parameter when registering a lambda.
+ * <p>
+ * Listeners receiving the event instance may cancel the event via {@link #setCanceled}. Fast invoke
+ * listeners may cancel the event by declaring a {@code boolean} return type, returning {@code true} to cancel.
+ * <p>
+ * Event factories may optionally declare a {@code canceled} parameter, otherwise events start out not canceled.
+ * Event factories may also return {@code boolean}, reporting if the event was canceled.
+ * <p>
  * Created by covers1624 on 22/3/21.
  */
-@ApiStatus.Experimental // Not yet implemented.
 public interface CancelableEvent extends Event {
 
     boolean isCanceled();
 
-    void setCanceled();
+    void setCanceled(boolean canceled);
 
 }
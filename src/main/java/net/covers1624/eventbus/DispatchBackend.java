@@ -0,0 +1,29 @@
+package net.covers1624.eventbus;
+
+/**
+ * The ways events are dispatched to their listeners.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ *
+ * @see Environment#getDispatchBackend()
+ */
+public enum DispatchBackend {
+    /**
+     * Generates a class calling every listener, each time an event's listeners change.
+     * <p>
+     * This is the fastest backend, but requires {@link Environment#defineClass} for every regeneration.
+     */
+    BYTECODE,
+    /**
+     * Composes {@link java.lang.invoke.MethodHandle}s calling every listener, bound to the event's
+     * {@link java.lang.invoke.MutableCallSite}, which the JIT is still able to inline.
+     * <p>
+     * Changes to an event's listeners never define classes. The event's {@link EventFactory} implementation,
+     * and its event class, are still defined once per event, unless the accompanying annotation processor
+     * generated them at compile time. Events processed by the annotation processor never require
+     * {@link Environment#defineClass}, in any number of buses.
+     * <p>
+     * Listeners are always called sequentially, {@link SubscribeEvent#parallel()} is ignored.
+     */
+    METHOD_HANDLE,
+}
@@ -2,7 +2,15 @@ package net.covers1624.eventbus;
 
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
 
 /**
  * Represents any abstractions required for running EventBus in
@@ -44,6 +52,53 @@ public interface Environment {
     @Nullable
     InputStream getResourceStream(String resource);
 
+    /**
+     * Get the streams for every copy of a resource, such as one per jar on the classpath.
+     * <p>
+     * This is used for reading the META-INF parameter index written by each compilation,
+     * see {@link #getResourceStream(String)}. Classes not found in any index are looked up
+     * individually, via {@link #getResourceStream(String)}, so overriding this is optional.
+     *
+     * @param resource The resource file.
+     * @return The resource streams. Defaults to the single stream from {@link #getResourceStream(String)}.
+     * @throws IOException If an IO error occurs.
+     */
+    default List<InputStream> getResourceStreams(String resource) throws IOException {
+        InputStream is = getResourceStream(resource);
+        return is != null ? Collections.singletonList(is) : Collections.emptyList();
+    }
+
+    /**
+     * Get the sources method parameter names are resolved from, in the order they are tried.
+     * <p>
+     * Sources not returned are never used.
+     *
+     * @return The sources. Defaults to all {@link ParameterNameSource}s, in declaration order.
+     */
+    default List<ParameterNameSource> getParameterNameSources() {
+        return Arrays.asList(ParameterNameSource.values());
+    }
+
+    /**
+     * Get how long resolved method parameter names are cached, after they were last accessed.
+     * <p>
+     * Regardless of expiry, cached names never prevent their class from being unloaded.
+     *
+     * @return The expiry in milliseconds, {@code 0} to never expire. Defaults to {@code 0}.
+     */
+    default long getParameterNameCacheExpiry() {
+        return 0;
+    }
+
+    /**
+     * Get the backend used to dispatch events to their listeners.
+     *
+     * @return The backend. Defaults to {@link DispatchBackend#BYTECODE}.
+     */
+    default DispatchBackend getDispatchBackend() {
+        return DispatchBackend.BYTECODE;
+    }
+
     /**
      * Define the given class.
      *
@@ -52,4 +107,72 @@ public interface Environment {
      * @return The defined class.
      */
     Class<?> defineClass(String cName, byte[] bytes);
+
+    /**
+     * Get the executor used to fire events whose {@link EventFactory} returns a
+     * {@link java.util.concurrent.CompletableFuture}.
+     * <p>
+     * Each fire is submitted as a single task, calling every listener in order.
+     *
+     * @return The executor. Defaults to the {@link ForkJoinPool#commonPool()}.
+     */
+    default Executor getAsyncExecutor() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Get the pool used to call parallel listeners.
+     *
+     * @return The pool. Defaults to the {@link ForkJoinPool#commonPool()}.
+     * @see SubscribeEvent#parallel()
+     */
+    default ForkJoinPool getParallelPool() {
+        return ForkJoinPool.commonPool();
+    }
+
+    /**
+     * Get the executor used to regenerate dispatchers in the background.
+     * <p>
+     * By default, an event whose listeners have changed is regenerated on its next fire, blocking
+     * the firing thread. When an executor is provided, the regeneration is instead scheduled on it,
+     * {@link #getRegenerationDelay()} after the first change, coalescing any further changes
+     * made in the meantime. Events keep firing to their previous listeners until it completes.
+     * <p>
+     * Events which have never been fired are still generated on their first fire.
+     *
+     * @return The executor, {@code null} to regenerate when fired. Defaults to {@code null}.
+     * @see EventBus#awaitConsistent()
+     */
+    @Nullable
+    default ScheduledExecutorService getRegenerationExecutor() {
+        return null;
+    }
+
+    /**
+     * Get the delay in milliseconds between a change to an event's listeners, and its
+     * regeneration on the {@link #getRegenerationExecutor()}.
+     *
+     * @return The delay. Defaults to 10 milliseconds.
+     */
+    default long getRegenerationDelay() {
+        return 10;
+    }
+
+    /**
+     * Get the directory used to cache generated classes between runs.
+     * <p>
+     * Generated classes are stored keyed by the shape of their inputs, such as the event interface, its factory
+     * method, and the signatures of each listener, in order. Later runs with identical inputs load the cached
+     * classes instead of generating them. Entries are ignored once their inputs change.
+     * <p>
+     * Entries are stored in an {@code eventbus-classes} directory, with a separate directory per version of
+     * EventBus. Versions unused for a week are deleted, nothing else in the directory is touched.
+     * The directory may be shared between multiple buses and processes, including other versions of EventBus.
+     *
+     * @return The directory, {@code null} to disable caching. Defaults to {@code null}.
+     */
+    @Nullable
+    default Path getClassCacheDir() {
+        return null;
+    }
 }
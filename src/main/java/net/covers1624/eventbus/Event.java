@@ -19,6 +19,11 @@ package net.covers1624.eventbus;
  * <p>
  * Events may choose to have one or more {@link EventListener} inner-classes. These are used for lambda subscriptions.
  * <p>
+ * Events may extend other events, inheriting their fields. Listeners registered to an event are also called
+ * when any event extending it is fired, merged with the extending event's listeners in priority order.
+ * This interface, {@link CancelableEvent}, {@link ResultEvent} and {@link GenericEvent} are not events
+ * themselves, listeners may not be registered to them.
+ * <p>
  * Created by covers1624 on 22/3/21.
  *
  * @see EventFactory
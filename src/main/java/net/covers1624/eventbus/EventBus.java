@@ -2,6 +2,9 @@ package net.covers1624.eventbus;
 
 import net.covers1624.eventbus.internal.EventBusImpl;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Type;
 import java.util.function.Consumer;
 
 /**
@@ -48,6 +51,37 @@ public interface EventBus {
      */
     <T extends EventFactory> T constructFactory(Class<T> factoryClass, Class<? extends Event> eventClass);
 
+    /**
+     * Freezes this {@link EventBus}.
+     * <p>
+     * All events known to the bus are generated immediately, and their factories are bound
+     * directly to the generated event, skipping any checks for changes to the listeners when fired.
+     * <p>
+     * Once frozen, any attempt to register or unregister a listener will throw an {@link IllegalStateException}.
+     * Factories may still be constructed for new events.
+     * <p>
+     * This is intended for applications where the set of listeners is fixed after startup.
+     */
+    void freeze();
+
+    /**
+     * Blocks until all listener changes made before this call are visible to fired events.
+     * <p>
+     * When dispatchers are regenerated in the background, as configured by {@link Environment#getRegenerationExecutor()},
+     * events keep firing to their previous listeners for a short time after a change. This waits for every
+     * pending regeneration, and regenerates any remaining changed events on the calling thread.
+     */
+    void awaitConsistent();
+
+    /**
+     * Get statistics on how method parameter names have been resolved by this {@link EventBus}.
+     * <p>
+     * This may be used to confirm no methods require parsing of class bytecode, see {@link ParameterNameSource#BYTECODE}.
+     *
+     * @return The live statistics.
+     */
+    ParameterNameStats getParameterNameStats();
+
     /**
      * Registers the given object searching for {@link SubscribeEvent} annotations on the owned members.
      * <p>
@@ -66,17 +100,52 @@ public interface EventBus {
      * provided via the {@link SubscribeEvent#value()} annotation field.
      *
      * @param object The object to register.
+     * @return A {@link ListenerRegistration} for all methods registered from the object.
+     */
+    ListenerRegistration register(Object object);
+
+    /**
+     * Registers the given object, as {@link #register(Object)}, additionally registering non-public methods.
+     * <p>
+     * Methods of any access are registered, provided they are not {@code abstract}, {@code synchronized},
+     * {@code final}, or {@code native}. Non-public methods are called through the given lookup,
+     * which must have private access to the class, such as {@link MethodHandles#lookup()} called from the class.
+     * <p>
+     * Dispatchers are still defined through {@link Environment#defineClass}, as they call the listeners of any
+     * number of classes. They call each non-public method through an invoker, generated once per method:
+     * on Java 15 and above, a hidden class nestmate of the registered class, calling the method directly,
+     * and unloaded along with it. Otherwise, a class defined in the environment, calling a {@link MethodHandle}.
+     *
+     * @param lookup The lookup to access non-public methods with.
+     * @param object The object to register.
+     * @return A {@link ListenerRegistration} for all methods registered from the object.
+     * @throws IllegalArgumentException If the lookup does not have access to a non-public method.
+     */
+    ListenerRegistration register(MethodHandles.Lookup lookup, Object object);
+
+    /**
+     * Registers listeners in bulk.
+     * <p>
+     * All listeners registered or unregistered by the given action, on the calling thread, are applied
+     * together once the action completes. Each event's listeners are copied once, instead of once per listener.
+     * Events fired during the action do not see listeners registered by it.
+     * <p>
+     * If the action throws, all listeners it registered are discarded. Batches may be nested.
+     *
+     * @param action The action registering listeners to this bus.
+     * @return A {@link ListenerRegistration} for all listeners registered by the action.
      */
-    void register(Object object);
+    ListenerRegistration registerBatch(Consumer<EventBus> action);
 
     /**
      * An overload of {@link #registerListener(Class, EventPriority, EventListener)} declaring normal priority.
      *
      * @param listenerType The Factory class associated with the event.
      * @param func         The Lambda or Method reference.
+     * @return The {@link ListenerRegistration} for the listener.
      */
-    default <T extends EventListener> void registerListener(Class<T> listenerType, T func) {
-        registerListener(listenerType, EventPriority.NORMAL, func);
+    default <T extends EventListener> ListenerRegistration registerListener(Class<T> listenerType, T func) {
+        return registerListener(listenerType, EventPriority.NORMAL, func);
     }
 
     /**
@@ -89,17 +158,34 @@ public interface EventBus {
      * @param listenerType The Factory class associated with the event.
      * @param priority     The priority of this listener.
      * @param func         The Lambda or Method reference.
+     * @return The {@link ListenerRegistration} for the listener.
      */
-    <T extends EventListener> void registerListener(Class<T> listenerType, EventPriority priority, T func);
+    default <T extends EventListener> ListenerRegistration registerListener(Class<T> listenerType, EventPriority priority, T func) {
+        return registerListener(listenerType, priority, false, func);
+    }
+
+    /**
+     * Registers a {@link EventListener} for the given event.
+     * <p>
+     * See {@link #registerListener(Class, EventPriority, EventListener)}.
+     *
+     * @param listenerType    The Factory class associated with the event.
+     * @param priority        The priority of this listener.
+     * @param receiveCanceled If this listener should receive {@link CancelableEvent}s which have been canceled.
+     * @param func            The Lambda or Method reference.
+     * @return The {@link ListenerRegistration} for the listener.
+     */
+    <T extends EventListener> ListenerRegistration registerListener(Class<T> listenerType, EventPriority priority, boolean receiveCanceled, T func);
 
     /**
      * An overload of {@link #registerListener(Class, EventPriority, Consumer)} declaring normal priority.
      *
      * @param eventClass The {@link Event} class to register for.
      * @param func       The Lambda or Method reference.
+     * @return The {@link ListenerRegistration} for the listener.
      */
-    default <T extends Event> void registerListener(Class<T> eventClass, Consumer<T> func) {
-        registerListener(eventClass, EventPriority.NORMAL, func);
+    default <T extends Event> ListenerRegistration registerListener(Class<T> eventClass, Consumer<T> func) {
+        return registerListener(eventClass, EventPriority.NORMAL, func);
     }
 
     /**
@@ -111,7 +197,51 @@ public interface EventBus {
      * @param eventClass The {@link Event} class to register for.
      * @param priority   The priority of this listener.
      * @param func       The Lambda or Method reference.
+     * @return The {@link ListenerRegistration} for the listener.
+     */
+    default <T extends Event> ListenerRegistration registerListener(Class<T> eventClass, EventPriority priority, Consumer<T> func) {
+        return registerListener(eventClass, priority, false, func);
+    }
+
+    /**
+     * Registers a regular {@link Consumer} for the given event.
+     * <p>
+     * See {@link #registerListener(Class, EventPriority, Consumer)}.
+     *
+     * @param eventClass      The {@link Event} class to register for.
+     * @param priority        The priority of this listener.
+     * @param receiveCanceled If this listener should receive {@link CancelableEvent}s which have been canceled.
+     * @param func            The Lambda or Method reference.
+     * @return The {@link ListenerRegistration} for the listener.
+     */
+    <T extends Event> ListenerRegistration registerListener(Class<T> eventClass, EventPriority priority, boolean receiveCanceled, Consumer<T> func);
+
+    /**
+     * Registers a {@link EventListener} for the given {@link GenericEvent}, which will only
+     * be called when the event is fired with the given generic type.
+     * <p>
+     * See {@link #registerListener(Class, EventPriority, EventListener)}.
+     *
+     * @param listenerType The Factory class associated with the event.
+     * @param genericType  The generic type to filter to.
+     * @param priority     The priority of this listener.
+     * @param func         The Lambda or Method reference.
+     * @return The {@link ListenerRegistration} for the listener.
+     */
+    <T extends EventListener> ListenerRegistration registerGenericListener(Class<T> listenerType, Type genericType, EventPriority priority, T func);
+
+    /**
+     * Registers a regular {@link Consumer} for the given {@link GenericEvent}, which will only
+     * be called when the event is fired with the given generic type.
+     * <p>
+     * See {@link #registerListener(Class, EventPriority, Consumer)}.
+     *
+     * @param eventClass  The {@link Event} class to register for.
+     * @param genericType The generic type to filter to.
+     * @param priority    The priority of this listener.
+     * @param func        The Lambda or Method reference.
+     * @return The {@link ListenerRegistration} for the listener.
      */
-    <T extends Event> void registerListener(Class<T> eventClass, EventPriority priority, Consumer<T> func);
+    <T extends Event> ListenerRegistration registerGenericListener(Class<T> eventClass, Type genericType, EventPriority priority, Consumer<T> func);
 
 }
@@ -11,6 +11,10 @@ package net.covers1624.eventbus;
  * Factories may choose to declare one or more functions for firing an event, delegating to the next. Binary
  * compatibility can be maintained using this.
  * <p>
+ * Factories may return a {@link java.util.concurrent.CompletableFuture} of {@link Void} or the event, firing the
+ * event asynchronously on the {@link Environment#getAsyncExecutor()}. All listeners are called in order, by a single
+ * task, the future completes once they have all been called, or exceptionally if any throw.
+ * <p>
  * Created by covers1624 on 19/9/22.
  *
  * @see Event
@@ -14,7 +14,11 @@ import static java.lang.annotation.RetentionPolicy.RUNTIME;
  * <p>
  * The event should document the reasons for this.
  * <p>
- * This is not compatible with {@link CancelableEvent}.
+ * These events may still be {@link CancelableEvent}s, listeners cancel the event by returning {@code true}
+ * from their listener method, and the factory may return {@code boolean} to report if the event was canceled.
+ * <p>
+ * When these events extend other events, only the fast invoke listeners of their super events are called.
+ * Any {@link java.util.function.Consumer} listeners of the super events are skipped, logging a warning.
  * <p>
  * Created by covers1624 on 5/5/23.
  */
@@ -1,15 +1,21 @@
 package net.covers1624.eventbus;
 
-import org.jetbrains.annotations.ApiStatus;
-
 import java.lang.reflect.Type;
 
 /**
  * Root class for all Generics filtered events.
  * <p>
+ * The {@link EventFactory} of a generic event must provide the {@code genericType} parameter.
+ * Listeners may be filtered to a specific generic type, either by declaring a parameterized
+ * event parameter in a {@link SubscribeEvent} method, such as {@code MyEvent<String>}, or by
+ * registering via {@link EventBus#registerGenericListener}. Unfiltered listeners receive all
+ * generic types.
+ * <p>
+ * A dispatcher is generated for each generic type with filtered listeners, firing the event only
+ * touches the listeners for its generic type.
+ * <p>
  * Created by covers1624 on 10/4/21.
  */
-@ApiStatus.Experimental // Not yet implemented.
 public interface GenericEvent<T> extends Event {
 
     Type getGenericType();
@@ -0,0 +1,20 @@
+package net.covers1624.eventbus;
+
+/**
+ * Returned by {@link EventBus} when registering listeners, used to unregister them again.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+public interface ListenerRegistration {
+
+    /**
+     * Unregister all listeners represented by this registration.
+     * <p>
+     * This only removes the listeners and marks the event as dirty, the event
+     * is regenerated once on its next fire, regardless of how many listeners were
+     * removed in the meantime. Fires already in progress still call the removed listeners.
+     * <p>
+     * Calling this more than once has no effect.
+     */
+    void unregister();
+}
@@ -0,0 +1,21 @@
+package net.covers1624.eventbus;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marker annotation to denote {@link Event} classes whose listeners may all be called in parallel
+ * with other listeners of the same priority, as if every listener declared {@link SubscribeEvent#parallel()}.
+ * <p>
+ * This includes lambda listeners, which are otherwise unable to opt in. The same cancellation rules apply,
+ * listeners of a {@link CancelableEvent} canceled within a parallel run are still called.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@Target (TYPE)
+@Retention (RUNTIME)
+public @interface ParallelDispatch {
+}
@@ -0,0 +1,32 @@
+package net.covers1624.eventbus;
+
+/**
+ * The sources method parameter names are resolved from, for fast invoke listeners and {@link EventFactory} methods.
+ * <p>
+ * Sources are tried in the order returned by {@link Environment#getParameterNameSources()}, until one
+ * provides names for the method.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ *
+ * @see EventBus#getParameterNameStats()
+ */
+public enum ParameterNameSource {
+    /**
+     * The {@link ParameterNames} annotation on the method.
+     */
+    ANNOTATION,
+    /**
+     * Metadata in the META-INF folder, written at compile time by the accompanying annotation processor.
+     */
+    METADATA,
+    /**
+     * The {@link java.lang.reflect.Parameter} names of the method, present when compiled with {@code -parameters}.
+     */
+    REFLECTION,
+    /**
+     * The local variable table of the method, parsed from the class's bytecode.
+     * <p>
+     * This is the most expensive source, and is only present for non-abstract methods compiled with debug information.
+     */
+    BYTECODE,
+}
@@ -0,0 +1,32 @@
+package net.covers1624.eventbus;
+
+/**
+ * Statistics on how method parameter names have been resolved by an {@link EventBus}.
+ * <p>
+ * Each method is resolved once, then cached. A source which provides names for a method is
+ * counted as a hit, every source tried before it as a miss.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ *
+ * @see EventBus#getParameterNameStats()
+ */
+public interface ParameterNameStats {
+
+    /**
+     * @param source The source.
+     * @return The number of methods the source provided names for.
+     */
+    long getHits(ParameterNameSource source);
+
+    /**
+     * @param source The source.
+     * @return The number of methods the source was tried for, but did not provide names.
+     */
+    long getMisses(ParameterNameSource source);
+
+    /**
+     * @param source The source.
+     * @return The total time spent in the source, in nanoseconds.
+     */
+    long getTimeNanos(ParameterNameSource source);
+}
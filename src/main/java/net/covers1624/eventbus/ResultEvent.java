@@ -1,9 +1,21 @@
 package net.covers1624.eventbus;
 
 /**
+ * An {@link Event} which carries a {@link Result}, decided by its listeners.
+ * <p>
+ * Listeners receiving the event instance may set the result via {@link #setResult}. Fast invoke
+ * listeners may set the result by declaring a {@link Result} return type, returning {@link Result#DEFAULT}
+ * or {@code null} leaves the result unchanged.
+ * <p>
+ * By default, all listeners are called, and the last result set wins. Events may instead be annotated with
+ * {@link ShortCircuit}, ending dispatch as soon as a listener decides on one of the given results.
+ * <p>
+ * Event factories may optionally declare a {@code result} parameter, otherwise events start out
+ * as {@link Result#DEFAULT}. Event factories may also return {@link Result}, reporting the final result.
+ * <p>
  * Created by covers1624 on 10/4/21.
  */
-public interface ResultEvent {
+public interface ResultEvent extends Event {
 
     Result getResult();
 
@@ -0,0 +1,28 @@
+package net.covers1624.eventbus;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marker annotation to denote {@link Event} classes, or their {@link EventFactory}, which
+ * reuse a per-thread event instance for each fire, instead of allocating a new one.
+ * <p>
+ * This allows events with {@link java.util.function.Consumer} listeners, or factories returning
+ * the event instance, to be fired without allocation.
+ * <p>
+ * Listeners of these events must not retain the event instance, or access it after they
+ * return, its fields will be overwritten by the next fire on the same thread. Likewise, an
+ * instance returned from the factory is only valid until the factory is next fired on the
+ * same thread.
+ * <p>
+ * Re-entrant fires on the same thread are safe, a new instance will be used for the inner fire.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@Target (TYPE)
+@Retention (RUNTIME)
+public @interface ReuseEventInstance {
+}
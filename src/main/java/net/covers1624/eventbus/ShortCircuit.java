@@ -0,0 +1,30 @@
+package net.covers1624.eventbus;
+
+import net.covers1624.eventbus.ResultEvent.Result;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Defines the short-circuit policy of a {@link ResultEvent}.
+ * <p>
+ * Once the event's result is any of the given results, no further listeners are called. The check is
+ * compiled into the generated dispatcher, and only performed after listeners which may have changed the result.
+ * <p>
+ * For example, {@code @ShortCircuit({ DENY, ALLOW })} makes the first non {@link Result#DEFAULT} result win,
+ * whereas {@code @ShortCircuit(DENY)} allows any listener to veto the event.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@Target (TYPE)
+@Retention (RUNTIME)
+public @interface ShortCircuit {
+
+    /**
+     * @return The results which end dispatch.
+     */
+    Result[] value();
+}
@@ -41,4 +41,24 @@ public @interface SubscribeEvent {
      */
     boolean receiveCanceled() default false;
 
+    /**
+     * Controls if this listener may be called in parallel with other parallel listeners of the same priority.
+     * <p>
+     * Each consecutive run of parallel listeners with the same priority is dispatched concurrently on
+     * the {@link Environment#getParallelPool()}, all of them complete before any following listener is called.
+     * Listeners returning a value, such as those canceling a {@link CancelableEvent}, are always called in order.
+     * <p>
+     * Whether each listener is skipped for a canceled {@link CancelableEvent} is decided once, before the run
+     * is dispatched. A listener canceling the event from within the run, such as an event {@link java.util.function.Consumer},
+     * does not prevent the other listeners of the run being called, even those which do not {@link #receiveCanceled()}.
+     * The cancellation applies from the first listener following the run.
+     * <p>
+     * Parallel listeners must be thread safe, and must not depend on the order in which they are called
+     * relative to each other.
+     *
+     * @return If the listener may be called in parallel.
+     * @see ParallelDispatch
+     */
+    boolean parallel() default false;
+
 }
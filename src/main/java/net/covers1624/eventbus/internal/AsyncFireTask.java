@@ -0,0 +1,35 @@
+package net.covers1624.eventbus.internal;
+
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A single asynchronous fire of an event, completed once every listener has been called.
+ * <p>
+ * Generated dispatchers for async factories extend this per event, capturing the factory parameters, the
+ * task is both the {@link Runnable} submitted to the executor and the future returned to the caller.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public abstract class AsyncFireTask extends CompletableFuture<Object> implements Runnable {
+
+    @Override
+    public final void run() {
+        try {
+            complete(fire());
+        } catch (Throwable ex) {
+            completeExceptionally(ex);
+        }
+    }
+
+    /**
+     * Calls every listener.
+     *
+     * @return The event instance, {@code null} if the factory does not return it.
+     */
+    @Nullable
+    protected abstract Object fire();
+}
@@ -0,0 +1,377 @@
+package net.covers1624.eventbus.internal;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import net.covers1624.eventbus.Environment;
+import net.covers1624.quack.asm.ClassBuilder;
+import net.covers1624.quack.io.IOUtils;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.ClassRemapper;
+import org.objectweb.asm.commons.SimpleRemapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static net.covers1624.eventbus.internal.Utils.debugWriteClass;
+
+/**
+ * A persistent cache of generated class bytes, as configured by {@link Environment#getClassCacheDir()}.
+ * <p>
+ * Entries are keyed by a hash of everything their generator reads, built with {@link Key}. Changes to
+ * any of the inputs, such as a listener's signature, produce a different key, leaving the old entry unused.
+ * Entries are stored in {@value #CACHE_DIR}, in a directory named after a hash of the generator classes
+ * themselves. Each directory records when it was last opened, directories written by other versions of
+ * EventBus are deleted once unused for {@link #EXPIRY}. Nothing else in the configured directory is touched.
+ * <p>
+ * Generated class names are unique per JVM, and differ between runs. Each entry records its own name,
+ * and the names of every other generated class it references, which are remapped when loaded.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+class ClassCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClassCache.class);
+
+    private static final int MAGIC = 0xEB0CCA5E;
+
+    /**
+     * The directory inside the configured cache directory, holding one directory per generator fingerprint.
+     */
+    static final String CACHE_DIR = "eventbus-classes";
+    /**
+     * The marker file in each fingerprint directory, touched each time it is opened.
+     */
+    static final String MARKER = ".last-used";
+    /**
+     * How long a fingerprint directory may be unused, before being deleted by another version of EventBus.
+     */
+    static final long EXPIRY = TimeUnit.DAYS.toMillis(7);
+    /**
+     * How old a temp file must be, before it is assumed to be left behind by a crash.
+     */
+    private static final long TEMP_EXPIRY = TimeUnit.HOURS.toMillis(1);
+
+    // Any changes to these classes invalidate the entire cache.
+    private static final List<Class<?>> GENERATORS = Arrays.asList(
+            ClassCache.class,
+            EventClassGenerator.class,
+            EventFactoryDecorator.class,
+            EventListenerGenerator.class
+    );
+
+    private final Path dir;
+
+    private ClassCache(Path dir) {
+        this.dir = dir;
+    }
+
+    /**
+     * Opens the cache in the given directory.
+     *
+     * @param root The cache directory.
+     * @return The cache, {@code null} if it could not be opened.
+     */
+    @Nullable
+    public static ClassCache open(Path root) {
+        String fingerprint = generatorFingerprint();
+        if (fingerprint == null) {
+            LOGGER.warn("Unable to read EventBus generator classes. Class cache disabled.");
+            return null;
+        }
+        Path cacheDir = root.resolve(CACHE_DIR);
+        Path dir = cacheDir.resolve(fingerprint);
+        try {
+            Files.createDirectories(dir);
+            touch(dir.resolve(MARKER));
+            deleteExpired(cacheDir, dir);
+            deleteTempFiles(dir);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to open class cache {}. Class cache disabled.", root, ex);
+            return null;
+        }
+        return new ClassCache(dir);
+    }
+
+    /**
+     * Builds the given class, or loads it from the cache.
+     *
+     * @param cache    The cache, {@code null} to always build.
+     * @param key      The cache key, describing every input to the class.
+     * @param classGen The class.
+     * @param deps     The other generated classes referenced by this class, in an order defined by the key.
+     * @return The class bytes.
+     */
+    public static byte[] build(@Nullable ClassCache cache, Key key, ClassBuilder classGen, List<Type> deps) {
+        String cName = classGen.name().getInternalName();
+        String hash = cache != null ? key.build() : null;
+        byte[] bytes = cache != null ? cache.load(hash, cName, deps) : null;
+        if (bytes == null) {
+            bytes = classGen.build();
+            if (cache != null) {
+                cache.store(hash, cName, deps, bytes);
+            }
+        }
+        if (Environment.DEBUG) {
+            debugWriteClass(cName, bytes);
+        }
+        return bytes;
+    }
+
+    @Nullable
+    private byte[] load(String key, String cName, List<Type> deps) {
+        Path file = dir.resolve(key);
+        if (!Files.exists(file)) return null;
+
+        Map<String, String> mappings = new HashMap<>();
+        byte[] bytes;
+        try (DataInputStream is = new DataInputStream(Files.newInputStream(file))) {
+            if (is.readInt() != MAGIC) throw new IOException("Invalid magic.");
+            mappings.put(is.readUTF(), cName);
+            int numDeps = is.readInt();
+            if (numDeps != deps.size()) throw new IOException("Expected " + deps.size() + " dependencies, got " + numDeps);
+            for (Type dep : deps) {
+                mappings.put(is.readUTF(), dep.getInternalName());
+            }
+            bytes = new byte[is.readInt()];
+            is.readFully(bytes);
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to read class cache entry {}, discarding.", file, ex);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+            return null;
+        }
+        mappings.entrySet().removeIf(e -> e.getKey().equals(e.getValue()));
+        if (mappings.isEmpty()) return bytes;
+
+        ClassWriter writer = new ClassWriter(0);
+        new ClassReader(bytes).accept(new ClassRemapper(writer, new SimpleRemapper(mappings)), 0);
+        return writer.toByteArray();
+    }
+
+    private void store(String key, String cName, List<Type> deps, byte[] bytes) {
+        Path file = dir.resolve(key);
+        try {
+            // Written to a temp file first, other processes sharing the cache never see partial entries.
+            Path tmp = Files.createTempFile(dir, key, ".tmp");
+            try (DataOutputStream os = new DataOutputStream(Files.newOutputStream(tmp))) {
+                os.writeInt(MAGIC);
+                os.writeUTF(cName);
+                os.writeInt(deps.size());
+                for (Type dep : deps) {
+                    os.writeUTF(dep.getInternalName());
+                }
+                os.writeInt(bytes.length);
+                os.write(bytes);
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException ex) {
+            LOGGER.warn("Failed to write class cache entry {}.", file, ex);
+        }
+    }
+
+    @Nullable
+    private static String generatorFingerprint() {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (Class<?> generator : GENERATORS) {
+            if (!hashClass(hasher, generator)) return null;
+        }
+        return hasher.hash().toString();
+    }
+
+    private static boolean hashClass(Hasher hasher, Class<?> clazz) {
+        try (InputStream is = clazz.getResourceAsStream("/" + clazz.getName().replace('.', '/') + ".class")) {
+            if (is == null) return false;
+            hasher.putBytes(IOUtils.toBytes(is));
+        } catch (IOException ex) {
+            return false;
+        }
+        Class<?>[] nested = clazz.getDeclaredClasses();
+        Arrays.sort(nested, Comparator.comparing(Class::getName));
+        for (Class<?> inner : nested) {
+            if (!hashClass(hasher, inner)) return false;
+        }
+        return true;
+    }
+
+    private static void touch(Path file) throws IOException {
+        if (Files.exists(file)) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } else {
+            try {
+                Files.createFile(file);
+            } catch (FileAlreadyExistsException ignored) {
+                // Created by another process.
+            }
+        }
+    }
+
+    /**
+     * Deletes every fingerprint directory, other than ours, which has not been opened within {@link #EXPIRY}.
+     * <p>
+     * Only directories containing a {@link #MARKER} are deleted, anything else was not created by us.
+     *
+     * @param cacheDir The {@link #CACHE_DIR}.
+     * @param dir      Our fingerprint directory.
+     */
+    private static void deleteExpired(Path cacheDir, Path dir) throws IOException {
+        long cutoff = System.currentTimeMillis() - EXPIRY;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(cacheDir)) {
+            for (Path other : stream) {
+                if (other.equals(dir) || !Files.isDirectory(other)) continue;
+
+                Path marker = other.resolve(MARKER);
+                if (!Files.isRegularFile(marker) || Files.getLastModifiedTime(marker).toMillis() >= cutoff) continue;
+
+                deleteEntries(other);
+                // Any files we didn't create keep the directory alive.
+                try {
+                    Files.deleteIfExists(other);
+                } catch (DirectoryNotEmptyException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes every entry, temp file and marker in the given fingerprint directory.
+     *
+     * @param dir The fingerprint directory.
+     */
+    private static void deleteEntries(Path dir) throws IOException {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (Files.isRegularFile(path) && (isEntryName(name) || name.endsWith(".tmp"))) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+        Files.deleteIfExists(dir.resolve(MARKER));
+    }
+
+    /**
+     * Deletes any temp files left in the given fingerprint directory by a crash while storing.
+     *
+     * @param dir The fingerprint directory.
+     */
+    private static void deleteTempFiles(Path dir) throws IOException {
+        // Recent temp files may still be being written by another process.
+        long cutoff = System.currentTimeMillis() - TEMP_EXPIRY;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir, "*.tmp")) {
+            for (Path path : stream) {
+                if (Files.isRegularFile(path) && Files.getLastModifiedTime(path).toMillis() < cutoff) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        }
+    }
+
+    private static boolean isEntryName(String name) {
+        // Entries are named by their hex SHA-256 key.
+        if (name.length() != 64) return false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Builds a stable cache key from the inputs of a generated class.
+     * <p>
+     * Only names and descriptors may be added, never anything which varies between runs,
+     * such as the names of other generated classes.
+     */
+    public static final class Key {
+
+        private final StringBuilder desc = new StringBuilder();
+
+        public Key(String kind) {
+            add(kind);
+        }
+
+        /**
+         * Creates a key derived from the given key.
+         *
+         * @param parent The parent key.
+         * @param kind   The kind of class keyed by the new key.
+         */
+        public Key(Key parent, String kind) {
+            desc.append(parent.desc);
+            add(kind);
+        }
+
+        public Key add(String str) {
+            desc.append(str).append('\0');
+            return this;
+        }
+
+        public Key add(int i) {
+            return add(Integer.toString(i));
+        }
+
+        public Key add(boolean b) {
+            return add(b ? "1" : "0");
+        }
+
+        public Key add(Class<?> clazz) {
+            return add(clazz.getName());
+        }
+
+        public Key add(Method method) {
+            return add(method.getDeclaringClass()).add(method.getName()).add(Type.getMethodDescriptor(method));
+        }
+
+        /**
+         * Adds the name, and every public method signature of the given class.
+         *
+         * @param clazz The class.
+         * @return The same key.
+         */
+        public Key addShape(Class<?> clazz) {
+            add(clazz);
+            Method[] methods = clazz.getMethods();
+            Arrays.sort(methods, Comparator.comparing(Method::toGenericString));
+            add(methods.length);
+            for (Method method : methods) {
+                add(method);
+            }
+            return this;
+        }
+
+        public String build() {
+            return Hashing.sha256().hashString(desc, StandardCharsets.UTF_8).toString();
+        }
+    }
+}
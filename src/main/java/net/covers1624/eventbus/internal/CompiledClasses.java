@@ -0,0 +1,118 @@
+package net.covers1624.eventbus.internal;
+
+import net.covers1624.eventbus.Event;
+import net.covers1624.eventbus.EventFactory;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.util.Map;
+
+/**
+ * Locates event classes and factory decorators generated at compile time by the annotation processor.
+ * <p>
+ * Compiled classes sit next to the class they were generated for, named after it with one of the suffixes
+ * below. The suffixes include {@link #VERSION}, compiled classes from an incompatible EventBus version are
+ * simply not found. Each compiled class is verified against what would have been generated at runtime,
+ * anything which doesn't match is generated at runtime instead.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public class CompiledClasses {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompiledClasses.class);
+
+    /**
+     * The version of the compiled class format, must be bumped whenever the annotation processor's output changes.
+     */
+    public static final int VERSION = 2;
+
+    public static final String EVENT_SUFFIX = "$$CompiledImpl" + VERSION;
+    public static final String REUSABLE_EVENT_SUFFIX = "$$CompiledReusableImpl" + VERSION;
+    public static final String DECORATOR_SUFFIX = "$$CompiledDecorator" + VERSION;
+
+    /**
+     * Name of the static field on compiled event classes, holding the comma separated names of each
+     * event field, in constructor order.
+     */
+    public static final String FIELDS_FIELD = "$$FIELDS";
+
+    public static final String ACQUIRE = EventClassGenerator.ACQUIRE;
+    public static final String RELEASE = EventClassGenerator.RELEASE;
+
+    /**
+     * Finds the compiled implementation of the given event.
+     *
+     * @param eventInterface The event.
+     * @param reusable       If the reusable variant is required.
+     * @param fields         The event's fields.
+     * @return The compiled class, {@code null} if there is none, or it does not match.
+     */
+    @Nullable
+    static Class<? extends Event> findEventClass(Class<? extends Event> eventInterface, boolean reusable, Map<String, EventField> fields) {
+        Class<?> clazz = find(eventInterface, reusable ? REUSABLE_EVENT_SUFFIX : EVENT_SUFFIX);
+        if (clazz == null) return null;
+
+        Class<?>[] fieldTypes = fields.values().stream().map(e -> e.type).toArray(Class<?>[]::new);
+        try {
+            if (!eventInterface.isAssignableFrom(clazz)) throw new IllegalStateException("Does not implement the event.");
+            if (!String.join(",", fields.keySet()).equals(clazz.getField(FIELDS_FIELD).get(null))) {
+                throw new IllegalStateException("Event fields do not match.");
+            }
+            if (reusable) {
+                clazz.getConstructor();
+                clazz.getMethod(ACQUIRE, fieldTypes);
+                clazz.getMethod(RELEASE);
+            } else {
+                clazz.getConstructor(fieldTypes);
+            }
+        } catch (ReflectiveOperationException | IllegalStateException ex) {
+            LOGGER.warn("Compiled event class {} does not match event {}, it will be generated at runtime.", clazz.getName(), eventInterface.getName(), ex);
+            return null;
+        }
+        //noinspection unchecked
+        return (Class<? extends Event>) clazz;
+    }
+
+    /**
+     * Finds the compiled decorator for the given factory.
+     * <p>
+     * Compiled decorators receive the invoker of their call site as a constructor argument,
+     * the same class is shared by every factory constructed for the event.
+     *
+     * @param factory       The factory.
+     * @param forwardMethod The factory's sole abstract method.
+     * @return The compiled decorator, {@code null} if there is none, or it does not match.
+     */
+    @Nullable
+    static Class<?> findDecorator(Class<? extends EventFactory> factory, Method forwardMethod) {
+        Class<?> clazz = find(factory, DECORATOR_SUFFIX);
+        if (clazz == null) return null;
+
+        try {
+            if (!factory.isAssignableFrom(clazz) || !EventFactoryInternal.class.isAssignableFrom(clazz)) {
+                throw new IllegalStateException("Does not extend the factory.");
+            }
+            clazz.getConstructor(EventListenerList.class, MethodHandle.class);
+            clazz.getMethod(forwardMethod.getName() + "$checked", forwardMethod.getParameterTypes());
+        } catch (ReflectiveOperationException | IllegalStateException ex) {
+            LOGGER.warn("Compiled decorator {} does not match factory {}, it will be generated at runtime.", clazz.getName(), factory.getName(), ex);
+            return null;
+        }
+        return clazz;
+    }
+
+    @Nullable
+    private static Class<?> find(Class<?> owner, String suffix) {
+        try {
+            // Not initialized, until verified.
+            return Class.forName(owner.getName() + suffix, false, owner.getClassLoader());
+        } catch (ClassNotFoundException ex) {
+            return null;
+        }
+    }
+}
@@ -1,20 +1,31 @@
 package net.covers1624.eventbus.internal;
 
+import com.google.common.collect.ImmutableSet;
 import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.SubscriberLookup.Subscriber;
 import net.covers1624.eventbus.util.ThreadContextClassLoader;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.*;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Consumer;
 
+import static java.util.Objects.requireNonNull;
 import static net.covers1624.quack.util.SneakyUtils.unsafeCast;
 
 /**
@@ -25,10 +36,29 @@ public class EventBusImpl implements EventBus {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(EventBusImpl.class);
 
+    /**
+     * The event interfaces provided by EventBus, implemented by events, but never events themselves.
+     */
+    private static final Set<Class<?>> BASE_EVENTS = ImmutableSet.of(
+            Event.class,
+            CancelableEvent.class,
+            ResultEvent.class,
+            GenericEvent.class
+    );
+
     final Environment environment;
     final MethodParamLookup paramLookup;
+    private final SubscriberLookup subscriberLookup;
+    @Nullable
+    final ScheduledExecutorService regenerationExecutor;
+    final long regenerationDelay;
+    final DispatchBackend dispatchBackend;
+    @Nullable
+    final ClassCache classCache;
 
     private final Map<Class<? extends Event>, EventListenerList> eventLists = new ConcurrentHashMap<>();
+    private final ThreadLocal<RegistrationBatch> batches = new ThreadLocal<>();
+    private volatile boolean frozen;
 
     public EventBusImpl() {
         this(new DefaultEnvironment());
@@ -37,6 +67,12 @@ public class EventBusImpl implements EventBus {
     public EventBusImpl(Environment environment) {
         this.environment = environment;
         paramLookup = new MethodParamLookup(environment);
+        subscriberLookup = new SubscriberLookup(environment, paramLookup);
+        regenerationExecutor = environment.getRegenerationExecutor();
+        regenerationDelay = environment.getRegenerationDelay();
+        dispatchBackend = environment.getDispatchBackend();
+        Path cacheDir = environment.getClassCacheDir();
+        classCache = cacheDir != null ? ClassCache.open(cacheDir) : null;
     }
 
     @Override
@@ -51,86 +87,228 @@ public class EventBusImpl implements EventBus {
     }
 
     private EventListenerList getListenerList(Class<? extends Event> clazz) {
-        return eventLists.computeIfAbsent(clazz, e -> new EventListenerList(this, clazz));
+        EventListenerList list = eventLists.get(clazz);
+        if (list != null) return list;
+
+        if (BASE_EVENTS.contains(clazz)) {
+            throw new IllegalArgumentException("Unable to use " + clazz.getName() + " directly. Listeners must be registered to a specific event.");
+        }
+
+        // Not computeIfAbsent, lists for each super event are created first, recursively.
+        synchronized (eventLists) {
+            list = eventLists.get(clazz);
+            if (list != null) return list;
+
+            List<EventListenerList> parents = new ArrayList<>();
+            for (Class<? extends Event> parent : getSuperEvents(clazz)) {
+                parents.add(getListenerList(parent));
+            }
+            list = new EventListenerList(this, clazz, parents);
+            if (frozen) {
+                list.freeze();
+            }
+            eventLists.put(clazz, list);
+            return list;
+        }
+    }
+
+    /**
+     * Gets every super event interface of the given event, most general first.
+     * <p>
+     * The {@link #BASE_EVENTS} are never super events, listeners can't be registered to every event at once.
+     *
+     * @param clazz The event class.
+     * @return The super events.
+     */
+    private static Set<Class<? extends Event>> getSuperEvents(Class<?> clazz) {
+        Set<Class<? extends Event>> supers = new LinkedHashSet<>();
+        for (Class<?> iFace : clazz.getInterfaces()) {
+            if (!Event.class.isAssignableFrom(iFace) || BASE_EVENTS.contains(iFace)) continue;
+
+            supers.addAll(getSuperEvents(iFace));
+            supers.add(unsafeCast(iFace));
+        }
+        return supers;
+    }
+
+    @Override
+    public void freeze() {
+        frozen = true;
+        for (EventListenerList list : eventLists.values()) {
+            list.freeze();
+        }
     }
 
     @Override
-    public void register(Object object) {
+    public void awaitConsistent() {
+        for (EventListenerList list : eventLists.values()) {
+            list.awaitConsistent();
+        }
+    }
+
+    @Override
+    public ParameterNameStats getParameterNameStats() {
+        return paramLookup.getStats();
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) throw new IllegalStateException("EventBus is frozen, no more listeners may be registered.");
+    }
+
+    @Override
+    public ListenerRegistration register(Object object) {
+        return register(null, object, false);
+    }
+
+    @Override
+    public ListenerRegistration register(MethodHandles.Lookup lookup, Object object) {
+        return register(lookup, object, true);
+    }
+
+    private ListenerRegistration register(@Nullable MethodHandles.Lookup lookup, Object object, boolean nonPublic) {
+        checkNotFrozen();
         Class<?> clazz = object instanceof Class ? (Class<?>) object : object.getClass();
         boolean isStatic = clazz == object;
-        int methodFilter = Modifier.PUBLIC;
-        if (isStatic) {
-            object = null;
-            methodFilter |= Modifier.STATIC;
-        }
+        Object instance = isStatic ? null : object;
+        List<Subscriber> subscribers = subscriberLookup.getSubscribers(clazz, isStatic);
 
-        for (Method method : clazz.getDeclaredMethods()) {
-            LOGGER.info("Considering method {} for event subscription.", method);
-            if (method.getModifiers() != methodFilter) {
-                LOGGER.debug("Method not applicable, invalid flags. ");
-                continue;
+        // All methods are registered as a single batch, copying each event's listeners once.
+        RegistrationBatch batch = runBatch(() -> {
+            for (Subscriber subscriber : subscribers) {
+                if (!Modifier.isPublic(subscriber.method.getModifiers())) {
+                    if (!nonPublic) continue;
+
+                    registerNonPublicSubscriber(requireNonNull(lookup), instance, subscriber);
+                } else {
+                    registerSubscriber(instance, subscriber.method, subscriber);
+                }
             }
-            tryRegisterMethod(object, method);
-        }
+        });
+        return unregisterAll(batch.getRegistrations());
     }
 
-    private void tryRegisterMethod(@Nullable Object object, Method method) {
-        SubscribeEvent sub = method.getDeclaredAnnotation(SubscribeEvent.class);
-        if (sub == null) {
-            LOGGER.debug("Method does not have SubscribeEvent annotation.");
-            return;
-        }
-        Class<? extends Event>[] events = sub.value();
-        if (events.length > 1) throw new IllegalStateException("Unable to register to more than one event. Method: " + method);
-
-        Class<?>[] args = method.getParameterTypes();
-        Class<? extends Event> annotationEvent = events.length == 1 ? events[0] : null;
-        Class<? extends Event> paramEvent = args.length == 1 && Event.class.isAssignableFrom(args[0]) ? unsafeCast(args[0]) : null;
-
-        if (paramEvent != null) {
-            // First and only parameter is an Event, register as an event consumer.
-            if (annotationEvent != null && !paramEvent.equals(annotationEvent)) {
-                LOGGER.error("Parameter and Annotation disagree on event type.");
-                return;
+    @Override
+    public ListenerRegistration registerBatch(Consumer<EventBus> action) {
+        checkNotFrozen();
+        RegistrationBatch batch = runBatch(() -> action.accept(this));
+        return unregisterAll(batch.getRegistrations());
+    }
+
+    /**
+     * Runs the given action, batching all listener modifications it makes on this thread.
+     * <p>
+     * Nested batches are merged into the outer batch. If the action throws, listeners registered by it are discarded.
+     *
+     * @param action The action.
+     * @return The batch.
+     */
+    private RegistrationBatch runBatch(Runnable action) {
+        RegistrationBatch outer = batches.get();
+        RegistrationBatch batch = new RegistrationBatch();
+        batches.set(batch);
+        boolean success = false;
+        try {
+            action.run();
+            success = true;
+        } finally {
+            batches.set(outer);
+            if (!success) {
+                batch.discard();
+            }
+            if (outer != null) {
+                batch.mergeInto(outer);
+            } else {
+                batch.apply();
             }
+        }
+        return batch;
+    }
 
-            LOGGER.info(" Registered event class listener {} for {}.", method, paramEvent.getName());
-            getListenerList(paramEvent)
-                    .registerEventConsumerMethod(object, method, sub.priority());
-        } else if (annotationEvent != null) {
-            List<String> params = paramLookup.getMethodParams(method);
-            if (params.size() != args.length) {
-                LOGGER.error("Unable to extract all method param names. " + method);
-                return;
+    private ListenerRegistration unregisterAll(List<ListenerRegistration> registrations) {
+        return () -> runBatch(() -> {
+            for (ListenerRegistration registration : registrations) {
+                registration.unregister();
             }
+        });
+    }
 
-            EventListenerList eventList = getListenerList(annotationEvent);
-            for (int i = 0; i < params.size(); i++) {
-                String param = params.get(i);
-                if (!eventList.fields.containsKey(param)) {
-                    LOGGER.info("Method parameter not an event field. Param: '{}', Index: {}, Method: {}", param, i, method);
-                    return;
-                }
+    /**
+     * @return The batch active on the current thread, {@code null} if none.
+     */
+    @Nullable
+    RegistrationBatch getBatch() {
+        return batches.get();
+    }
+
+    @Nullable
+    private ListenerRegistration registerNonPublicSubscriber(MethodHandles.Lookup lookup, @Nullable Object object, Subscriber sub) {
+        NonPublicInvoker invoker;
+        try {
+            invoker = NonPublicInvoker.create(environment, lookup, object, sub.method);
+        } catch (IllegalAccessException ex) {
+            throw new IllegalArgumentException("Lookup " + lookup + " does not have access to " + sub.method, ex);
+        }
+        return registerSubscriber(invoker.instance, invoker.method, sub);
+    }
+
+    /**
+     * Registers the given subscriber.
+     *
+     * @param object The instance to call the method on, {@code null} for static methods.
+     * @param method The method to call, either the subscriber's method, or its {@link NonPublicInvoker}.
+     * @param sub    The subscriber.
+     * @return The registration, {@code null} if the subscriber is invalid.
+     */
+    @Nullable
+    private ListenerRegistration registerSubscriber(@Nullable Object object, Method method, Subscriber sub) {
+        EventListenerList eventList = getListenerList(sub.event);
+        List<String> params = sub.params;
+        if (params == null) {
+            LOGGER.debug(" Registered event class listener {} for {}.", sub.method, sub.event.getName());
+            return eventList.registerEventConsumerMethod(object, method, sub.priority, sub.receiveCanceled, sub.parallel, sub.genericFilter);
+        }
+
+        for (int i = 0; i < params.size(); i++) {
+            String param = params.get(i);
+            if (!eventList.fields.containsKey(param)) {
+                LOGGER.info("Method parameter not an event field. Param: '{}', Index: {}, Method: {}", param, i, sub.method);
+                return null;
             }
-            LOGGER.info(" Registered fast invoke event listener {} for {}.", method, annotationEvent.getName());
-            eventList.registerMethod(object, method, sub.priority(), params);
-        } else {
-            LOGGER.debug(" Unable to determine subscribed event. " + method);
         }
+        LOGGER.debug(" Registered fast invoke event listener {} for {}.", sub.method, sub.event.getName());
+        return eventList.registerMethod(object, method, sub.priority, sub.receiveCanceled, sub.parallel, params);
     }
 
     @Override
-    public <T extends EventListener> void registerListener(Class<T> listenerType, EventPriority priority, T func) {
+    public <T extends EventListener> ListenerRegistration registerListener(Class<T> listenerType, EventPriority priority, boolean receiveCanceled, T func) {
+        checkNotFrozen();
         EventListenerList list = getListenerList(EventListenerList.getEventForListener(listenerType));
         LOGGER.info("Registered fast invoke lambda event listener for {}.", list.eventInterface.getName());
-        list.registerListener(listenerType, priority, func);
+        return list.registerListener(listenerType, priority, receiveCanceled, null, func);
     }
 
     @Override
-    public <T extends Event> void registerListener(Class<T> eventClass, EventPriority priority, Consumer<T> func) {
+    public <T extends Event> ListenerRegistration registerListener(Class<T> eventClass, EventPriority priority, boolean receiveCanceled, Consumer<T> func) {
+        checkNotFrozen();
         EventListenerList list = getListenerList(eventClass);
         LOGGER.info("Registered event class lambda event listener for {}.", list.eventInterface.getName());
-        list.registerEventConsumerListener(priority, func);
+        return list.registerEventConsumerListener(priority, receiveCanceled, null, func);
+    }
+
+    @Override
+    public <T extends EventListener> ListenerRegistration registerGenericListener(Class<T> listenerType, Type genericType, EventPriority priority, T func) {
+        checkNotFrozen();
+        EventListenerList list = getListenerList(EventListenerList.getEventForListener(listenerType));
+        LOGGER.info("Registered fast invoke lambda event listener for {}<{}>.", list.eventInterface.getName(), genericType.getTypeName());
+        return list.registerListener(listenerType, priority, false, genericType, func);
+    }
+
+    @Override
+    public <T extends Event> ListenerRegistration registerGenericListener(Class<T> eventClass, Type genericType, EventPriority priority, Consumer<T> func) {
+        checkNotFrozen();
+        EventListenerList list = getListenerList(eventClass);
+        LOGGER.info("Registered event class lambda event listener for {}<{}>.", list.eventInterface.getName(), genericType.getTypeName());
+        return list.registerEventConsumerListener(priority, false, genericType, func);
     }
 
     private static class DefaultEnvironment implements Environment {
@@ -142,6 +320,16 @@ public class EventBusImpl implements EventBus {
             return EventBusImpl.class.getResourceAsStream(resource);
         }
 
+        @Override
+        public List<InputStream> getResourceStreams(String resource) throws IOException {
+            List<InputStream> streams = new ArrayList<>();
+            Enumeration<URL> urls = EventBusImpl.class.getClassLoader().getResources(resource.substring(1));
+            while (urls.hasMoreElements()) {
+                streams.add(urls.nextElement().openStream());
+            }
+            return streams;
+        }
+
         @Override
         public Class<?> defineClass(String cName, byte[] bytes) {
             return cl.defineClass(cName, bytes);
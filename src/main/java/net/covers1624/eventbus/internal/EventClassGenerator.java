@@ -6,16 +6,17 @@ import net.covers1624.quack.asm.ClassBuilder;
 import net.covers1624.quack.asm.ClassBuilder.FieldBuilder;
 import net.covers1624.quack.collection.FastStream;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Type;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static net.covers1624.eventbus.internal.Utils.asmName;
-import static net.covers1624.eventbus.internal.Utils.debugWriteClass;
 import static org.objectweb.asm.Opcodes.*;
 import static org.objectweb.asm.Type.VOID_TYPE;
 
@@ -29,16 +30,50 @@ class EventClassGenerator {
 
     private static final AtomicInteger COUNTER = new AtomicInteger();
 
-    // TODO use a Guava cache with access expiry.
-    private final Map<Class<? extends Event>, Class<? extends Event>> eventClassCache = new ConcurrentHashMap<>();
+    /**
+     * Name of the method generated on reusable event classes, which claims the instance and resets
+     * its fields. Takes all fields as parameters, in the same order as the constructor
+     * of non-reusable event classes. Returns {@code false} if the instance is already in use.
+     */
+    public static final String ACQUIRE = "$$acquire";
+
+    /**
+     * Name of the method generated on reusable event classes, which releases the instance.
+     */
+    public static final String RELEASE = "$$release";
+
+    // Stored on the event interface itself, so the generated classes never prevent the interface from being unloaded.
+    private final ClassValue<EventClasses> eventClasses = new ClassValue<EventClasses>() {
+        @Override
+        protected EventClasses computeValue(Class<?> type) {
+            return new EventClasses();
+        }
+    };
 
     public Class<? extends Event> createEventClass(Environment env, Class<? extends Event> eventInterface) {
+        return createEventClass(env, null, eventInterface, false);
+    }
+
+    public Class<? extends Event> createEventClass(Environment env, @Nullable ClassCache classCache, Class<? extends Event> eventInterface, boolean reusable) {
         synchronized (eventInterface) {
-            return eventClassCache.computeIfAbsent(eventInterface, e -> generateClass(env, e));
+            EventClasses classes = eventClasses.get(eventInterface);
+            Class<? extends Event> clazz = reusable ? classes.reusable : classes.standard;
+            if (clazz != null) return clazz;
+
+            clazz = CompiledClasses.findEventClass(eventInterface, reusable, EventFieldExtractor.getEventFields(eventInterface));
+            if (clazz == null) {
+                clazz = generateClass(env, classCache, eventInterface, reusable);
+            }
+            if (reusable) {
+                classes.reusable = clazz;
+            } else {
+                classes.standard = clazz;
+            }
+            return clazz;
         }
     }
 
-    private Class<? extends Event> generateClass(Environment env, Class<? extends Event> clazz) {
+    private Class<? extends Event> generateClass(Environment env, @Nullable ClassCache classCache, Class<? extends Event> clazz, boolean reusable) {
         Map<String, EventField> fields = EventFieldExtractor.getEventFields(clazz);
 
         ClassBuilder classGen = new ClassBuilder(
@@ -49,7 +84,9 @@ class EventClassGenerator {
 
         List<FieldBuilder> genFields = new ArrayList<>(fields.size());
         for (EventField field : fields.values()) {
-            FieldBuilder genField = classGen.addField(field.isImmutable() ? ACC_PRIVATE | ACC_FINAL : ACC_PRIVATE, field.name, field.getType());
+            // Reusable instances have their fields reset for each fire, so they can't be final.
+            int access = field.isImmutable() && !reusable ? ACC_PRIVATE | ACC_FINAL : ACC_PRIVATE;
+            FieldBuilder genField = classGen.addField(access, field.name, field.getType());
             genFields.add(genField);
 
             classGen.addMethod(ACC_PUBLIC | ACC_FINAL, field.getter).withBody(gen -> {
@@ -68,8 +105,32 @@ class EventClassGenerator {
             }
         }
 
+        Type[] fieldTypes = FastStream.of(fields.values()).map(EventField::getType).toArray(new Type[0]);
+        if (reusable) {
+            generateReusableMethods(classGen, genFields, fieldTypes);
+        } else {
+            generateCtor(classGen, genFields, fieldTypes);
+        }
+
+        ClassCache.Key key = new ClassCache.Key("event").addShape(clazz).add(reusable);
+        byte[] bytes = ClassCache.build(classCache, key, classGen, Collections.emptyList());
+        String cName = classGen.name().getInternalName();
+
+        //noinspection unchecked
+        return (Class<? extends Event>) env.defineClass(cName.replace("/", "."), bytes);
+    }
+
+    // Guarded by the event interface's monitor.
+    private static class EventClasses {
+
+        @Nullable
+        private Class<? extends Event> standard;
+        @Nullable
+        private Class<? extends Event> reusable;
+    }
+
+    private static void generateCtor(ClassBuilder classGen, List<FieldBuilder> genFields, Type[] ctorArgs) {
         // Constructor with all fields as parameters.
-        Type[] ctorArgs = FastStream.of(fields.values()).map(EventField::getType).toArray(new Type[0]);
         classGen.addMethod(ACC_PUBLIC, "<init>", Type.getMethodType(VOID_TYPE, ctorArgs)).withBody(gen -> {
             gen.loadThis();
             gen.methodInsn(INVOKESPECIAL, OBJECT_TYPE, "<init>", Type.getMethodType(VOID_TYPE), false);
@@ -80,14 +141,45 @@ class EventClassGenerator {
             }
             gen.ret();
         });
+    }
 
-        byte[] bytes = classGen.build();
-        String cName = classGen.name().getInternalName();
-        if (Environment.DEBUG) {
-            debugWriteClass(cName, bytes);
-        }
+    private static void generateReusableMethods(ClassBuilder classGen, List<FieldBuilder> genFields, Type[] fieldTypes) {
+        FieldBuilder inUseField = classGen.addField(ACC_PRIVATE, "$$inUse", Type.BOOLEAN_TYPE);
 
-        //noinspection unchecked
-        return (Class<? extends Event>) env.defineClass(cName.replace("/", "."), bytes);
+        // Empty constructor, fields are set by acquire.
+        classGen.addMethod(ACC_PUBLIC, "<init>", Type.getMethodType(VOID_TYPE)).withBody(gen -> {
+            gen.loadThis();
+            gen.methodInsn(INVOKESPECIAL, OBJECT_TYPE, "<init>", Type.getMethodType(VOID_TYPE), false);
+            gen.ret();
+        });
+
+        classGen.addMethod(ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, ACQUIRE, Type.getMethodType(Type.BOOLEAN_TYPE, fieldTypes)).withBody(gen -> {
+            Label acquire = new Label();
+
+            gen.loadThis();
+            gen.getField(inUseField);
+            gen.jump(IFEQ, acquire);
+            gen.ldc(0);
+            gen.ret();
+
+            gen.label(acquire);
+            gen.loadThis();
+            gen.ldc(1);
+            gen.putField(inUseField);
+            for (int i = 0; i < fieldTypes.length; i++) {
+                gen.loadThis();
+                gen.loadParam(i);
+                gen.putField(genFields.get(i));
+            }
+            gen.ldc(1);
+            gen.ret();
+        });
+
+        classGen.addMethod(ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, RELEASE, Type.getMethodType(VOID_TYPE)).withBody(gen -> {
+            gen.loadThis();
+            gen.ldc(0);
+            gen.putField(inUseField);
+            gen.ret();
+        });
     }
 }
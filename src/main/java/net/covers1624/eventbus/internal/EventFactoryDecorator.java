@@ -1,6 +1,5 @@
 package net.covers1624.eventbus.internal;
 
-import net.covers1624.eventbus.Environment;
 import net.covers1624.eventbus.EventFactory;
 import net.covers1624.quack.asm.ClassBuilder;
 import net.covers1624.quack.asm.ClassBuilder.FieldBuilder;
@@ -9,12 +8,18 @@ import org.jetbrains.annotations.ApiStatus;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.Type;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Objects.requireNonNull;
-import static net.covers1624.eventbus.internal.Utils.debugWriteClass;
 import static net.covers1624.eventbus.internal.Utils.synClassName;
 import static org.objectweb.asm.Opcodes.*;
 import static org.objectweb.asm.Type.BOOLEAN_TYPE;
@@ -24,14 +29,19 @@ import static org.objectweb.asm.Type.VOID_TYPE;
  * Created by covers1624 on 17/9/22.
  */
 @ApiStatus.Internal
-class EventFactoryDecorator {
+public class EventFactoryDecorator {
 
     private static final AtomicInteger COUNTER = new AtomicInteger();
 
     private static final Type REGISTERED_EVENT = Type.getType(EventListenerList.class);
     private static final Method M_REBUILD = SneakyUtils.sneaky(() -> EventListenerList.class.getDeclaredMethod("rebuildEventList"));
+    private static final Method M_CLAIM_INVOKER = SneakyUtils.sneaky(() -> EventFactoryDecorator.class.getDeclaredMethod("claimInvoker", Class.class));
 
     private static final Type OBJECT_TYPE = Type.getType(Object.class);
+    private static final Type METHOD_HANDLE_TYPE = Type.getType(MethodHandle.class);
+
+    // Call sites for generated classes which have been defined, but not yet initialized.
+    private static final Map<String, MutableCallSite> PENDING_SITES = new ConcurrentHashMap<>();
 
     /**
      * Generates an implementation of the user provided {@link EventFactory} with {@link EventFactoryInternal} stapled on top.
@@ -43,24 +53,56 @@ class EventFactoryDecorator {
      * - Generate a synthetic class extending user specified {@link EventFactory} class, implementing {@link EventFactoryInternal}.
      * - Generate a constructor taking the {@link EventListenerList} instance.
      * - Generate a synthetic field to store the generated factory instance.
-     * - Generate a synthetic field to mark the factory as dirty.
+     * - Generate a synthetic volatile field to mark the factory as dirty. The factory field is written before
+     *   clearing the flag, and read after checking it, safely publishing the factory to other firing threads.
+     * - Generate a static final field holding the invoker of the event's {@link MutableCallSite}, claimed in the static initializer.
      * - Generate an implementation of {@link EventFactoryInternal#setDirty()} and {@link EventFactoryInternal#isDirty()} which
      *   set and check the dirty flag respectively.
      * - Generate an implementation of {@link EventFactoryInternal#setFactory} which sets the internal factory field
      *   as well as clearing the dirty flag.
-     * - An implementation of the provided {@link EventFactory}'s sole abstract method which:
+     * - A '$checked' copy of the provided {@link EventFactory}'s sole abstract method which:
      *   - Checks the dirty flag
      *   - If the dirty flag is set, regenerates the event factory.
      *   - Forwards through to the factory field's sole abstract method.
+     * - An implementation of the provided {@link EventFactory}'s sole abstract method which calls the invoker.
      * </pre>
+     * The call site initially targets the '$checked' method. Once the event is frozen, it is re-targeted
+     * directly at the generated factory, which the JIT is able to treat as a constant.
+     * <p>
+     * The annotation processor generates an equivalent decorator at compile time, which is used instead
+     * for every factory constructed for the event, see {@link CompiledClasses}. As the one class is shared,
+     * it takes its invoker as a constructor argument, held in a final instance field.
      *
      * @param event The event we are generating a {@link EventFactory} for.
      * @return The generated event factory.
      */
     // TODO cache these?
-    public static EventFactory generate(EventListenerList event) {
-        Class<?> factory = requireNonNull(event.eventFactory);
+    public static EventFactory generate(EventListenerList event, MutableCallSite dispatchSite) {
+        Class<? extends EventFactory> factory = requireNonNull(event.eventFactory);
         Method forwardMethod = requireNonNull(event.factoryMethod);
+        String checkedName = forwardMethod.getName() + "$checked";
+
+        // Prefer the decorator generated at compile time, if the annotation processor ran over the factory.
+        Class<?> compiled = CompiledClasses.findDecorator(factory, forwardMethod);
+        Class<?> c = compiled != null ? compiled : generateClass(event, factory, forwardMethod, checkedName);
+        try {
+            MethodHandle checked = MethodHandles.publicLookup().findVirtual(c, checkedName, MethodType.methodType(forwardMethod.getReturnType(), forwardMethod.getParameterTypes()));
+            dispatchSite.setTarget(checked.asType(dispatchSite.type()));
+            if (compiled != null) {
+                return (EventFactory) c.getConstructor(EventListenerList.class, MethodHandle.class).newInstance(event, dispatchSite.dynamicInvoker());
+            }
+            PENDING_SITES.put(c.getName(), dispatchSite);
+            try {
+                return (EventFactory) c.getConstructor(EventListenerList.class).newInstance(event);
+            } finally {
+                PENDING_SITES.remove(c.getName());
+            }
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static Class<?> generateClass(EventListenerList event, Class<? extends EventFactory> factory, Method forwardMethod, String checkedName) {
         Type factoryType = Type.getType(factory);
 
         // TODO see how these names get generated for inner classes.
@@ -70,7 +112,15 @@ class EventFactoryDecorator {
 
         FieldBuilder eventField = classGen.addField(ACC_PRIVATE | ACC_FINAL, "event", REGISTERED_EVENT);
         FieldBuilder factoryField = classGen.addField(ACC_PRIVATE, "factory", factoryType);
-        FieldBuilder dirtyField = classGen.addField(ACC_PRIVATE, "dirty", BOOLEAN_TYPE);
+        FieldBuilder dirtyField = classGen.addField(ACC_PRIVATE | ACC_VOLATILE, "dirty", BOOLEAN_TYPE);
+        FieldBuilder invokerField = classGen.addField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "invoker", METHOD_HANDLE_TYPE);
+
+        classGen.addMethod(ACC_STATIC, "<clinit>", Type.getMethodType(VOID_TYPE)).withBody(gen -> {
+            gen.ldc(classGen.name());
+            gen.methodInsn(INVOKESTATIC, M_CLAIM_INVOKER);
+            gen.putField(invokerField);
+            gen.ret();
+        });
 
         Type ctorDesc = Type.getMethodType(VOID_TYPE, REGISTERED_EVENT);
         classGen.addMethod(ACC_PUBLIC, "<init>", ctorDesc).withBody(gen -> {
@@ -109,7 +159,22 @@ class EventFactoryDecorator {
             gen.ret();
         });
 
-        classGen.addMethod(ACC_PUBLIC | ACC_FINAL, forwardMethod.getName(), Type.getType(forwardMethod)).withBody(gen -> {
+        Type forwardDesc = Type.getType(forwardMethod);
+        classGen.addMethod(ACC_PUBLIC | ACC_FINAL, forwardMethod.getName(), forwardDesc).withBody(gen -> {
+            gen.getField(invokerField);
+            gen.loadThis();
+            for (int i = 0; i < gen.numParams(); i++) {
+                gen.loadParam(i);
+            }
+            Type[] args = forwardDesc.getArgumentTypes();
+            Type[] invokerArgs = new Type[args.length + 1];
+            invokerArgs[0] = factoryType;
+            System.arraycopy(args, 0, invokerArgs, 1, args.length);
+            gen.methodInsn(INVOKEVIRTUAL, METHOD_HANDLE_TYPE, "invokeExact", Type.getMethodType(forwardDesc.getReturnType(), invokerArgs), false);
+            gen.ret();
+        });
+
+        classGen.addMethod(ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, checkedName, forwardDesc).withBody(gen -> {
             Label fire = new Label();
             Label compute = new Label();
 
@@ -133,17 +198,23 @@ class EventFactoryDecorator {
             gen.ret();
         });
 
-        byte[] bytes = classGen.build();
+        ClassCache.Key key = new ClassCache.Key("decorator").add(factory).add(forwardMethod);
+        byte[] bytes = ClassCache.build(event.bus.classCache, key, classGen, Collections.emptyList());
         String cName = classGen.name().getInternalName();
-        if (Environment.DEBUG) {
-            debugWriteClass(cName, bytes);
-        }
 
-        Class<?> c = event.bus.environment.defineClass(cName.replace("/", "."), bytes);
-        try {
-            return (EventFactory) c.getConstructor(EventListenerList.class).newInstance(event);
-        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
-        }
+        return event.bus.environment.defineClass(cName.replace("/", "."), bytes);
+    }
+
+    /**
+     * Called from the static initializer of generated decorators to obtain their invoker.
+     *
+     * @param decorator The generated decorator class.
+     * @return The invoker for the decorator's call site.
+     */
+    public static MethodHandle claimInvoker(Class<?> decorator) {
+        MutableCallSite site = PENDING_SITES.remove(decorator.getName());
+        if (site == null) throw new IllegalStateException("No pending call site for " + decorator.getName());
+
+        return site.dynamicInvoker();
     }
 }
@@ -10,10 +10,9 @@ import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.Type;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.TreeMap;
 
 import static java.util.Objects.requireNonNull;
 
@@ -27,8 +26,13 @@ import static java.util.Objects.requireNonNull;
 @ApiStatus.Internal
 class EventFieldExtractor {
 
-    // TODO use a Guava cache with access expiry.
-    private final static Map<Class<?>, Map<String, EventField>> eventFields = new ConcurrentHashMap<>();
+    // Stored on the event class itself, so cached fields never prevent the class from being unloaded.
+    private static final ClassValue<Map<String, EventField>> eventFields = new ClassValue<Map<String, EventField>>() {
+        @Override
+        protected Map<String, EventField> computeValue(Class<?> type) {
+            return computeAll(type);
+        }
+    };
 
     /**
      * Gets all {@link EventField} classes for a given class and all
@@ -42,41 +46,38 @@ class EventFieldExtractor {
 
         if (!clazz.isInterface()) throw new IllegalStateException("Expected interface. Got: " + clazz);
 
-        synchronized (clazz) {
-            Map<String, EventField> fields = eventFields.get(clazz);
-            if (fields != null) return fields;
-
-            Map<String, EventField> allFields = new LinkedHashMap<>();
-
-            // Add all parent interfaces.
-            for (Class<?> iFace : clazz.getInterfaces()) {
-                Map<String, EventField> iFaceFields = getEventFields(iFace);
-                for (String fName : iFaceFields.keySet()) {
-                    EventField eField = iFaceFields.get(fName);
-                    EventField existingField = allFields.get(fName);
-
-                    if (existingField == eField) continue; // If this EventField already exists, skip.
-                    if (existingField != null) {
-                        // It may be worth re-evaluating this in the future. It should be safe to allow duplicates
-                        //  provided they have the same types.
-                        throw new IllegalStateException(String.format(
-                                "Found duplicate Event field name '%s'. Declared in '%s' and '%s'.",
-                                fName,
-                                eField.getter.getDeclaringClass().getName(),
-                                existingField.getter.getDeclaringClass().getName()
-                        ));
-                    }
-                    allFields.put(fName, eField);
+        return eventFields.get(clazz);
+    }
+
+    private static Map<String, EventField> computeAll(Class<?> clazz) {
+        Map<String, EventField> allFields = new LinkedHashMap<>();
+
+        // Add all parent interfaces.
+        for (Class<?> iFace : clazz.getInterfaces()) {
+            Map<String, EventField> iFaceFields = getEventFields(iFace);
+            for (String fName : iFaceFields.keySet()) {
+                EventField eField = iFaceFields.get(fName);
+                EventField existingField = allFields.get(fName);
+
+                if (existingField == eField) continue; // If this EventField already exists, skip.
+                if (existingField != null) {
+                    // It may be worth re-evaluating this in the future. It should be safe to allow duplicates
+                    //  provided they have the same types.
+                    throw new IllegalStateException(String.format(
+                            "Found duplicate Event field name '%s'. Declared in '%s' and '%s'.",
+                            fName,
+                            eField.getter.getDeclaringClass().getName(),
+                            existingField.getter.getDeclaringClass().getName()
+                    ));
                 }
+                allFields.put(fName, eField);
             }
+        }
 
-            // Compute fields.
-            allFields.putAll(compute(clazz));
+        // Compute fields.
+        allFields.putAll(compute(clazz));
 
-            fields = ImmutableMap.copyOf(allFields);
-            eventFields.put(clazz, fields);
-            return fields;
-        }
+        return ImmutableMap.copyOf(allFields);
     }
 
     private static Map<String, EventField> compute(Class<?> clazz) {
@@ -120,7 +121,8 @@ class EventFieldExtractor {
             }
 
         }
-        Map<String, EventField> fields = new HashMap<>();
+        // Sorted, the annotation processor relies on the same field order when generating event classes.
+        Map<String, EventField> fields = new TreeMap<>();
         for (Map.Entry<String, FieldBuilder> pairEntry : found.entrySet()) {
             FieldBuilder builder = pairEntry.getValue();
             if (builder.getter == null) throw new IllegalStateException(String.format("Getter for event field '%s' in class '%s' required.", builder.name, clazz.getName()));
@@ -0,0 +1,52 @@
+package net.covers1624.eventbus.internal;
+
+import net.covers1624.eventbus.Event;
+import net.covers1624.eventbus.ReuseEventInstance;
+import net.covers1624.quack.util.SneakyUtils;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Constructor;
+
+/**
+ * Holds the reusable instance of an event for each thread, see {@link ReuseEventInstance}.
+ * <p>
+ * Called from generated dispatchers.
+ * <p>
+ * Each thread only weakly references its instance. A thread's entry for a {@link ThreadLocal} outlives the
+ * {@link ThreadLocal} itself, until the thread happens to expunge it, which would otherwise keep the event class,
+ * and its class loader, alive long after the dispatcher is discarded. An instance collected between fires is
+ * simply recreated.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public final class EventInstances {
+
+    private final Constructor<? extends Event> ctor;
+    private final ThreadLocal<WeakReference<Object>> instances = new ThreadLocal<>();
+
+    public EventInstances(Class<? extends Event> eventClass) {
+        ctor = SneakyUtils.sneaky(() -> eventClass.getConstructor());
+    }
+
+    /**
+     * @return The instance for the current thread, created if required.
+     */
+    public Object get() {
+        WeakReference<Object> ref = instances.get();
+        Object instance = ref != null ? ref.get() : null;
+        if (instance == null) {
+            instance = SneakyUtils.sneaky(() -> ctor.newInstance());
+            instances.set(new WeakReference<>(instance));
+        }
+        return instance;
+    }
+
+    /**
+     * Discards the instance for the current thread, the next {@link #get()} will create a new instance.
+     */
+    public void remove() {
+        instances.remove();
+    }
+}
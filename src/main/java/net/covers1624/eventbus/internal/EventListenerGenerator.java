@@ -1,43 +1,145 @@
 package net.covers1624.eventbus.internal;
 
-import net.covers1624.eventbus.Environment;
+import com.google.common.collect.ImmutableMap;
+import net.covers1624.eventbus.CancelableEvent;
 import net.covers1624.eventbus.Event;
+import net.covers1624.eventbus.GenericEvent;
+import net.covers1624.eventbus.ResultEvent;
+import net.covers1624.eventbus.ResultEvent.Result;
 import net.covers1624.quack.asm.ClassBuilder;
 import net.covers1624.quack.asm.ClassBuilder.FieldBuilder;
+import net.covers1624.quack.asm.MethodBuilder;
+import net.covers1624.quack.asm.MethodBuilder.BodyGenerator;
 import net.covers1624.quack.asm.MethodBuilder.BodyGenerator.Var;
 import net.covers1624.quack.collection.ColUtils;
 import net.covers1624.quack.collection.FastStream;
+import net.covers1624.quack.util.SneakyUtils;
 import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Label;
 import org.objectweb.asm.Type;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static java.util.Objects.requireNonNull;
 import static net.covers1624.eventbus.internal.Utils.asmName;
-import static net.covers1624.eventbus.internal.Utils.debugWriteClass;
 import static org.objectweb.asm.Opcodes.*;
 
 /**
  * Created by covers1624 on 18/9/22.
  */
 @ApiStatus.Internal
-class EventListenerGenerator {
+public class EventListenerGenerator {
 
     private static final AtomicInteger COUNTER = new AtomicInteger();
 
-    private static final EventClassGenerator EVENT_CLASS_GENERATOR = new EventClassGenerator();
+    static final EventClassGenerator EVENT_CLASS_GENERATOR = new EventClassGenerator();
 
-    public static Object generateEventFactory(EventListenerList event) {
+    /**
+     * The estimated bytecode budget for each generated method.
+     * <p>
+     * HotSpot will only inline hot methods smaller than {@code FreqInlineSize} (325 bytes by default),
+     * and refuses to compile methods larger than {@code HugeMethodLimit} (8000 bytes) at all.
+     */
+    static final int METHOD_BUDGET = 300;
+
+    /**
+     * Past this many listener instances, instances are stored in per-chunk arrays instead of
+     * individual fields, keeping the class well within the field and constant pool limits,
+     * and the static initializer assigning them within the method size limit.
+     * <p>
+     * Fields are noticeably faster to load, so these are preferred where possible.
+     */
+    static final int MAX_INSTANCE_FIELDS = 4096;
+
+    /**
+     * The maximum number of listeners in a single parallel batch, keeping the batch's methods well within
+     * {@code HugeMethodLimit}. Larger runs of parallel listeners are split into consecutive batches.
+     */
+    static final int MAX_PARALLEL_BATCH = 64;
+
+    /**
+     * The name of the {@link CancelableEvent} field.
+     */
+    static final String CANCELED_FIELD = "canceled";
+
+    private static final Type RESULT_TYPE = Type.getType(Result.class);
+    private static final Method M_RESULT_MERGE = SneakyUtils.sneaky(() -> ResultSupport.class.getMethod("merge", Result.class, Result.class));
+    private static final Method M_RESULT_DEFAULT = SneakyUtils.sneaky(() -> ResultSupport.class.getMethod("defaultResult"));
+    private static final Map<Result, Method> M_RESULT_CONSTANTS = ImmutableMap.of(
+            Result.DENY, SneakyUtils.sneaky(() -> ResultSupport.class.getMethod("deny")),
+            Result.DEFAULT, M_RESULT_DEFAULT,
+            Result.ALLOW, SneakyUtils.sneaky(() -> ResultSupport.class.getMethod("allow"))
+    );
+
+    private static final Type GENERIC_DISPATCH_TABLE_TYPE = Type.getType(GenericDispatchTable.class);
+    private static final Method M_GENERIC_DISPATCH_TABLE_GET = SneakyUtils.sneaky(() -> GenericDispatchTable.class.getMethod("get", java.lang.reflect.Type.class));
+
+    private static final Type ASYNC_FIRE_TASK_TYPE = Type.getType(AsyncFireTask.class);
+    private static final Type RECURSIVE_ACTION_TYPE = Type.getType(RecursiveAction.class);
+    private static final Type FORK_JOIN_POOL_TYPE = Type.getType(ForkJoinPool.class);
+    private static final Type FORK_JOIN_TASK_TYPE = Type.getType(ForkJoinTask.class);
+    private static final Method M_PARALLEL_INVOKE_ALL = SneakyUtils.sneaky(() -> ParallelSupport.class.getMethod("invokeAll", ForkJoinPool.class, ForkJoinTask[].class));
+
+    private static final Type EXECUTOR_TYPE = Type.getType(Executor.class);
+    private static final Method M_EXECUTOR_EXECUTE = SneakyUtils.sneaky(() -> Executor.class.getMethod("execute", Runnable.class));
+
+    private static final Type EVENT_INSTANCES_TYPE = Type.getType(EventInstances.class);
+    private static final Method M_EVENT_INSTANCES_GET = SneakyUtils.sneaky(() -> EventInstances.class.getMethod("get"));
+    private static final Method M_EVENT_INSTANCES_REMOVE = SneakyUtils.sneaky(() -> EventInstances.class.getMethod("remove"));
+
+    private static final Method M_CLAIM_INSTANCES = SneakyUtils.sneaky(() -> EventListenerGenerator.class.getMethod("claimInstances", Class.class));
+
+    private static final Type OBJECT_TYPE = Type.getType(Object.class);
+    private static final Type OBJECT_ARRAY_TYPE = Type.getType(Object[].class);
+    private static final Type OBJECT_ARRAY_ARRAY_TYPE = Type.getType(Object[][].class);
+
+    // Listener instances for generated dispatchers which have been defined, but not yet initialized.
+    private static final Map<String, Object[]> PENDING_INSTANCES = new ConcurrentHashMap<>();
+
+    /**
+     * Generates a class implementing the event's {@link net.covers1624.eventbus.EventFactory}, which directly
+     * calls every registered listener.
+     * <p>
+     * Small listener lists are called directly from the factory method. Larger lists are split into a tree of
+     * private 'chunk' methods, each within {@link #METHOD_BUDGET}, so the JIT is able to compile and inline them,
+     * and no single method grows past the class file limits.
+     * <p>
+     * The event instance, if required, is only constructed right before the first listener which consumes it.
+     * <p>
+     * For {@link ResultEvent}s with a {@link net.covers1624.eventbus.ShortCircuit} policy, dispatch jumps to the end
+     * as soon as the result is one of the policy's results.
+     * <p>
+     * Listener instances are stored in static final fields, claimed by the static initializer via {@link #claimInstances}.
+     * Each dispatcher class is only instantiated once, and unlike instance fields, the JIT trusts static finals as
+     * constants, allowing it to inline listeners without a type check of the loaded instance.
+     *
+     * @param event     The event to generate the factory for.
+     * @param listeners The listeners to call, in order.
+     * @return The generated factory instance.
+     */
+    public static Object generateEventFactory(EventListenerList event, List<ListenerHandle> listeners) {
         Class<?> eventFactory = requireNonNull(event.eventFactory);
         Method factoryMethod = requireNonNull(event.factoryMethod);
-        List<ListenerHandle> listeners = event.getListeners();
         List<String> factoryParams = event.bus.paramLookup.getMethodParams(factoryMethod);
 
         ClassBuilder classGen = new ClassBuilder(
@@ -45,131 +147,1248 @@ class EventListenerGenerator {
                 Type.getObjectType(asmName(eventFactory) + "$$Impl$$" + COUNTER.getAndIncrement())
         );
         classGen.withParent(Type.getType(eventFactory));
+        ClassCache.Key key = listenersKey(event, factoryParams, listeners);
+        // Every other generated class referenced by the factory, for the class cache.
+        List<Type> deps = new ArrayList<>();
+
+        Class<?> returnType = requireNonNull(event.dispatchReturnType);
+        boolean returnsEventInstance = returnType == event.eventInterface;
+        boolean returnsCanceled = returnType == boolean.class;
+        boolean returnsResult = returnType == Result.class;
+        // Chunks are only able to thread a single state through their return value. When both the canceled state
+        // and the result may be set by fast invoke listeners, the event is materialized at the first listener setting the result.
+        boolean materializeForResult = event.cancelable && event.resultEvent;
+        boolean requiresEventClass = returnsEventInstance
+                || ColUtils.anyMatch(listeners, e -> !e.isFastInvoke() || materializeForResult && e.setsResult());
+
+        Class<? extends Event> eventClass = null;
+        Map<String, Method> eventGetters = new HashMap<>();
+        Method canceledSetter = null;
+        Method resultSetter = null;
+        if (requiresEventClass) {
+            eventClass = EVENT_CLASS_GENERATOR.createEventClass(event.bus.environment, event.bus.classCache, event.eventInterface, event.reuseEventInstance);
+            deps.add(Type.getType(eventClass));
+            Map<String, Method> methods = FastStream.of(eventClass.getDeclaredMethods())
+                    .toImmutableMap(Method::getName, e -> e);
+
+            for (EventField value : event.fields.values()) {
+                eventGetters.put(value.name, methods.get(value.getter.getName()));
+            }
+            if (event.cancelable) {
+                canceledSetter = methods.get(requireNonNull(event.fields.get(CANCELED_FIELD).setter).getName());
+            }
+            if (event.resultEvent) {
+                resultSetter = methods.get(requireNonNull(event.fields.get(EventListenerList.RESULT_FIELD).setter).getName());
+            }
+        }
+
+        int numInstances = FastStream.of(listeners).filter(e -> e.instance != null).count();
+        boolean useInstanceArrays = numInstances > MAX_INSTANCE_FIELDS;
 
-        boolean returnsEventInstance = factoryMethod.getReturnType() != void.class;
-        boolean requiresEventClass = returnsEventInstance || ColUtils.anyMatch(listeners, e -> !e.isFastInvoke());
+        // The event instance is only materialized right before the first listener which requires it.
+        // Nothing can mutate the event before this point, so prior listeners are given the factory parameters.
+        int materializeAt = listeners.size();
+        if (eventClass != null) {
+            for (int i = 0; i < listeners.size(); i++) {
+                ListenerHandle listener = listeners.get(i);
+                if (!listener.isFastInvoke() || materializeForResult && listener.setsResult()) {
+                    materializeAt = i;
+                    break;
+                }
+            }
+        }
+        List<ListenerHandle> preListeners = listeners.subList(0, materializeAt);
+        List<ListenerHandle> postListeners = listeners.subList(materializeAt, listeners.size());
+
+        // Before the event is materialized, the canceled state is kept in a local, and threaded through chunks.
+        boolean trackCanceled = event.cancelable && (returnsCanceled || ColUtils.anyMatch(preListeners, ListenerHandle::canCancel));
+        // Likewise for the result, which is only threaded through chunks if not already tracking the canceled state.
+        boolean preSetsResult = event.resultEvent && ColUtils.anyMatch(preListeners, ListenerHandle::setsResult);
+        boolean trackResult = event.resultEvent && (returnsResult || preSetsResult);
+        assert !(trackCanceled && preSetsResult);
+
+        // Runs of parallel listeners are dispatched as a batch, which must not be split across chunks.
+        // Parallel dispatch is not supported when instances are stored in arrays.
+        List<List<ListenerHandle>> preUnits = groupParallel(event, preListeners, !useInstanceArrays);
+        List<List<ListenerHandle>> postUnits = groupParallel(event, postListeners, !useInstanceArrays);
+        boolean parallel = ColUtils.anyMatch(preUnits, e -> e.size() > 1) || ColUtils.anyMatch(postUnits, e -> e.size() > 1);
 
-        // Max method params is 255, 254 minus the 'this' type.
-        boolean requiresArrayCtor = listeners.size() > 254;
+        // Load of 'this', the index, each argument, and the invoke.
+        int batchCallSize = 1 + 2 + (factoryParams.size() + 1) * 2 + 3;
+        List<List<ListenerHandle>> preLeaves = partitionLeaves(preUnits, batchCallSize);
+        List<List<ListenerHandle>> postLeaves = partitionLeaves(postUnits, batchCallSize);
+        List<List<ListenerHandle>> leaves = new ArrayList<>(preLeaves);
+        leaves.addAll(postLeaves);
+        boolean chunked = leaves.size() > 1;
+
+        FieldBuilder eventInstancesField = null;
+        if (eventClass != null && event.reuseEventInstance) {
+            eventInstancesField = classGen.addField(ACC_PRIVATE | ACC_FINAL, "eventInstances", EVENT_INSTANCES_TYPE);
+        }
+        FieldBuilder executorField = null;
+        if (event.async) {
+            executorField = classGen.addField(ACC_PRIVATE | ACC_FINAL, "executor", EXECUTOR_TYPE);
+        }
+        FieldBuilder parallelPoolField = null;
+        if (parallel) {
+            parallelPoolField = classGen.addField(ACC_PRIVATE | ACC_FINAL, "parallelPool", FORK_JOIN_POOL_TYPE);
+        }
 
-        AtomicInteger instanceFieldCounter = new AtomicInteger();
         Map<ListenerHandle, FieldBuilder> instanceFields = new LinkedHashMap<>();
-        for (ListenerHandle listener : listeners) {
-            if (listener.instance != null) {
-                FieldBuilder instanceField = classGen.addField(
-                        ACC_PRIVATE | ACC_FINAL,
-                        "instance$" + instanceFieldCounter.getAndIncrement(),
-                        Type.getType(listener.handle.getDeclaringClass())
-                );
-                instanceFields.put(listener, instanceField);
+        FieldBuilder instanceArrayField = null;
+        if (!useInstanceArrays) {
+            AtomicInteger instanceFieldCounter = new AtomicInteger();
+            for (ListenerHandle listener : listeners) {
+                if (listener.instance != null) {
+                    FieldBuilder instanceField = classGen.addField(
+                            ACC_PRIVATE | ACC_STATIC | ACC_FINAL,
+                            "instance$" + instanceFieldCounter.getAndIncrement(),
+                            Type.getType(listener.handle.getDeclaringClass())
+                    );
+                    instanceFields.put(listener, instanceField);
+                }
             }
+        } else {
+            instanceArrayField = classGen.addField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "instances", OBJECT_ARRAY_ARRAY_TYPE);
         }
 
-        classGen.addMethod(ACC_PUBLIC | ACC_FINAL, factoryMethod).withBody(gen -> {
+        // Each chunk method receives the factory parameters, chunks after the materialization point
+        // additionally receive the event instance.
+        // When tracking the canceled state, or result, chunks before the materialization point receive and return it.
+        List<Type> chunkArgs = FastStream.of(factoryMethod.getParameterTypes()).map(Type::getType).toList();
+        Type preChunkDesc;
+        if (trackCanceled || trackResult) {
+            Type stateType = trackCanceled ? Type.BOOLEAN_TYPE : RESULT_TYPE;
+            List<Type> preChunkArgs = new ArrayList<>(chunkArgs);
+            preChunkArgs.add(stateType);
+            preChunkDesc = Type.getMethodType(stateType, preChunkArgs.toArray(new Type[0]));
+        } else {
+            preChunkDesc = Type.getMethodType(Type.VOID_TYPE, chunkArgs.toArray(new Type[0]));
+        }
+        if (eventClass != null) {
+            chunkArgs.add(Type.getType(eventClass));
+        }
+        Type postChunkDesc = Type.getMethodType(Type.VOID_TYPE, chunkArgs.toArray(new Type[0]));
+
+        GenContext genCtx = new GenContext(classGen, event, factoryParams, eventGetters, canceledSetter, resultSetter, instanceFields, instanceArrayField, parallelPoolField);
+        if (parallel) {
+            genCtx.generateParallelBatches(preUnits, null, key, deps);
+            genCtx.generateParallelBatches(postUnits, eventClass != null ? Type.getType(eventClass) : null, key, deps);
+        }
+        List<String> preRootCalls = new ArrayList<>();
+        List<String> postRootCalls = new ArrayList<>();
+        if (chunked) {
+            // Both chunk trees share the root method's budget.
+            int rootBudget = !preLeaves.isEmpty() && !postLeaves.isEmpty() ? METHOD_BUDGET / 2 : METHOD_BUDGET;
+            preRootCalls = genCtx.generateChunkTree(preLeaves, 0, preChunkDesc, factoryParams, rootBudget);
+            postRootCalls = genCtx.generateChunkTree(postLeaves, preLeaves.size(), postChunkDesc, factoryParams, rootBudget);
+        }
+
+        Class<? extends Event> finalEventClass = eventClass;
+        List<String> finalPreRootCalls = preRootCalls;
+        List<String> finalPostRootCalls = postRootCalls;
+        FieldBuilder finalEventInstancesField = eventInstancesField;
+        // Async factories submit a task calling the synchronous dispatch method.
+        MethodBuilder dispatchMethod;
+        if (!event.async) {
+            dispatchMethod = classGen.addMethod(ACC_PUBLIC | ACC_FINAL, factoryMethod);
+        } else {
+            String syncName = factoryMethod.getName() + "$sync";
+            Type syncDesc = Type.getMethodType(Type.getType(returnType), Type.getArgumentTypes(factoryMethod));
+            dispatchMethod = classGen.addMethod(ACC_PUBLIC | ACC_FINAL | ACC_SYNTHETIC, syncName, syncDesc);
+            Type taskType = generateTask(event, new ClassCache.Key(key, "task"), Collections.singletonList(classGen.name()), classGen.name().getInternalName() + "$$Task", ASYNC_FIRE_TASK_TYPE, "fire", Type.getMethodType(OBJECT_TYPE), classGen.name(), syncName, syncDesc);
+            deps.add(taskType);
+            FieldBuilder asyncExecutorField = requireNonNull(executorField);
+            classGen.addMethod(ACC_PUBLIC | ACC_FINAL, factoryMethod).withBody(gen -> {
+                Var taskVar = gen.newVar(taskType);
+                gen.typeInsn(NEW, taskType);
+                gen.insn(DUP);
+                gen.loadThis();
+                for (int i = 0; i < gen.numParams(); i++) {
+                    gen.loadParam(i);
+                }
+                gen.methodInsn(INVOKESPECIAL, taskType, "<init>", taskCtorDesc(classGen.name(), syncDesc), false);
+                gen.store(taskVar);
+
+                gen.loadThis();
+                gen.getField(asyncExecutorField);
+                gen.load(taskVar);
+                gen.methodInsn(INVOKEINTERFACE, M_EXECUTOR_EXECUTE);
+                gen.load(taskVar);
+                gen.ret();
+            });
+        }
+        dispatchMethod.withBody(gen -> {
             Map<String, Var> fieldVars = new HashMap<>();
+            List<Var> paramVars = new ArrayList<>();
             for (int i = 0; i < factoryParams.size(); i++) {
                 fieldVars.put(factoryParams.get(i), gen.param(i));
+                paramVars.add(gen.param(i));
             }
 
-            Map<String, Method> eventGetters = new HashMap<>();
-            Var eventVar = null;
-            if (requiresEventClass) {
-                Class<? extends Event> eventClass = EVENT_CLASS_GENERATOR.createEventClass(event.bus.environment, event.eventInterface);
-                Constructor<?> ctor = eventClass.getConstructors()[0];
-                Map<String, Method> methods = FastStream.of(eventClass.getDeclaredMethods())
-                        .toImmutableMap(Method::getName, e -> e);
+            Var canceledVar = null;
+            if (trackCanceled) {
+                // Replaces the factory's canceled parameter, if it has one.
+                canceledVar = gen.newVar(Type.BOOLEAN_TYPE);
+                emitFactoryValue(gen, event.fields.get(CANCELED_FIELD), fieldVars);
+                gen.store(canceledVar);
+                fieldVars.put(CANCELED_FIELD, canceledVar);
+            }
+
+            Var resultVar = null;
+            if (trackResult) {
+                // Replaces the factory's result parameter, if it has one.
+                resultVar = gen.newVar(RESULT_TYPE);
+                emitFactoryValue(gen, event.fields.get(EventListenerList.RESULT_FIELD), fieldVars);
+                gen.store(resultVar);
+                fieldVars.put(EventListenerList.RESULT_FIELD, resultVar);
+            }
+
+            // The factory may provide a result which already ends dispatch.
+            boolean factoryResult = event.resultEvent && factoryParams.contains(EventListenerList.RESULT_FIELD);
+            Label preEnd = new Label();
+            if (factoryResult && !preListeners.isEmpty()) {
+                genCtx.emitShortCircuit(gen, fieldVars.get(EventListenerList.RESULT_FIELD), preEnd);
+            }
 
-                for (EventField value : event.fields.values()) {
-                    eventGetters.put(value.name, methods.get(value.getter.getName()));
+            if (!chunked) {
+                genCtx.emitListeners(gen, preListeners, fieldVars, null, null, false);
+            } else {
+                List<Var> chunkVars = new ArrayList<>(paramVars);
+                if (canceledVar != null) {
+                    chunkVars.add(canceledVar);
+                } else if (resultVar != null) {
+                    chunkVars.add(resultVar);
                 }
+                genCtx.emitChunkCalls(gen, finalPreRootCalls, preChunkDesc, chunkVars, null);
+            }
+            gen.label(preEnd);
 
-                eventVar = gen.newVar(Type.getType(eventClass));
-                gen.typeInsn(NEW, Type.getType(eventClass));
+            Var eventVar = null;
+            if (finalEventInstancesField != null) {
+                eventVar = gen.newVar(Type.getType(finalEventClass));
+                emitAcquireEvent(gen, event, finalEventClass, finalEventInstancesField, fieldVars, eventVar);
+            } else if (finalEventClass != null) {
+                Constructor<?> ctor = finalEventClass.getConstructors()[0];
+                eventVar = gen.newVar(Type.getType(finalEventClass));
+                gen.typeInsn(NEW, Type.getType(finalEventClass));
                 gen.insn(DUP);
-                for (String s : event.fields.keySet()) {
-                    gen.load(fieldVars.get(s));
+                for (EventField field : event.fields.values()) {
+                    emitFactoryValue(gen, field, fieldVars);
                 }
-                gen.methodInsn(INVOKESPECIAL, Type.getType(eventClass), "<init>", Type.getType(ctor), false);
+                gen.methodInsn(INVOKESPECIAL, Type.getType(finalEventClass), "<init>", Type.getType(ctor), false);
                 gen.store(eventVar);
             }
 
-            for (ListenerHandle listener : listeners) {
-                if (listener.instance != null) {
-                    // Emit load of instance field for handle invoke.
-                    gen.loadThis();
-                    gen.getField(instanceFields.get(listener));
-                }
-                // Emit all parameters for handle invoke.
-                if (listener.isFastInvoke()) {
-                    // Emit each parameter as declared by the handle.
-                    for (String param : listener.getParams()) {
-                        EventField field = event.fields.get(param);
-                        if (field.isImmutable() || eventVar == null) {
-                            // Field is immutable, we can just emit the param.
-                            gen.load(fieldVars.get(param));
-                        } else {
-                            // Field is not immutable, emit virtual call to the event class getter. (avoid invokeinterface)
-                            gen.load(eventVar);
-                            gen.methodInsn(INVOKEVIRTUAL, eventGetters.get(param));
-                        }
-                    }
-                } else {
-                    // Emit just a load of the event class
-                    gen.load(eventVar);
+            Label postEnd = new Label();
+            if ((factoryResult || preSetsResult) && !postListeners.isEmpty()) {
+                genCtx.emitShortCircuit(gen, fieldVars.get(EventListenerList.RESULT_FIELD), postEnd);
+            }
+            if (!chunked) {
+                genCtx.emitListeners(gen, postListeners, fieldVars, eventVar, null, false);
+            } else {
+                List<Var> chunkVars = new ArrayList<>(paramVars);
+                if (eventVar != null) {
+                    chunkVars.add(eventVar);
                 }
-                // Emit invoke of handle
-                gen.methodInsn(listener.handle);
+                genCtx.emitChunkCalls(gen, finalPostRootCalls, postChunkDesc, chunkVars, eventVar);
+            }
+            gen.label(postEnd);
+            if (finalEventInstancesField != null) {
+                gen.load(eventVar);
+                gen.methodInsn(INVOKEVIRTUAL, Type.getType(finalEventClass), EventClassGenerator.RELEASE, Type.getMethodType(Type.VOID_TYPE), false);
             }
             if (returnsEventInstance) {
                 gen.load(eventVar);
+            } else if (returnsCanceled) {
+                if (eventVar != null) {
+                    gen.load(eventVar);
+                    gen.methodInsn(INVOKEVIRTUAL, eventGetters.get(CANCELED_FIELD));
+                } else {
+                    gen.load(requireNonNull(canceledVar));
+                }
+            } else if (returnsResult) {
+                if (eventVar != null) {
+                    gen.load(eventVar);
+                    gen.methodInsn(INVOKEVIRTUAL, eventGetters.get(EventListenerList.RESULT_FIELD));
+                } else {
+                    gen.load(requireNonNull(resultVar));
+                }
             }
             gen.ret();
         });
 
-        Type[] ctorArgs;
-        if (!requiresArrayCtor) {
-            ctorArgs = FastStream.of(instanceFields.values())
-                    .map(FieldBuilder::desc)
-                    .toArray(new Type[0]);
-        } else {
-            ctorArgs = new Type[] { Type.getType("[Ljava/lang/Object;") };
+        List<Type> ctorArgs = new ArrayList<>();
+        if (eventInstancesField != null) {
+            ctorArgs.add(EVENT_INSTANCES_TYPE);
+        }
+        if (executorField != null) {
+            ctorArgs.add(EXECUTOR_TYPE);
         }
-        classGen.addMethod(ACC_PUBLIC, "<init>", Type.getMethodType(Type.VOID_TYPE, ctorArgs)).withBody(gen -> {
+        if (parallelPoolField != null) {
+            ctorArgs.add(FORK_JOIN_POOL_TYPE);
+        }
+        FieldBuilder finalInstanceArrayField = instanceArrayField;
+        FieldBuilder finalExecutorField = executorField;
+        FieldBuilder finalParallelPoolField = parallelPoolField;
+        classGen.addMethod(ACC_PUBLIC, "<init>", Type.getMethodType(Type.VOID_TYPE, ctorArgs.toArray(new Type[0]))).withBody(gen -> {
             gen.loadThis();
             gen.methodInsn(INVOKESPECIAL, Type.getType(eventFactory), "<init>", Type.getMethodType(Type.VOID_TYPE), false);
 
             int i = 0;
-            for (FieldBuilder value : instanceFields.values()) {
+            if (finalEventInstancesField != null) {
                 gen.loadThis();
-                if (!requiresArrayCtor) {
-                    gen.loadParam(i++);
-                } else {
-                    gen.loadParam(0);
-                    gen.ldc(i++);
-                    gen.insn(AALOAD);
-                    gen.typeInsn(CHECKCAST, value.desc());
-                }
-                gen.putField(value);
+                gen.loadParam(i++);
+                gen.putField(finalEventInstancesField);
+            }
+            if (finalExecutorField != null) {
+                gen.loadThis();
+                gen.loadParam(i++);
+                gen.putField(finalExecutorField);
+            }
+            if (finalParallelPoolField != null) {
+                gen.loadThis();
+                gen.loadParam(i++);
+                gen.putField(finalParallelPoolField);
             }
             gen.ret();
         });
 
-        byte[] bytes = classGen.build();
-        String cName = classGen.name().getInternalName();
-        if (Environment.DEBUG) {
-            debugWriteClass(cName, bytes);
+        if (finalInstanceArrayField != null || !instanceFields.isEmpty()) {
+            classGen.addMethod(ACC_STATIC, "<clinit>", Type.getMethodType(Type.VOID_TYPE)).withBody(gen -> {
+                gen.ldc(classGen.name());
+                gen.methodInsn(INVOKESTATIC, M_CLAIM_INSTANCES);
+                if (finalInstanceArrayField != null) {
+                    gen.typeInsn(CHECKCAST, OBJECT_ARRAY_ARRAY_TYPE);
+                    gen.putField(finalInstanceArrayField);
+                } else {
+                    Var instancesVar = gen.newVar(OBJECT_ARRAY_TYPE);
+                    gen.store(instancesVar);
+                    int instanceIndex = 0;
+                    for (FieldBuilder value : instanceFields.values()) {
+                        gen.load(instancesVar);
+                        gen.ldc(instanceIndex++);
+                        gen.insn(AALOAD);
+                        gen.typeInsn(CHECKCAST, value.desc());
+                        gen.putField(value);
+                    }
+                }
+                gen.ret();
+            });
         }
+
+        byte[] bytes = ClassCache.build(event.bus.classCache, key, classGen, deps);
+        String cName = classGen.name().getInternalName();
         Class<?> clazz = event.bus.environment.defineClass(cName.replace("/", "."), bytes);
         Constructor<?> ctor = clazz.getConstructors()[0];
 
         try {
-            Object[] args = FastStream.of(instanceFields.keySet()).map(e -> e.instance).toArray();
-            if (requiresArrayCtor) {
-                args = new Object[] { args };
+            List<Object> args = new ArrayList<>();
+            if (eventInstancesField != null) {
+                args.add(new EventInstances(eventClass));
+            }
+            if (executorField != null) {
+                args.add(event.bus.environment.getAsyncExecutor());
+            }
+            if (parallelPoolField != null) {
+                args.add(event.bus.environment.getParallelPool());
             }
-            return ctor.newInstance(args);
+            if (useInstanceArrays) {
+                Object[][] instances = new Object[leaves.size()][];
+                for (int i = 0; i < leaves.size(); i++) {
+                    List<ListenerHandle> leafInstances = FastStream.of(leaves.get(i)).filter(e -> e.instance != null).toList();
+                    instances[i] = (Object[]) Array.newInstance(leafInstanceType(leaves.get(i)), leafInstances.size());
+                    for (int j = 0; j < leafInstances.size(); j++) {
+                        instances[i][j] = leafInstances.get(j).instance;
+                    }
+                }
+                PENDING_INSTANCES.put(clazz.getName(), instances);
+            } else if (!instanceFields.isEmpty()) {
+                PENDING_INSTANCES.put(clazz.getName(), FastStream.of(instanceFields.keySet()).map(e -> e.instance).toArray());
+            }
+            // Initializes the class, claiming the instances.
+            return ctor.newInstance(args.toArray());
         } catch (InstantiationException | IllegalAccessException | InvocationTargetException e) {
             throw new RuntimeException(e);
+        } finally {
+            PENDING_INSTANCES.remove(clazz.getName());
+        }
+    }
+
+    /**
+     * Called from the static initializer of generated dispatchers to obtain their listener instances.
+     *
+     * @param dispatcher The generated dispatcher class.
+     * @return The listener instances, in field order. Or the per-chunk instance arrays, if stored in arrays.
+     */
+    public static Object[] claimInstances(Class<?> dispatcher) {
+        Object[] instances = PENDING_INSTANCES.remove(dispatcher.getName());
+        if (instances == null) throw new IllegalStateException("No pending instances for " + dispatcher.getName());
+
+        return instances;
+    }
+
+    /**
+     * Generates the factory for a {@link GenericEvent}.
+     * <p>
+     * A dispatcher is generated for each generic type with filtered listeners, containing those listeners and
+     * all unfiltered listeners. Types without filtered listeners share a dispatcher containing only the
+     * unfiltered listeners. The returned factory selects the dispatcher for each fire via a {@link GenericDispatchTable}.
+     *
+     * @param event The event to generate the factory for.
+     * @return The generated factory instance.
+     */
+    public static Object generateGenericEventFactory(EventListenerList event) {
+        Class<?> eventFactory = requireNonNull(event.eventFactory);
+        Method factoryMethod = requireNonNull(event.factoryMethod);
+        List<ListenerHandle> listeners = event.getDispatchListeners();
+        List<String> factoryParams = event.bus.paramLookup.getMethodParams(factoryMethod);
+
+        Object wildcard = generateEventFactory(event, FastStream.of(listeners).filter(e -> e.genericType == null).toList());
+        Map<java.lang.reflect.Type, Object> dispatchers = new HashMap<>();
+        for (ListenerHandle listener : listeners) {
+            java.lang.reflect.Type type = listener.genericType;
+            if (type == null || dispatchers.containsKey(type)) continue;
+
+            dispatchers.put(type, generateEventFactory(event, FastStream.of(listeners).filter(e -> e.genericType == null || e.genericType.equals(type)).toList()));
+        }
+        GenericDispatchTable table = new GenericDispatchTable(wildcard, dispatchers);
+
+        ClassBuilder classGen = new ClassBuilder(
+                ACC_PUBLIC | ACC_SUPER | ACC_FINAL | ACC_SYNTHETIC,
+                Type.getObjectType(asmName(eventFactory) + "$$Generic$$" + COUNTER.getAndIncrement())
+        );
+        classGen.withParent(Type.getType(eventFactory));
+        FieldBuilder tableField = classGen.addField(ACC_PRIVATE | ACC_FINAL, "table", GENERIC_DISPATCH_TABLE_TYPE);
+
+        int genericTypeParam = factoryParams.indexOf(EventListenerList.GENERIC_TYPE_FIELD);
+        classGen.addMethod(ACC_PUBLIC | ACC_FINAL, factoryMethod).withBody(gen -> {
+            gen.loadThis();
+            gen.getField(tableField);
+            gen.loadParam(genericTypeParam);
+            gen.methodInsn(INVOKEVIRTUAL, M_GENERIC_DISPATCH_TABLE_GET);
+            gen.typeInsn(CHECKCAST, Type.getType(eventFactory));
+            for (int i = 0; i < gen.numParams(); i++) {
+                gen.loadParam(i);
+            }
+            gen.methodInsn(INVOKEVIRTUAL, factoryMethod);
+            gen.ret();
+        });
+
+        classGen.addMethod(ACC_PUBLIC, "<init>", Type.getMethodType(Type.VOID_TYPE, GENERIC_DISPATCH_TABLE_TYPE)).withBody(gen -> {
+            gen.loadThis();
+            gen.methodInsn(INVOKESPECIAL, Type.getType(eventFactory), "<init>", Type.getMethodType(Type.VOID_TYPE), false);
+            gen.loadThis();
+            gen.loadParam(0);
+            gen.putField(tableField);
+            gen.ret();
+        });
+
+        ClassCache.Key key = new ClassCache.Key("generic").add(eventFactory).add(factoryMethod);
+        byte[] bytes = ClassCache.build(event.bus.classCache, key, classGen, Collections.emptyList());
+        String cName = classGen.name().getInternalName();
+        Class<?> clazz = event.bus.environment.defineClass(cName.replace("/", "."), bytes);
+        try {
+            return clazz.getConstructor(GenericDispatchTable.class).newInstance(table);
+        } catch (NoSuchMethodException | InstantiationException | IllegalAccessException | InvocationTargetException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Generates a task class which captures the arguments for a method on the dispatcher, calling it when run.
+     * <p>
+     * Used for {@link AsyncFireTask}s, and the {@link RecursiveAction}s of parallel listener batches.
+     *
+     * @param event          The event.
+     * @param key            The class cache key of the task.
+     * @param deps           The generated classes referenced by the task, the dispatcher and any generated parameter types.
+     * @param name           The name of the task class.
+     * @param parent         The parent class of the task.
+     * @param runName        The name of the task method to implement.
+     * @param runDesc        The descriptor of the task method to implement, returning void or {@link Object}.
+     * @param dispatcherType The dispatcher class.
+     * @param targetName     The name of the dispatcher method to call.
+     * @param targetDesc     The descriptor of the dispatcher method to call.
+     * @return The task class.
+     */
+    private static Type generateTask(EventListenerList event, ClassCache.Key key, List<Type> deps, String name, Type parent, String runName, Type runDesc, Type dispatcherType, String targetName, Type targetDesc) {
+        ClassBuilder classGen = new ClassBuilder(
+                ACC_PUBLIC | ACC_SUPER | ACC_FINAL | ACC_SYNTHETIC,
+                Type.getObjectType(name)
+        );
+        classGen.withParent(parent);
+        FieldBuilder dispatcherField = classGen.addField(ACC_PRIVATE | ACC_FINAL, "dispatcher", dispatcherType);
+        Type[] params = targetDesc.getArgumentTypes();
+        List<FieldBuilder> paramFields = new ArrayList<>();
+        for (int i = 0; i < params.length; i++) {
+            paramFields.add(classGen.addField(ACC_PRIVATE | ACC_FINAL, "param$" + i, params[i]));
+        }
+
+        classGen.addMethod(ACC_PUBLIC, "<init>", taskCtorDesc(dispatcherType, targetDesc)).withBody(gen -> {
+            gen.loadThis();
+            gen.methodInsn(INVOKESPECIAL, parent, "<init>", Type.getMethodType(Type.VOID_TYPE), false);
+            gen.loadThis();
+            gen.loadParam(0);
+            gen.putField(dispatcherField);
+            for (int i = 0; i < paramFields.size(); i++) {
+                gen.loadThis();
+                gen.loadParam(i + 1);
+                gen.putField(paramFields.get(i));
+            }
+            gen.ret();
+        });
+
+        classGen.addMethod(ACC_PROTECTED | ACC_FINAL, runName, runDesc).withBody(gen -> {
+            gen.loadThis();
+            gen.getField(dispatcherField);
+            for (FieldBuilder paramField : paramFields) {
+                gen.loadThis();
+                gen.getField(paramField);
+            }
+            gen.methodInsn(INVOKEVIRTUAL, dispatcherType, targetName, targetDesc, false);
+            if (runDesc.getReturnType() != Type.VOID_TYPE && targetDesc.getReturnType() == Type.VOID_TYPE) {
+                gen.insn(ACONST_NULL);
+            }
+            gen.ret();
+        });
+
+        byte[] bytes = ClassCache.build(event.bus.classCache, key, classGen, deps);
+        event.bus.environment.defineClass(classGen.name().getClassName(), bytes);
+        return classGen.name();
+    }
+
+    /**
+     * Builds the class cache key for a factory dispatching to the given listeners.
+     *
+     * @param event         The event.
+     * @param factoryParams The factory parameter names.
+     * @param listeners     The listeners, in order.
+     * @return The key.
+     */
+    private static ClassCache.Key listenersKey(EventListenerList event, List<String> factoryParams, List<ListenerHandle> listeners) {
+        ClassCache.Key key = new ClassCache.Key("listeners")
+                .addShape(event.eventInterface)
+                .add(requireNonNull(event.factoryMethod))
+                .add(String.join(",", factoryParams))
+                .add(event.onlyFastInvoke)
+                .add(event.reuseEventInstance)
+                .add(event.parallel)
+                .add(event.shortCircuit.toString())
+                .add(listeners.size());
+        for (ListenerHandle listener : listeners) {
+            key.add(listener.handle)
+                    .add(listener.instance != null)
+                    .add(listener.priority.name())
+                    .add(listener.receiveCanceled)
+                    .add(listener.parallel)
+                    .add(String.valueOf(listener.getParams()));
+        }
+        return key;
+    }
+
+    private static Type taskCtorDesc(Type dispatcherType, Type targetDesc) {
+        Type[] params = targetDesc.getArgumentTypes();
+        Type[] args = new Type[params.length + 1];
+        args[0] = dispatcherType;
+        System.arraycopy(params, 0, args, 1, params.length);
+        return Type.getMethodType(Type.VOID_TYPE, args);
+    }
+
+    /**
+     * Emits the acquisition of a reusable event instance for the current thread, resetting its fields.
+     * <p>
+     * If the thread's instance is already in use, by a re-entrant fire or a previous fire which threw,
+     * it is discarded, and a new instance is acquired in its place.
+     */
+    private static void emitAcquireEvent(BodyGenerator gen, EventListenerList event, Class<? extends Event> eventClass, FieldBuilder eventInstancesField, Map<String, Var> fieldVars, Var eventVar) {
+        Type eventType = Type.getType(eventClass);
+        Type acquireDesc = Type.getMethodType(Type.BOOLEAN_TYPE, FastStream.of(event.fields.values()).map(EventField::getType).toArray(new Type[0]));
+        Label acquired = new Label();
+
+        emitGetEventInstance(gen, eventInstancesField, eventType, eventVar);
+        emitAcquireCall(gen, event, eventType, acquireDesc, fieldVars, eventVar);
+        gen.jump(IFNE, acquired);
+
+        gen.loadThis();
+        gen.getField(eventInstancesField);
+        gen.methodInsn(INVOKEVIRTUAL, M_EVENT_INSTANCES_REMOVE);
+        emitGetEventInstance(gen, eventInstancesField, eventType, eventVar);
+        emitAcquireCall(gen, event, eventType, acquireDesc, fieldVars, eventVar);
+        gen.insn(POP);
+
+        gen.label(acquired);
+    }
+
+    private static void emitGetEventInstance(BodyGenerator gen, FieldBuilder eventInstancesField, Type eventType, Var eventVar) {
+        gen.loadThis();
+        gen.getField(eventInstancesField);
+        gen.methodInsn(INVOKEVIRTUAL, M_EVENT_INSTANCES_GET);
+        gen.typeInsn(CHECKCAST, eventType);
+        gen.store(eventVar);
+    }
+
+    private static void emitAcquireCall(BodyGenerator gen, EventListenerList event, Type eventType, Type acquireDesc, Map<String, Var> fieldVars, Var eventVar) {
+        gen.load(eventVar);
+        for (EventField field : event.fields.values()) {
+            emitFactoryValue(gen, field, fieldVars);
+        }
+        gen.methodInsn(INVOKEVIRTUAL, eventType, EventClassGenerator.ACQUIRE, acquireDesc, false);
+    }
+
+    /**
+     * Emits a load of the value provided to the factory for the given field.
+     * <p>
+     * Factories are not required to provide every field, those which are omitted start as their default value.
+     * The {@link ResultEvent} result starts as {@link Result#DEFAULT}.
+     */
+    private static void emitFactoryValue(BodyGenerator gen, EventField field, Map<String, Var> fieldVars) {
+        Var var = fieldVars.get(field.name);
+        if (var != null) {
+            gen.load(var);
+            return;
+        }
+        if (field.getter.getDeclaringClass() == ResultEvent.class) {
+            gen.methodInsn(INVOKESTATIC, M_RESULT_DEFAULT);
+            return;
+        }
+        switch (field.getType().getSort()) {
+            case Type.LONG:
+                gen.insn(LCONST_0);
+                break;
+            case Type.FLOAT:
+                gen.insn(FCONST_0);
+                break;
+            case Type.DOUBLE:
+                gen.insn(DCONST_0);
+                break;
+            case Type.ARRAY:
+            case Type.OBJECT:
+                gen.insn(ACONST_NULL);
+                break;
+            default:
+                gen.insn(ICONST_0);
+                break;
+        }
+    }
+
+    /**
+     * Groups the listeners into the units they are dispatched as.
+     * <p>
+     * Each consecutive run of parallel listeners with the same priority, and receiving canceled events
+     * alike, is grouped into a batch of at most {@link #MAX_PARALLEL_BATCH}. All other listeners are
+     * dispatched alone.
+     * <p>
+     * Listeners returning a value, or consuming the canceled state or result, are never dispatched in parallel,
+     * as these are tracked in locals.
+     *
+     * @param event         The event.
+     * @param listeners     The listeners.
+     * @param allowParallel If parallel batches are allowed.
+     * @return The units, in order.
+     */
+    static List<List<ListenerHandle>> groupParallel(EventListenerList event, List<ListenerHandle> listeners, boolean allowParallel) {
+        List<List<ListenerHandle>> units = new ArrayList<>();
+        List<ListenerHandle> batch = null;
+        for (ListenerHandle listener : listeners) {
+            boolean parallel = allowParallel && isParallel(event, listener);
+            if (batch != null && parallel && batch.size() < MAX_PARALLEL_BATCH) {
+                ListenerHandle first = batch.get(0);
+                if (first.priority == listener.priority && first.receiveCanceled == listener.receiveCanceled) {
+                    batch.add(listener);
+                    continue;
+                }
+            }
+            batch = new ArrayList<>();
+            batch.add(listener);
+            units.add(batch);
+            if (!parallel) {
+                batch = null;
+            }
+        }
+        return units;
+    }
+
+    private static boolean isParallel(EventListenerList event, ListenerHandle listener) {
+        if (!listener.parallel && !event.parallel) return false;
+        if (listener.handle.getReturnType() != void.class) return false;
+
+        List<String> params = listener.getParams();
+        return params == null || !params.contains(CANCELED_FIELD) && !params.contains(EventListenerList.RESULT_FIELD);
+    }
+
+    /**
+     * Greedily partitions the listener units into leaf chunks, each within {@link #METHOD_BUDGET}.
+     *
+     * @param units         The listener units, as grouped by {@link #groupParallel}.
+     * @param batchCallSize The size of dispatching a parallel batch.
+     * @return The leaf chunks, in order.
+     */
+    private static List<List<ListenerHandle>> partitionLeaves(List<List<ListenerHandle>> units, int batchCallSize) {
+        List<List<ListenerHandle>> leaves = new ArrayList<>();
+        List<ListenerHandle> leaf = new ArrayList<>();
+        int size = 0;
+        for (List<ListenerHandle> unit : units) {
+            int callSize = unit.size() == 1 ? estimateCallSize(unit.get(0)) : batchCallSize;
+            if (!leaf.isEmpty() && size + callSize > METHOD_BUDGET) {
+                leaves.add(leaf);
+                leaf = new ArrayList<>();
+                size = 0;
+            }
+            leaf.addAll(unit);
+            size += callSize;
+        }
+        if (!leaf.isEmpty()) {
+            leaves.add(leaf);
+        }
+        return leaves;
+    }
+
+    /**
+     * Gets the element type for a leaf's instance array.
+     *
+     * @param leaf The leaf.
+     * @return The listener type shared by all instances in the leaf, otherwise {@link Object}.
+     */
+    private static Class<?> leafInstanceType(List<ListenerHandle> leaf) {
+        List<Class<?>> types = FastStream.of(leaf)
+                .filter(e -> e.instance != null)
+                .<Class<?>>map(e -> e.handle.getDeclaringClass())
+                .distinct()
+                .toList();
+        return types.size() == 1 ? types.get(0) : Object.class;
+    }
+
+    /**
+     * A conservative estimate of the bytecode size required to invoke the given listener.
+     * <p>
+     * Instance load (array load in the worst case), a cached getter call for each parameter, and the invoke.
+     *
+     * @param listener The listener.
+     * @return The estimated size in bytes.
+     */
+    private static int estimateCallSize(ListenerHandle listener) {
+        List<String> params = listener.getParams();
+        return 7 + (params != null ? params.size() * 7 : 2) + 5;
+    }
+
+    private static class GenContext {
+
+        private final ClassBuilder classGen;
+        private final EventListenerList event;
+        private final Map<String, Method> eventGetters;
+        @Nullable
+        private final Method canceledSetter;
+        @Nullable
+        private final Method resultSetter;
+        private final Map<ListenerHandle, FieldBuilder> instanceFields;
+        @Nullable
+        private final FieldBuilder instanceArrayField;
+        @Nullable
+        private final FieldBuilder parallelPoolField;
+        private final List<String> factoryParams;
+
+        private int chunkCounter;
+        private int batchCounter;
+        private final Map<ListenerHandle, String> parallelForks = new IdentityHashMap<>();
+
+        private GenContext(ClassBuilder classGen, EventListenerList event, List<String> factoryParams, Map<String, Method> eventGetters, @Nullable Method canceledSetter, @Nullable Method resultSetter, Map<ListenerHandle, FieldBuilder> instanceFields, @Nullable FieldBuilder instanceArrayField, @Nullable FieldBuilder parallelPoolField) {
+            this.classGen = classGen;
+            this.event = event;
+            this.factoryParams = factoryParams;
+            this.parallelPoolField = parallelPoolField;
+            this.eventGetters = eventGetters;
+            this.canceledSetter = canceledSetter;
+            this.resultSetter = resultSetter;
+            this.instanceFields = instanceFields;
+            this.instanceArrayField = instanceArrayField;
+        }
+
+        /**
+         * Generates a leaf chunk for each of the given leaves, grouping them into parent chunks until
+         * calling the remaining chunks is within the given budget.
+         *
+         * @param leaves        The leaves.
+         * @param firstLeaf     The index of the first leaf, in the instance arrays.
+         * @param chunkDesc     The descriptor of the chunk methods.
+         * @param factoryParams The factory parameter names.
+         * @param budget        The budget for calling the returned chunks.
+         * @return The chunks to call, in order.
+         */
+        public List<String> generateChunkTree(List<List<ListenerHandle>> leaves, int firstLeaf, Type chunkDesc, List<String> factoryParams, int budget) {
+            List<String> calls = new ArrayList<>();
+            for (int i = 0; i < leaves.size(); i++) {
+                calls.add(generateLeaf(leaves.get(i), firstLeaf + i, chunkDesc, factoryParams));
+            }
+            // Load of 'this', each argument, and the invoke.
+            int chunkCallSize = 1 + chunkDesc.getArgumentTypes().length * 2 + 3;
+            while (calls.size() * chunkCallSize > budget) {
+                List<String> parents = new ArrayList<>();
+                int perParent = Math.max(2, METHOD_BUDGET / chunkCallSize);
+                for (int i = 0; i < calls.size(); i += perParent) {
+                    parents.add(generateParent(new ArrayList<>(calls.subList(i, Math.min(calls.size(), i + perParent))), chunkDesc));
+                }
+                calls = parents;
+            }
+            return calls;
+        }
+
+        public String generateLeaf(List<ListenerHandle> listeners, int leafIndex, Type chunkDesc, List<String> factoryParams) {
+            String name = "chunk$" + chunkCounter++;
+            classGen.addMethod(ACC_PRIVATE | ACC_SYNTHETIC, name, chunkDesc).withBody(gen -> {
+                Map<String, Var> fieldVars = new HashMap<>();
+                for (int i = 0; i < factoryParams.size(); i++) {
+                    fieldVars.put(factoryParams.get(i), gen.param(i));
+                }
+                boolean tracksCanceled = chunkDesc.getReturnType() == Type.BOOLEAN_TYPE;
+                boolean tracksResult = chunkDesc.getReturnType().equals(RESULT_TYPE);
+                Var eventVar = null;
+                if (tracksCanceled) {
+                    fieldVars.put(CANCELED_FIELD, gen.param(factoryParams.size()));
+                } else if (tracksResult) {
+                    fieldVars.put(EventListenerList.RESULT_FIELD, gen.param(factoryParams.size()));
+                } else if (factoryParams.size() < gen.numParams()) {
+                    eventVar = gen.param(factoryParams.size());
+                }
+
+                Var instancesVar = null;
+                Class<?> instanceType = leafInstanceType(listeners);
+                if (instanceArrayField != null) {
+                    // Arrays are typed when the leaf only contains a single listener type, avoiding a cast per listener.
+                    Type arrayType = Type.getType(Array.newInstance(instanceType, 0).getClass());
+                    instancesVar = gen.newVar(arrayType);
+                    gen.getField(instanceArrayField);
+                    gen.ldc(leafIndex);
+                    gen.insn(AALOAD);
+                    gen.typeInsn(CHECKCAST, arrayType);
+                    gen.store(instancesVar);
+                }
+
+                emitListeners(gen, listeners, fieldVars, eventVar, instancesVar, instanceType == Object.class);
+                if (tracksCanceled) {
+                    gen.load(fieldVars.get(CANCELED_FIELD));
+                } else if (tracksResult) {
+                    gen.load(fieldVars.get(EventListenerList.RESULT_FIELD));
+                }
+                gen.ret();
+            });
+            return name;
+        }
+
+        public String generateParent(List<String> children, Type chunkDesc) {
+            String name = "chunk$" + chunkCounter++;
+            classGen.addMethod(ACC_PRIVATE | ACC_SYNTHETIC, name, chunkDesc).withBody(gen -> {
+                List<Var> vars = new ArrayList<>();
+                for (int i = 0; i < gen.numParams(); i++) {
+                    vars.add(gen.param(i));
+                }
+                // Chunks after the materialization point receive the event as an additional parameter.
+                boolean hasEvent = chunkDesc.getReturnType() == Type.VOID_TYPE && vars.size() > requireNonNull(event.factoryMethod).getParameterCount();
+                emitChunkCalls(gen, children, chunkDesc, vars, hasEvent ? vars.get(vars.size() - 1) : null);
+                if (chunkDesc.getReturnType() != Type.VOID_TYPE) {
+                    gen.load(vars.get(vars.size() - 1));
+                }
+                gen.ret();
+            });
+            return name;
+        }
+
+        public void emitChunkCall(BodyGenerator gen, String chunk, Type chunkDesc, List<Var> vars) {
+            gen.loadThis();
+            for (Var var : vars) {
+                gen.load(var);
+            }
+            gen.methodInsn(INVOKESPECIAL, classGen.name(), chunk, chunkDesc, false);
+            if (chunkDesc.getReturnType() != Type.VOID_TYPE) {
+                // Chunk returns the new canceled state or result, which is always the last argument.
+                gen.store(vars.get(vars.size() - 1));
+            }
+        }
+
+        /**
+         * Emits calls to each of the given chunks, in order.
+         * <p>
+         * For {@link ResultEvent}s with a short-circuit policy, the result is checked between chunks
+         * which may have changed it.
+         *
+         * @param gen       The generator.
+         * @param chunks    The chunks to call.
+         * @param chunkDesc The descriptor of the chunk methods.
+         * @param vars      The arguments for each chunk.
+         * @param eventVar  The event instance, {@code null} if not yet materialized.
+         */
+        public void emitChunkCalls(BodyGenerator gen, List<String> chunks, Type chunkDesc, List<Var> vars, @Nullable Var eventVar) {
+            boolean checkResult = !event.shortCircuit.isEmpty() && (eventVar != null || chunkDesc.getReturnType().equals(RESULT_TYPE));
+            Label end = new Label();
+            Var resultVar = null;
+            for (int i = 0; i < chunks.size(); i++) {
+                if (i != 0 && checkResult) {
+                    if (eventVar != null) {
+                        if (resultVar == null) {
+                            resultVar = gen.newVar(RESULT_TYPE);
+                        }
+                        gen.load(eventVar);
+                        gen.methodInsn(INVOKEVIRTUAL, eventGetters.get(EventListenerList.RESULT_FIELD));
+                        gen.store(resultVar);
+                    } else {
+                        resultVar = vars.get(vars.size() - 1);
+                    }
+                    emitShortCircuit(gen, resultVar, end);
+                }
+                emitChunkCall(gen, chunks.get(i), chunkDesc, vars);
+            }
+            gen.label(end);
+        }
+
+        /**
+         * Emits a jump to the given label if the given result ends dispatch.
+         *
+         * @param gen       The generator.
+         * @param resultVar The result.
+         * @param target    The label to jump to.
+         */
+        public void emitShortCircuit(BodyGenerator gen, Var resultVar, Label target) {
+            for (Result result : event.shortCircuit) {
+                gen.load(resultVar);
+                gen.methodInsn(INVOKESTATIC, M_RESULT_CONSTANTS.get(result));
+                gen.jump(IF_ACMPEQ, target);
+            }
+        }
+
+        /**
+         * Emits calls to each of the given listeners, in order.
+         * <p>
+         * For {@link CancelableEvent}s, the canceled state is checked only after listeners which may have changed it,
+         * and each run of listeners which do not receive canceled events is skipped with a single jump.
+         * <p>
+         * For {@link ResultEvent}s with a short-circuit policy, the result is likewise only checked after listeners
+         * which may have changed it.
+         *
+         * @param gen           The generator.
+         * @param listeners     The listeners to call.
+         * @param fieldVars     The factory parameters.
+         * @param eventVar      The event instance, {@code null} if not yet materialized.
+         * @param instancesVar  The listener instance array, {@code null} if instances are stored in fields.
+         * @param castInstance  If instances loaded from the array require a cast.
+         */
+        public void emitListeners(BodyGenerator gen, List<ListenerHandle> listeners, Map<String, Var> fieldVars, @Nullable Var eventVar, @Nullable Var instancesVar, boolean castInstance) {
+            FieldCache fieldCache = eventVar != null ? new FieldCache() : null;
+
+            // The canceled state may be changed by prior chunks, so must be read when the event is available.
+            // Otherwise, the event may only be canceled by the factory.
+            boolean mayBeCanceled = false;
+            boolean stale = false;
+            Var canceledVar = null;
+            if (event.cancelable) {
+                if (eventVar != null) {
+                    mayBeCanceled = true;
+                    stale = true;
+                } else {
+                    canceledVar = fieldVars.get(CANCELED_FIELD);
+                    mayBeCanceled = canceledVar != null;
+                }
+            }
+
+            // Before the event is materialized, the result is tracked in a local, or chunk parameter.
+            Var resultVar = eventVar == null ? fieldVars.get(EventListenerList.RESULT_FIELD) : null;
+            EventField resultField = event.fields.get(EventListenerList.RESULT_FIELD);
+            boolean resultChanged = false;
+            Label shortCircuit = new Label();
+
+            Label skipRun = null;
+            Set<String> runFieldCache = null;
+            int instanceIndex = 0;
+            for (List<ListenerHandle> unit : groupParallel(event, listeners, parallelPoolField != null)) {
+                // Parallel batches share their priority and receiveCanceled, and do not return values.
+                ListenerHandle listener = unit.get(0);
+                boolean batch = unit.size() > 1;
+                boolean consumes = ColUtils.anyMatch(unit, e -> !e.isFastInvoke());
+                if (resultChanged && !event.shortCircuit.isEmpty()) {
+                    // Checked before closing any skipped run, the previous listener can only have changed the result if it was called.
+                    Var currentResult = eventVar == null
+                            ? requireNonNull(resultVar)
+                            : requireNonNull(fieldCache).load(gen, resultField, eventVar, eventGetters.get(EventListenerList.RESULT_FIELD));
+                    emitShortCircuit(gen, currentResult, shortCircuit);
+                }
+                resultChanged = false;
+
+                if (listener.receiveCanceled || !mayBeCanceled) {
+                    if (skipRun != null) {
+                        gen.label(skipRun);
+                        skipRun = null;
+                        if (fieldCache != null) {
+                            // Fields loaded inside the run may not have been loaded if it was skipped.
+                            fieldCache.restore(requireNonNull(runFieldCache));
+                        }
+                    }
+                } else if (skipRun == null) {
+                    if (stale) {
+                        if (canceledVar == null) {
+                            canceledVar = gen.newVar(Type.BOOLEAN_TYPE);
+                        }
+                        gen.load(requireNonNull(eventVar));
+                        gen.methodInsn(INVOKEVIRTUAL, eventGetters.get(CANCELED_FIELD));
+                        gen.store(canceledVar);
+                        stale = false;
+                    }
+                    skipRun = new Label();
+                    runFieldCache = fieldCache != null ? fieldCache.snapshot() : null;
+                    gen.load(canceledVar);
+                    gen.jump(IFNE, skipRun);
+                }
+
+                boolean setsResult = !batch && event.resultEvent && listener.setsResult();
+                if (setsResult) {
+                    // Load the current result, and for the event, its instance to set the merged result.
+                    if (eventVar == null) {
+                        gen.load(requireNonNull(resultVar));
+                    } else {
+                        gen.load(eventVar);
+                        gen.load(requireNonNull(fieldCache).load(gen, resultField, eventVar, eventGetters.get(EventListenerList.RESULT_FIELD)));
+                    }
+                }
+
+                if (!batch) {
+                    emitListenerCall(gen, listener, fieldVars, eventVar, fieldCache, instancesVar, castInstance, listener.instance != null ? instanceIndex++ : -1);
+                } else {
+                    emitParallelBatch(gen, unit, fieldVars, eventVar);
+                    if (fieldCache != null && consumes) {
+                        fieldCache.invalidate();
+                    }
+                }
+
+                if (setsResult) {
+                    // Listener returned a result, which replaces the current result unless DEFAULT or null.
+                    gen.methodInsn(INVOKESTATIC, M_RESULT_MERGE);
+                    if (eventVar == null) {
+                        gen.store(requireNonNull(resultVar));
+                    } else {
+                        gen.methodInsn(INVOKEVIRTUAL, requireNonNull(resultSetter));
+                        requireNonNull(fieldCache).invalidate(EventListenerList.RESULT_FIELD);
+                    }
+                    resultChanged = true;
+                } else if (consumes && event.resultEvent) {
+                    // The listener may have changed the result.
+                    resultChanged = true;
+                }
+
+                if (!batch && listener.isFastInvoke() && listener.canCancel()) {
+                    // Listener returned true to cancel the event.
+                    if (eventVar == null) {
+                        // State is tracked in a local, or chunk parameter.
+                        gen.load(requireNonNull(canceledVar));
+                        gen.insn(IOR);
+                        gen.store(canceledVar);
+                    } else {
+                        Label notCanceled = new Label();
+                        gen.jump(IFEQ, notCanceled);
+                        gen.load(eventVar);
+                        gen.ldc(1);
+                        gen.methodInsn(INVOKEVIRTUAL, requireNonNull(canceledSetter));
+                        gen.label(notCanceled);
+                        stale = true;
+                        requireNonNull(fieldCache).invalidate(CANCELED_FIELD);
+                    }
+                } else if (consumes && event.cancelable) {
+                    // The listener may have changed the canceled state.
+                    stale = true;
+                }
+                if ((batch ? consumes : listener.canCancel()) && event.cancelable) {
+                    mayBeCanceled = true;
+                    if (skipRun != null) {
+                        gen.label(skipRun);
+                        skipRun = null;
+                        if (fieldCache != null) {
+                            fieldCache.restore(requireNonNull(runFieldCache));
+                        }
+                    }
+                }
+            }
+            if (skipRun != null) {
+                gen.label(skipRun);
+            }
+            gen.label(shortCircuit);
+        }
+
+        /**
+         * Generates the methods dispatching each parallel batch in the given units.
+         * <p>
+         * Each batch generates a method calling a single listener by index, a {@link RecursiveAction}
+         * calling it, and a method forking all actions. Batches must be generated up front, as the
+         * methods emitting their calls are only built with the class.
+         *
+         * @param units     The dispatch units, as returned by {@link #groupParallel}.
+         * @param eventType The event class type, {@code null} if these units are before the materialization point.
+         * @param key       The class cache key of the dispatcher.
+         * @param deps      The generated classes referenced by the dispatcher, each generated task is added.
+         */
+        public void generateParallelBatches(List<List<ListenerHandle>> units, @Nullable Type eventType, ClassCache.Key key, List<Type> deps) {
+            for (List<ListenerHandle> batch : units) {
+                if (batch.size() > 1) {
+                    deps.add(generateParallelBatch(batch, eventType, key));
+                }
+            }
+        }
+
+        private Type generateParallelBatch(List<ListenerHandle> batch, @Nullable Type eventType, ClassCache.Key key) {
+            int batchIndex = batchCounter++;
+            Type forkDesc = parallelForkDesc(eventType);
+            List<Type> args = new ArrayList<>(Arrays.asList(forkDesc.getArgumentTypes()));
+            args.add(0, Type.INT_TYPE);
+            Type callDesc = Type.getMethodType(Type.VOID_TYPE, args.toArray(new Type[0]));
+
+            String callName = "parallel$" + batchIndex;
+            classGen.addMethod(ACC_PUBLIC | ACC_SYNTHETIC, callName, callDesc).withBody(gen -> {
+                Map<String, Var> fieldVars = new HashMap<>();
+                for (int i = 0; i < factoryParams.size(); i++) {
+                    fieldVars.put(factoryParams.get(i), gen.param(i + 1));
+                }
+                Var eventVar = eventType != null ? gen.param(factoryParams.size() + 1) : null;
+                for (int i = 0; i < batch.size(); i++) {
+                    Label next = new Label();
+                    gen.loadParam(0);
+                    gen.ldc(i);
+                    gen.jump(IF_ICMPNE, next);
+                    emitListenerCall(gen, batch.get(i), fieldVars, eventVar, eventVar != null ? new FieldCache() : null, null, false, -1);
+                    gen.ret();
+                    gen.label(next);
+                }
+                gen.ret();
+            });
+            List<Type> taskDeps = eventType != null ? Arrays.asList(classGen.name(), eventType) : Collections.singletonList(classGen.name());
+            Type taskType = generateTask(event, new ClassCache.Key(key, callName), taskDeps, classGen.name().getInternalName() + "$$Parallel$$" + batchIndex, RECURSIVE_ACTION_TYPE, "compute", Type.getMethodType(Type.VOID_TYPE), classGen.name(), callName, callDesc);
+
+            String forkName = "parallel$" + batchIndex + "$fork";
+            classGen.addMethod(ACC_PRIVATE | ACC_SYNTHETIC, forkName, forkDesc).withBody(gen -> {
+                gen.loadThis();
+                gen.getField(requireNonNull(parallelPoolField));
+                gen.ldc(batch.size());
+                gen.typeInsn(ANEWARRAY, FORK_JOIN_TASK_TYPE);
+                for (int i = 0; i < batch.size(); i++) {
+                    gen.insn(DUP);
+                    gen.ldc(i);
+                    gen.typeInsn(NEW, taskType);
+                    gen.insn(DUP);
+                    gen.loadThis();
+                    gen.ldc(i);
+                    for (int j = 0; j < gen.numParams(); j++) {
+                        gen.loadParam(j);
+                    }
+                    gen.methodInsn(INVOKESPECIAL, taskType, "<init>", taskCtorDesc(classGen.name(), callDesc), false);
+                    gen.insn(AASTORE);
+                }
+                gen.methodInsn(INVOKESTATIC, M_PARALLEL_INVOKE_ALL);
+                gen.ret();
+            });
+            parallelForks.put(batch.get(0), forkName);
+            return taskType;
+        }
+
+        private Type parallelForkDesc(@Nullable Type eventType) {
+            List<Type> args = new ArrayList<>(Arrays.asList(Type.getArgumentTypes(requireNonNull(event.factoryMethod))));
+            if (eventType != null) {
+                args.add(eventType);
+            }
+            return Type.getMethodType(Type.VOID_TYPE, args.toArray(new Type[0]));
+        }
+
+        /**
+         * Emits a call to a parallel batch generated by {@link #generateParallelBatches}, returning once
+         * all listeners in the batch have been called.
+         *
+         * @param gen       The generator.
+         * @param batch     The listeners.
+         * @param fieldVars The factory parameters.
+         * @param eventVar  The event instance, {@code null} if not yet materialized.
+         */
+        public void emitParallelBatch(BodyGenerator gen, List<ListenerHandle> batch, Map<String, Var> fieldVars, @Nullable Var eventVar) {
+            String forkName = requireNonNull(parallelForks.get(batch.get(0)), "Parallel batch was not generated.");
+            gen.loadThis();
+            for (String param : factoryParams) {
+                gen.load(fieldVars.get(param));
+            }
+            if (eventVar != null) {
+                gen.load(eventVar);
+            }
+            gen.methodInsn(INVOKESPECIAL, classGen.name(), forkName, parallelForkDesc(eventVar != null ? eventVar.type() : null), false);
+        }
+
+        public void emitListenerCall(BodyGenerator gen, ListenerHandle listener, Map<String, Var> fieldVars, @Nullable Var eventVar, @Nullable FieldCache fieldCache, @Nullable Var instancesVar, boolean castInstance, int instanceIndex) {
+            if (listener.instance != null) {
+                // Emit load of instance for handle invoke.
+                if (instancesVar != null) {
+                    gen.load(instancesVar);
+                    gen.ldc(instanceIndex);
+                    gen.insn(AALOAD);
+                    if (castInstance) {
+                        gen.typeInsn(CHECKCAST, Type.getType(listener.handle.getDeclaringClass()));
+                    }
+                } else {
+                    gen.getField(instanceFields.get(listener));
+                }
+            }
+            // Emit all parameters for handle invoke.
+            if (listener.isFastInvoke()) {
+                // Emit each parameter as declared by the handle.
+                for (String param : listener.getParams()) {
+                    EventField field = event.fields.get(param);
+                    if (field.isImmutable() || eventVar == null) {
+                        // Field is immutable, we can just emit the param.
+                        emitFactoryValue(gen, field, fieldVars);
+                    } else {
+                        // Field is not immutable, load it from the cache, only calling the getter if it may have changed.
+                        gen.load(requireNonNull(fieldCache).load(gen, field, eventVar, eventGetters.get(param)));
+                    }
+                }
+            } else {
+                // Emit just a load of the event class
+                gen.load(requireNonNull(eventVar));
+                // The listener may call setters.
+                if (fieldCache != null) {
+                    fieldCache.invalidate();
+                }
+            }
+            // Emit invoke of handle
+            gen.methodInsn(listener.handle);
+        }
+    }
+
+    /**
+     * Tracks the mutable event fields which have been loaded into locals.
+     * <p>
+     * Only {@link java.util.function.Consumer} listeners are able to mutate the event, fast invoke listeners
+     * between them share the same field values.
+     */
+    private static class FieldCache {
+
+        private final Map<String, Var> locals = new HashMap<>();
+        private final Set<String> loaded = new HashSet<>();
+
+        public Var load(BodyGenerator gen, EventField field, Var eventVar, Method getter) {
+            Var local = locals.computeIfAbsent(field.name, e -> gen.newVar(field.getType()));
+            if (loaded.add(field.name)) {
+                // Emit virtual call to the event class getter. (avoid invokeinterface)
+                gen.load(eventVar);
+                gen.methodInsn(INVOKEVIRTUAL, getter);
+                gen.store(local);
+            }
+            return local;
+        }
+
+        public void invalidate() {
+            loaded.clear();
+        }
+
+        public void invalidate(String field) {
+            loaded.remove(field);
+        }
+
+        public Set<String> snapshot() {
+            return new HashSet<>(loaded);
+        }
+
+        public void restore(Set<String> snapshot) {
+            loaded.retainAll(snapshot);
         }
     }
 }
@@ -2,14 +2,35 @@ package net.covers1624.eventbus.internal;
 
 import net.covers1624.eventbus.*;
 import net.covers1624.quack.collection.FastStream;
+import net.covers1624.quack.util.SneakyUtils;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
 import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import static java.util.Objects.requireNonNull;
@@ -20,38 +41,134 @@ import static java.util.Objects.requireNonNull;
 @ApiStatus.Internal
 public class EventListenerList {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventListenerList.class);
     private static final Method CONS_METHOD = Utils.requireSingleAbstractMethod(Consumer.class);
+    private static final MethodHandle MH_REBUILD = SneakyUtils.sneaky(() -> MethodHandles.lookup().findVirtual(EventListenerList.class, "rebuildEventList", MethodType.methodType(void.class)));
+
+    /**
+     * The name of the {@link GenericEvent} field.
+     */
+    static final String GENERIC_TYPE_FIELD = "genericType";
+
+    /**
+     * The name of the {@link ResultEvent} field.
+     */
+    static final String RESULT_FIELD = "result";
 
     final EventBusImpl bus;
     public final Class<? extends Event> eventInterface;
     public final Map<String, EventField> fields;
     public final boolean onlyFastInvoke;
+    public final boolean reuseEventInstance;
+    public final boolean cancelable;
+    public final boolean generic;
+    public final boolean resultEvent;
+    /**
+     * If all listeners may be called in parallel, as defined by {@link ParallelDispatch}.
+     */
+    public final boolean parallel;
+    /**
+     * The results which end dispatch of a {@link ResultEvent}, as defined by {@link ShortCircuit}.
+     */
+    public final Set<ResultEvent.Result> shortCircuit;
     @Nullable
     public final Class<? extends EventFactory> eventFactory;
     @Nullable
     public final Method factoryMethod;
+    /**
+     * If the factory returns a {@link CompletableFuture}, firing the event on the {@link Environment#getAsyncExecutor()}.
+     */
+    public final boolean async;
+    /**
+     * The type returned by dispatching the event. The factory's return type, or for async factories, the
+     * type completing the future.
+     */
+    @Nullable
+    public final Class<?> dispatchReturnType;
     @Nullable
     private final EventFactoryInternal rootFactory;
+    @Nullable
+    private final MutableCallSite dispatchSite;
+    /**
+     * For {@link DispatchBackend#METHOD_HANDLE}, the call site's target while dirty. Rebuilds, then calls the new target.
+     */
+    @Nullable
+    private final MethodHandle rebuildTarget;
 
-    private boolean unsorted = true;
-    private final List<ListenerHandle> listeners = new ArrayList<>();
+    /**
+     * The lists of every super event interface of this event, most general first.
+     */
+    private final List<EventListenerList> parents;
+    /**
+     * The lists of every event interface extending this event, their dispatchers include our listeners.
+     */
+    private final List<EventListenerList> children = new CopyOnWriteArrayList<>();
+    /**
+     * The {@link Consumer} listeners of super events skipped by the last dispatcher, as we are {@link FastInvokeOnly}.
+     */
+    private volatile Set<ListenerHandle> skippedParentListeners = Collections.emptySet();
 
-    public EventListenerList(EventBusImpl bus, Class<? extends Event> eventInterface) {
+    @Nullable
+    private volatile Object factory;
+    private volatile boolean frozen;
+    /**
+     * The registered listeners, sorted by priority.
+     * <p>
+     * This list is an immutable snapshot, each modification publishes a new copy. Dispatchers are generated
+     * from a single snapshot, modifications made while generating or firing are only seen by the next dispatcher.
+     */
+    private final AtomicReference<List<ListenerHandle>> listeners = new AtomicReference<>(Collections.emptyList());
+    /**
+     * Incremented each time this list, or any of its parents, is modified.
+     */
+    private final AtomicInteger modCount = new AtomicInteger();
+    /**
+     * The pending background regeneration, completed once its dispatcher is published.
+     */
+    private final AtomicReference<CompletableFuture<Void>> pendingRegeneration = new AtomicReference<>();
+
+    public EventListenerList(EventBusImpl bus, Class<? extends Event> eventInterface, List<EventListenerList> parents) {
         assert eventInterface.isInterface();
         assert Event.class.isAssignableFrom(eventInterface);
 
         this.bus = bus;
         this.eventInterface = eventInterface;
+        this.parents = parents;
         fields = EventFieldExtractor.getEventFields(eventInterface);
         onlyFastInvoke = eventInterface.getAnnotation(FastInvokeOnly.class) != null;
+        cancelable = CancelableEvent.class.isAssignableFrom(eventInterface);
+        generic = GenericEvent.class.isAssignableFrom(eventInterface);
+        resultEvent = ResultEvent.class.isAssignableFrom(eventInterface);
+        parallel = eventInterface.getAnnotation(ParallelDispatch.class) != null;
+        shortCircuit = getShortCircuit(eventInterface, resultEvent);
 
         eventFactory = getEnclosedFactory(eventInterface);
+        reuseEventInstance = reuseEventInstance(eventInterface, eventFactory);
         if (eventFactory != null) {
             factoryMethod = getFactoryMethod(eventFactory);
-            rootFactory = (EventFactoryInternal) EventFactoryDecorator.generate(this);
+            async = factoryMethod.getReturnType() == CompletableFuture.class;
+            dispatchReturnType = getDispatchReturnType(factoryMethod);
+            dispatchSite = new MutableCallSite(MethodType.methodType(factoryMethod.getReturnType(), factoryMethod.getParameterTypes())
+                    .insertParameterTypes(0, eventFactory));
+            rootFactory = (EventFactoryInternal) EventFactoryDecorator.generate(this, dispatchSite);
+            if (bus.dispatchBackend == DispatchBackend.METHOD_HANDLE) {
+                // The root factory's checked method is never used, the call site is re-targeted instead.
+                rebuildTarget = MethodHandles.foldArguments(dispatchSite.dynamicInvoker(), MH_REBUILD.bindTo(this));
+                dispatchSite.setTarget(rebuildTarget);
+            } else {
+                rebuildTarget = null;
+            }
         } else {
             factoryMethod = null;
+            async = false;
+            dispatchReturnType = null;
             rootFactory = null;
+            dispatchSite = null;
+            rebuildTarget = null;
+        }
+
+        for (EventListenerList parent : parents) {
+            parent.children.add(this);
         }
     }
 
@@ -60,10 +177,41 @@ public class EventListenerList {
     }
 
     List<ListenerHandle> getListeners() {
-        if (unsorted) {
-            listeners.sort(Comparator.comparing(e -> e.priority));
+        return listeners.get();
+    }
+
+    /**
+     * Gets the listeners to dispatch this event to.
+     * <p>
+     * These are the listeners of this event, and every super event, merged in priority order.
+     * Within a priority, listeners of more general events are called first.
+     * <p>
+     * {@link FastInvokeOnly} events do not receive {@link Consumer} listeners of their super events,
+     * a warning is logged the first time each is skipped.
+     *
+     * @return The listeners.
+     */
+    List<ListenerHandle> getDispatchListeners() {
+        if (parents.isEmpty()) return getListeners();
+
+        List<ListenerHandle> merged = new ArrayList<>();
+        Set<ListenerHandle> skipped = onlyFastInvoke ? new HashSet<>() : Collections.emptySet();
+        for (EventListenerList parent : parents) {
+            for (ListenerHandle listener : parent.getListeners()) {
+                if (onlyFastInvoke && !listener.isFastInvoke()) {
+                    if (skipped.add(listener) && !skippedParentListeners.contains(listener)) {
+                        LOGGER.warn("Event {} is marked as FastInvokeOnly. Not calling Consumer listener {} of super event {}.", eventInterface.getName(), listener.instance, parent.eventInterface.getName());
+                    }
+                    continue;
+                }
+                merged.add(listener);
+            }
         }
-        return listeners;
+        // Only the currently registered listeners, unregistered listeners are not retained.
+        skippedParentListeners = skipped;
+        merged.addAll(getListeners());
+        merged.sort(Comparator.comparing(e -> e.priority));
+        return merged;
     }
 
     public void rebuildEventList() {
@@ -71,35 +219,244 @@ public class EventListenerList {
         synchronized (this) {
             if (!rootFactory.isDirty()) return;
 
-            rootFactory.setFactory(EventListenerGenerator.generateEventFactory(this));
+            int mod = modCount.get();
+            publishFactory();
+            // Listeners modified while generating may not be in the snapshot we generated from,
+            // their dirty mark was just cleared by setFactory.
+            if (modCount.get() != mod) {
+                setDirty();
+            }
+        }
+    }
+
+    private void publishFactory() {
+        assert rootFactory != null;
+        if (rebuildTarget != null) {
+            MethodHandle dispatcher = generic
+                    ? MethodHandleDispatcher.buildGeneric(this)
+                    : MethodHandleDispatcher.build(this, getDispatchListeners());
+            factory = dispatcher;
+            bindDispatchSite(dispatcher);
+            // Only clears the dirty flag, the root factory never calls its factory.
+            rootFactory.setFactory(null);
+            return;
+        }
+        factory = generic
+                ? EventListenerGenerator.generateGenericEventFactory(this)
+                : EventListenerGenerator.generateEventFactory(this, getDispatchListeners());
+        rootFactory.setFactory(factory);
+    }
+
+    /**
+     * Marks the root factory as dirty, to be rebuilt on its next fire.
+     */
+    private void setDirty() {
+        assert rootFactory != null;
+        rootFactory.setDirty();
+        if (rebuildTarget != null) {
+            assert dispatchSite != null;
+            dispatchSite.setTarget(rebuildTarget);
+            MutableCallSite.syncAll(new MutableCallSite[] { dispatchSite });
+        }
+    }
+
+    /**
+     * Binds the root factory's call site directly to the given dispatcher.
+     *
+     * @param dispatcher The dispatcher, of the factory method's type.
+     */
+    private void bindDispatchSite(MethodHandle dispatcher) {
+        assert dispatchSite != null && eventFactory != null;
+        dispatchSite.setTarget(MethodHandles.dropArguments(dispatcher, 0, eventFactory));
+        MutableCallSite.syncAll(new MutableCallSite[] { dispatchSite });
+    }
+
+    /**
+     * Schedules a regeneration on the bus's regeneration executor, unless one is already pending.
+     * <p>
+     * If the executor rejects the regeneration, the list is instead rebuilt on its next fire.
+     */
+    private void scheduleRegeneration() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!pendingRegeneration.compareAndSet(null, future)) return;
+
+        try {
+            requireNonNull(bus.regenerationExecutor).schedule(() -> regenerate(future), bus.regenerationDelay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            LOGGER.warn("Regeneration executor rejected regeneration of {}, rebuilding on next fire.", eventInterface.getName(), ex);
+            setDirty();
+            pendingRegeneration.set(null);
+            future.completeExceptionally(ex);
+        }
+    }
+
+    private void regenerate(CompletableFuture<Void> future) {
+        assert rootFactory != null;
+        int mod = modCount.get();
+        try {
+            synchronized (this) {
+                if (!frozen) {
+                    publishFactory();
+                }
+            }
+        } catch (Throwable ex) {
+            // Retry on the next fire, which will throw from the firing thread.
+            setDirty();
+            pendingRegeneration.set(null);
+            future.completeExceptionally(ex);
+            return;
+        }
+        pendingRegeneration.set(null);
+        // Anything modified while generating failed to schedule, as we were still pending.
+        if (modCount.get() != mod) {
+            scheduleRegeneration();
+        }
+        future.complete(null);
+    }
+
+    /**
+     * Waits for any pending background regeneration, then regenerates immediately if still dirty.
+     */
+    void awaitConsistent() {
+        CompletableFuture<Void> future;
+        while ((future = pendingRegeneration.get()) != null) {
+            try {
+                future.join();
+            } catch (CompletionException ignored) {
+                // Marked dirty, rebuilt below.
+            }
+        }
+        if (rootFactory != null && rootFactory.isDirty()) {
+            rebuildEventList();
+        }
+    }
+
+    /**
+     * Freezes this list, no further listeners may be registered or unregistered.
+     * <p>
+     * The factory is generated immediately, and the root factory's call site is bound
+     * directly to it, removing the dirty check from the fire path.
+     */
+    public void freeze() {
+        awaitConsistent();
+        synchronized (this) {
+            if (frozen) return;
+            frozen = true;
+            if (rootFactory == null) return;
+
+            rebuildEventList();
+            // Method handle dispatchers are already bound.
+            if (rebuildTarget != null) return;
+
+            assert factoryMethod != null;
+            try {
+                bindDispatchSite(MethodHandles.publicLookup().unreflect(factoryMethod).bindTo(requireNonNull(factory)));
+            } catch (IllegalAccessException ex) {
+                throw new RuntimeException("Failed to bind factory for " + eventInterface.getName(), ex);
+            }
         }
     }
 
-    public void registerMethod(@Nullable Object obj, Method method, EventPriority priority, List<String> params) {
-        addListener(new ListenerHandle(obj, method, priority, params));
+    public ListenerRegistration registerMethod(@Nullable Object obj, Method method, EventPriority priority, boolean receiveCanceled, boolean parallel, List<String> params) {
+        return addListener(new ListenerHandle(obj, method, priority, receiveCanceled, parallel, null, params));
     }
 
-    public void registerEventConsumerMethod(@Nullable Object obj, Method method, EventPriority priority) {
-        addListener(new ListenerHandle(obj, method, priority, null));
+    public ListenerRegistration registerEventConsumerMethod(@Nullable Object obj, Method method, EventPriority priority, boolean receiveCanceled, boolean parallel, @Nullable Type genericType) {
+        return addListener(new ListenerHandle(obj, method, priority, receiveCanceled, parallel, genericType, null));
     }
 
-    public void registerListener(Class<? extends EventListener> listener, EventPriority priority, Object lambda) {
+    public ListenerRegistration registerListener(Class<? extends EventListener> listener, EventPriority priority, boolean receiveCanceled, @Nullable Type genericType, Object lambda) {
         Method method = Utils.requireSingleAbstractMethod(listener);
-        addListener(new ListenerHandle(lambda, method, priority, bus.paramLookup.getMethodParams(method)));
+        return addListener(new ListenerHandle(lambda, method, priority, receiveCanceled, false, genericType, bus.paramLookup.getMethodParams(method)));
     }
 
-    public void registerEventConsumerListener(EventPriority priority, Consumer<?> cons) {
-        addListener(new ListenerHandle(cons, CONS_METHOD, priority, null));
+    public ListenerRegistration registerEventConsumerListener(EventPriority priority, boolean receiveCanceled, @Nullable Type genericType, Consumer<?> cons) {
+        return addListener(new ListenerHandle(cons, CONS_METHOD, priority, receiveCanceled, false, genericType, null));
     }
 
-    private void addListener(ListenerHandle handle) {
+    private ListenerRegistration addListener(ListenerHandle handle) {
+        checkNotFrozen();
+        if (handle.genericType != null && !generic) {
+            throw new IllegalArgumentException("Event " + eventInterface.getName() + " is not a GenericEvent. Unable to register a generic filtered listener.");
+        }
         if (onlyFastInvoke && !handle.isFastInvoke()) {
             throw new UnsupportedOperationException("Event " + eventInterface.getName() + " is marked as FastInvokeOnly. Must register a lambda or exploded method.");
         }
-        unsorted = true;
-        listeners.add(handle);
-        if (rootFactory != null) {
-            rootFactory.setDirty();
+        if (handle.isFastInvoke() && handle.handle.getReturnType() != void.class) {
+            if (!(handle.canCancel() && cancelable) && !(handle.setsResult() && resultEvent)) {
+                throw new IllegalArgumentException("Fast invoke listeners must return void, boolean for CancelableEvents, or Result for ResultEvents. Got: " + handle.handle);
+            }
+        }
+        ListenerRegistration registration = () -> removeListener(handle);
+        RegistrationBatch batch = bus.getBatch();
+        if (batch != null) {
+            batch.add(this, handle, registration);
+        } else {
+            applyChanges(Collections.singletonList(handle));
+        }
+        return registration;
+    }
+
+    private void removeListener(ListenerHandle handle) {
+        if (handle.removed) return;
+        checkNotFrozen();
+
+        handle.removed = true;
+        RegistrationBatch batch = bus.getBatch();
+        if (batch != null) {
+            batch.remove(this);
+        } else {
+            applyChanges(Collections.emptyList());
+        }
+    }
+
+    /**
+     * Publishes a new snapshot of the listeners, adding the given listeners and removing any unregistered listeners.
+     *
+     * @param added The listeners to add.
+     */
+    void applyChanges(List<ListenerHandle> added) {
+        checkNotFrozen();
+        listeners.updateAndGet(current -> {
+            List<ListenerHandle> next = new ArrayList<>(current.size() + added.size());
+            for (ListenerHandle listener : current) {
+                if (!listener.removed) next.add(listener);
+            }
+            for (ListenerHandle listener : added) {
+                if (!listener.removed) next.add(listener);
+            }
+            // Stable, listeners of the same priority remain in registration order.
+            next.sort(Comparator.comparing(e -> e.priority));
+            return Collections.unmodifiableList(next);
+        });
+        markDirty();
+    }
+
+    /**
+     * Marks this list, and every list extending it, to be rebuilt on the next fire.
+     */
+    private void markDirty() {
+        invalidate();
+        for (EventListenerList child : children) {
+            child.invalidate();
+        }
+    }
+
+    private void invalidate() {
+        modCount.incrementAndGet();
+        if (rootFactory == null) return;
+
+        if (bus.regenerationExecutor != null && factory != null) {
+            // Keep firing to the previous dispatcher until regenerated in the background.
+            scheduleRegeneration();
+        } else {
+            setDirty();
+        }
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Unable to modify listeners for " + eventInterface.getName() + ". EventBus is frozen.");
         }
     }
 
@@ -126,6 +483,40 @@ public class EventListenerList {
         return (Class<? extends EventFactory>) factories.get(0);
     }
 
+    private static Set<ResultEvent.Result> getShortCircuit(Class<? extends Event> eventInterface, boolean resultEvent) {
+        ShortCircuit shortCircuit = eventInterface.getAnnotation(ShortCircuit.class);
+        if (shortCircuit == null) return Collections.emptySet();
+
+        if (!resultEvent) {
+            throw new IllegalArgumentException("Event " + eventInterface.getName() + " is annotated with ShortCircuit, but is not a ResultEvent.");
+        }
+        return shortCircuit.value().length == 0 ? Collections.emptySet() : Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(shortCircuit.value())));
+    }
+
+    private static boolean reuseEventInstance(Class<? extends Event> eventInterface, @Nullable Class<? extends EventFactory> eventFactory) {
+        return eventInterface.getAnnotation(ReuseEventInstance.class) != null
+                || eventFactory != null && eventFactory.getAnnotation(ReuseEventInstance.class) != null;
+    }
+
+    /**
+     * Gets the type returned by dispatching the event for the given factory method.
+     * <p>
+     * For async factories, this is the type argument of the returned {@link CompletableFuture},
+     * {@code void} for {@link Void}, or anything unresolvable.
+     *
+     * @param method The factory method.
+     * @return The type.
+     */
+    private static Class<?> getDispatchReturnType(Method method) {
+        if (method.getReturnType() != CompletableFuture.class) return method.getReturnType();
+
+        Type type = method.getGenericReturnType();
+        if (!(type instanceof ParameterizedType)) return void.class;
+        Type arg = ((ParameterizedType) type).getActualTypeArguments()[0];
+        if (!(arg instanceof Class) || arg == Void.class) return void.class;
+        return (Class<?>) arg;
+    }
+
     private Method getFactoryMethod(Class<? extends EventFactory> eventFactory) {
         Method method = Utils.getSingleAbstractMethod(eventFactory);
         if (method == null) {
@@ -138,8 +529,28 @@ public class EventListenerList {
                 throw new IllegalArgumentException("Parameter " + param + " does not map to an event field.");
             }
         }
+        if (GenericEvent.class.isAssignableFrom(eventInterface) && !factoryParams.contains(GENERIC_TYPE_FIELD)) {
+            throw new IllegalArgumentException("Expected factory " + eventFactory.getName() + " for GenericEvent to provide the '" + GENERIC_TYPE_FIELD + "' parameter.");
+        }
 
-        Class<?> clazz = method.getReturnType();
+        Class<?> clazz = getDispatchReturnType(method);
+        if (method.getReturnType() == CompletableFuture.class) {
+            if (clazz != void.class && clazz != eventInterface) {
+                throw new IllegalArgumentException("Expected async factory " + eventFactory.getName() + " to return CompletableFuture<Void> or CompletableFuture<" + eventInterface.getName() + ">");
+            }
+            if (clazz == eventInterface && reuseEventInstance(eventInterface, eventFactory)) {
+                throw new IllegalArgumentException("Async factory " + eventFactory.getName() + " may not return a reused event instance.");
+            }
+            return method;
+        }
+        if (clazz == boolean.class && CancelableEvent.class.isAssignableFrom(eventInterface)) {
+            // CancelableEvent factories may return the canceled state.
+            return method;
+        }
+        if (clazz == ResultEvent.Result.class && ResultEvent.class.isAssignableFrom(eventInterface)) {
+            // ResultEvent factories may return the final result.
+            return method;
+        }
         if (clazz != void.class && clazz != eventInterface) {
             throw new IllegalArgumentException("Expected factory " + eventFactory.getName() + " to return void or " + eventInterface.getName());
         }
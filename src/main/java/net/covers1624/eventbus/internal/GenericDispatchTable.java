@@ -0,0 +1,53 @@
+package net.covers1624.eventbus.internal;
+
+import org.jetbrains.annotations.ApiStatus;
+
+import java.lang.reflect.Type;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Selects the generated dispatcher for a {@link net.covers1624.eventbus.GenericEvent}'s generic type.
+ * <p>
+ * Lookups are keyed on identity first, {@link Class} instances are canonical, so each class is a single
+ * identity lookup, classes without specific listeners go straight to the wildcard dispatcher. Other
+ * {@link Type} implementations fall back to an equality lookup. Nothing is cached per fire, the table
+ * never holds classes other than those with listeners.
+ * <p>
+ * Called from generated selector classes.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public final class GenericDispatchTable {
+
+    private final Object wildcard;
+    private final Map<Type, Object> dispatchers;
+
+    // The Class keys of dispatchers.
+    private final IdentityHashMap<Type, Object> identityCache = new IdentityHashMap<>();
+
+    /**
+     * @param wildcard    The dispatcher for types without any specific listeners.
+     * @param dispatchers The dispatchers for each type with specific listeners.
+     */
+    GenericDispatchTable(Object wildcard, Map<Type, Object> dispatchers) {
+        this.wildcard = wildcard;
+        this.dispatchers = dispatchers;
+        for (Map.Entry<Type, Object> entry : dispatchers.entrySet()) {
+            if (entry.getKey() instanceof Class) {
+                identityCache.put(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    public Object get(Type type) {
+        Object dispatcher = identityCache.get(type);
+        if (dispatcher != null) return dispatcher;
+
+        // Every Class with listeners is already in the identity cache.
+        if (type instanceof Class) return wildcard;
+
+        return dispatchers.getOrDefault(type, wildcard);
+    }
+}
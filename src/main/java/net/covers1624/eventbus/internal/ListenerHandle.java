@@ -2,10 +2,12 @@ package net.covers1624.eventbus.internal;
 
 import com.google.common.collect.ImmutableList;
 import net.covers1624.eventbus.EventPriority;
+import net.covers1624.eventbus.ResultEvent;
 import org.jetbrains.annotations.ApiStatus;
 import org.jetbrains.annotations.Nullable;
 
 import java.lang.reflect.Method;
+import java.lang.reflect.Type;
 import java.util.List;
 
 /**
@@ -18,13 +20,31 @@ class ListenerHandle {
     public final Object instance;
     public final Method handle;
     public final EventPriority priority;
+    public final boolean receiveCanceled;
+    /**
+     * If this listener may be called in parallel with other listeners of the same priority.
+     */
+    public final boolean parallel;
+    /**
+     * The generic type this listener is filtered to, {@code null} for all types.
+     */
+    @Nullable
+    public final Type genericType;
     @Nullable
     private final List<String> params;
 
-    public ListenerHandle(@Nullable Object instance, Method handle, EventPriority priority, @Nullable List<String> params) {
+    /**
+     * Set when this listener is unregistered, it is compacted out of the list's next snapshot.
+     */
+    volatile boolean removed;
+
+    public ListenerHandle(@Nullable Object instance, Method handle, EventPriority priority, boolean receiveCanceled, boolean parallel, @Nullable Type genericType, @Nullable List<String> params) {
         this.instance = instance;
         this.handle = handle;
         this.priority = priority;
+        this.receiveCanceled = receiveCanceled;
+        this.parallel = parallel;
+        this.genericType = genericType;
         this.params = params != null ? ImmutableList.copyOf(params) : null;
     }
 
@@ -32,6 +52,28 @@ class ListenerHandle {
         return params != null;
     }
 
+    /**
+     * If this listener is able to cancel a {@link net.covers1624.eventbus.CancelableEvent}.
+     * <p>
+     * Event consumers can always cancel, fast invoke listeners cancel by returning {@code true}.
+     *
+     * @return If the listener can cancel.
+     */
+    public boolean canCancel() {
+        return !isFastInvoke() || handle.getReturnType() == boolean.class;
+    }
+
+    /**
+     * If this listener sets the result of a {@link net.covers1624.eventbus.ResultEvent} by returning it.
+     * <p>
+     * Event consumers may also set the result, via the event instance.
+     *
+     * @return If the listener returns a result.
+     */
+    public boolean setsResult() {
+        return isFastInvoke() && handle.getReturnType() == ResultEvent.Result.class;
+    }
+
     @Nullable
     public List<String> getParams() {
         return params;
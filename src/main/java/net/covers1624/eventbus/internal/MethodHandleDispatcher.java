@@ -0,0 +1,367 @@
+package net.covers1624.eventbus.internal;
+
+import net.covers1624.eventbus.DispatchBackend;
+import net.covers1624.eventbus.Event;
+import net.covers1624.eventbus.ResultEvent;
+import net.covers1624.eventbus.ResultEvent.Result;
+import net.covers1624.quack.collection.ColUtils;
+import net.covers1624.quack.collection.FastStream;
+import net.covers1624.quack.util.SneakyUtils;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Objects.requireNonNull;
+import static net.covers1624.eventbus.internal.EventListenerGenerator.CANCELED_FIELD;
+
+/**
+ * Builds dispatchers from {@link MethodHandle} combinators, for {@link DispatchBackend#METHOD_HANDLE}.
+ * <p>
+ * Each dispatcher takes the factory's parameters, and returns the factory's result. Once bound to the event's
+ * call site, the JIT is able to inline the entire chain, as it would a generated dispatcher.
+ * <p>
+ * Events without {@link java.util.function.Consumer} listeners, a canceled state, or a result pass the factory
+ * parameters straight to each listener. All other events are materialized up front, each listener reading its
+ * parameters from the event instance. Listeners skipped when canceled, or once the result short-circuits
+ * dispatch, are guarded individually.
+ * <p>
+ * Listeners are sequenced as a balanced tree of folds, keeping the depth of the chain logarithmic in the
+ * number of listeners.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public final class MethodHandleDispatcher {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodHandle MH_NOOP = MethodHandles.constant(Object.class, null).asType(methodType(void.class));
+    private static final MethodHandle MH_RESULT_MERGE = SneakyUtils.sneaky(() -> LOOKUP.findStatic(ResultSupport.class, "merge", methodType(Result.class, Result.class, Result.class)));
+    private static final MethodHandle MH_SET_CONTAINS = SneakyUtils.sneaky(() -> LOOKUP.findVirtual(Set.class, "contains", methodType(boolean.class, Object.class)));
+    private static final MethodHandle MH_EVENT_INSTANCES_GET = SneakyUtils.sneaky(() -> LOOKUP.findVirtual(EventInstances.class, "get", methodType(Object.class)));
+    private static final MethodHandle MH_EVENT_INSTANCES_REMOVE = SneakyUtils.sneaky(() -> LOOKUP.findVirtual(EventInstances.class, "remove", methodType(void.class)));
+    private static final MethodHandle MH_GENERIC_DISPATCH_TABLE_GET = SneakyUtils.sneaky(() -> LOOKUP.findVirtual(GenericDispatchTable.class, "get", methodType(Object.class, Type.class)));
+    private static final MethodHandle MH_FIRE_ASYNC = SneakyUtils.sneaky(() -> LOOKUP.findStatic(MethodHandleDispatcher.class, "fireAsync", methodType(CompletableFuture.class, Executor.class, MethodHandle.class, Object[].class)));
+
+    private MethodHandleDispatcher() {
+    }
+
+    /**
+     * Builds the dispatcher for the given listeners.
+     *
+     * @param event     The event to build the dispatcher for.
+     * @param listeners The listeners to call, in order.
+     * @return The dispatcher, of the factory method's type.
+     */
+    public static MethodHandle build(EventListenerList event, List<ListenerHandle> listeners) {
+        Method factoryMethod = requireNonNull(event.factoryMethod);
+        List<String> factoryParams = event.bus.paramLookup.getMethodParams(factoryMethod);
+        Class<?> returnType = requireNonNull(event.dispatchReturnType);
+        MethodType dispatchType = methodType(returnType, factoryMethod.getParameterTypes());
+
+        boolean requiresEvent = returnType == event.eventInterface
+                || event.cancelable
+                || event.resultEvent
+                || ColUtils.anyMatch(listeners, e -> !e.isFastInvoke());
+
+        MethodHandle dispatcher;
+        if (!requiresEvent) {
+            // Nothing is able to change the event's fields, the factory parameters are passed straight to each listener.
+            MethodType stepType = dispatchType.changeReturnType(void.class);
+            List<MethodHandle> steps = new ArrayList<>();
+            for (ListenerHandle listener : listeners) {
+                MethodHandle handle = listenerHandle(listener);
+                handle = handle.asType(methodType(void.class, fieldTypes(event, requireNonNull(listener.getParams()))));
+                steps.add(bindFactoryParams(event, factoryParams, stepType, handle, requireNonNull(listener.getParams()), 0));
+            }
+            dispatcher = sequence(steps, stepType);
+        } else {
+            dispatcher = buildEventDispatcher(event, listeners, factoryParams, dispatchType);
+        }
+
+        if (event.async) {
+            // Collects the factory parameters into a single task, submitted to the executor.
+            int numParams = dispatchType.parameterCount();
+            MethodHandle spread = dispatcher.asType(dispatchType.generic()).asSpreader(Object[].class, numParams);
+            dispatcher = MethodHandles.insertArguments(MH_FIRE_ASYNC, 0, event.bus.environment.getAsyncExecutor(), spread)
+                    .asCollector(Object[].class, numParams)
+                    .asType(methodType(CompletableFuture.class, factoryMethod.getParameterTypes()));
+        }
+        return dispatcher;
+    }
+
+    /**
+     * Builds the dispatcher for a {@link net.covers1624.eventbus.GenericEvent}.
+     * <p>
+     * As with generated dispatchers, each generic type with filtered listeners has its own dispatcher,
+     * selected for each fire via a {@link GenericDispatchTable}.
+     *
+     * @param event The event to build the dispatcher for.
+     * @return The dispatcher, of the factory method's type.
+     */
+    public static MethodHandle buildGeneric(EventListenerList event) {
+        List<ListenerHandle> listeners = event.getDispatchListeners();
+        List<String> factoryParams = event.bus.paramLookup.getMethodParams(requireNonNull(event.factoryMethod));
+
+        MethodHandle wildcard = build(event, FastStream.of(listeners).filter(e -> e.genericType == null).toList());
+        Map<Type, Object> dispatchers = new HashMap<>();
+        for (ListenerHandle listener : listeners) {
+            Type type = listener.genericType;
+            if (type == null || dispatchers.containsKey(type)) continue;
+
+            dispatchers.put(type, build(event, FastStream.of(listeners).filter(e -> e.genericType == null || e.genericType.equals(type)).toList()));
+        }
+        GenericDispatchTable table = new GenericDispatchTable(wildcard, dispatchers);
+
+        // Selects the dispatcher from the generic type parameter, then invokes it with all parameters.
+        MethodType type = wildcard.type();
+        int genericTypeParam = factoryParams.indexOf(EventListenerList.GENERIC_TYPE_FIELD);
+        MethodHandle select = MH_GENERIC_DISPATCH_TABLE_GET.bindTo(table)
+                .asType(methodType(MethodHandle.class, type.parameterType(genericTypeParam)));
+        select = MethodHandles.dropArguments(select, 1, type.parameterList().subList(genericTypeParam + 1, type.parameterCount()));
+        select = MethodHandles.dropArguments(select, 0, type.parameterList().subList(0, genericTypeParam));
+        return MethodHandles.foldArguments(MethodHandles.exactInvoker(type), select);
+    }
+
+    /**
+     * Called by async dispatchers, submitting a fire of the given dispatcher to the executor.
+     *
+     * @param executor   The executor.
+     * @param dispatcher The synchronous dispatcher, taking the spread factory parameters.
+     * @param args       The factory parameters.
+     * @return The task, completed once every listener has been called.
+     */
+    public static CompletableFuture<Object> fireAsync(Executor executor, MethodHandle dispatcher, Object[] args) {
+        AsyncFireTask task = new MethodHandleFireTask(dispatcher, args);
+        executor.execute(task);
+        return task;
+    }
+
+    private static MethodHandle buildEventDispatcher(EventListenerList event, List<ListenerHandle> listeners, List<String> factoryParams, MethodType dispatchType) {
+        Class<? extends Event> eventClass = EventListenerGenerator.EVENT_CLASS_GENERATOR.createEventClass(event.bus.environment, event.bus.classCache, event.eventInterface, event.reuseEventInstance);
+        Map<String, MethodHandle> getters = new HashMap<>();
+        Map<String, MethodHandle> setters = new HashMap<>();
+        for (EventField field : event.fields.values()) {
+            getters.put(field.name, findVirtual(eventClass, field.getter.getName(), methodType(field.type)));
+            if (field.setter != null) {
+                setters.put(field.name, findVirtual(eventClass, field.setter.getName(), methodType(void.class, field.type)));
+            }
+        }
+
+        MethodType stepType = methodType(void.class, eventClass);
+        MethodHandle noop = MethodHandles.dropArguments(MH_NOOP, 0, eventClass);
+        MethodHandle isShortCircuit = null;
+        if (event.resultEvent && !event.shortCircuit.isEmpty()) {
+            MethodHandle contains = MH_SET_CONTAINS.bindTo(event.shortCircuit).asType(methodType(boolean.class, Result.class));
+            isShortCircuit = MethodHandles.filterArguments(contains, 0, getters.get(EventListenerList.RESULT_FIELD));
+        }
+
+        List<MethodHandle> steps = new ArrayList<>();
+        for (ListenerHandle listener : listeners) {
+            MethodHandle step = listenerStep(event, eventClass, listener, getters, setters);
+            if (event.cancelable && !listener.receiveCanceled) {
+                step = MethodHandles.guardWithTest(getters.get(CANCELED_FIELD), noop, step);
+            }
+            if (isShortCircuit != null) {
+                // The result can only change when a listener is called, once short-circuited, every remaining listener is skipped.
+                step = MethodHandles.guardWithTest(isShortCircuit, noop, step);
+            }
+            steps.add(step);
+        }
+
+        Class<?> returnType = dispatchType.returnType();
+        MethodHandle ret;
+        if (returnType == event.eventInterface) {
+            ret = MethodHandles.identity(eventClass).asType(methodType(returnType, eventClass));
+        } else if (returnType == boolean.class) {
+            ret = getters.get(CANCELED_FIELD);
+        } else if (returnType == Result.class) {
+            ret = getters.get(EventListenerList.RESULT_FIELD);
+        } else {
+            ret = noop;
+        }
+
+        MethodHandle create;
+        if (event.reuseEventInstance) {
+            create = acquireHandle(event, eventClass, factoryParams, dispatchType);
+            ret = MethodHandles.foldArguments(ret, findVirtual(eventClass, EventClassGenerator.RELEASE, methodType(void.class)));
+        } else {
+            MethodHandle ctor = SneakyUtils.sneaky(() -> MethodHandles.publicLookup().unreflectConstructor(eventClass.getConstructors()[0]));
+            create = bindFactoryParams(event, factoryParams, dispatchType.changeReturnType(eventClass), ctor, new ArrayList<>(event.fields.keySet()), 0);
+        }
+
+        // Calls every listener, then returns the result.
+        MethodHandle body = MethodHandles.foldArguments(ret, sequence(steps, stepType));
+        return MethodHandles.collectArguments(body, 0, create);
+    }
+
+    /**
+     * Builds the call of a single listener, taking the event instance.
+     */
+    private static MethodHandle listenerStep(EventListenerList event, Class<? extends Event> eventClass, ListenerHandle listener, Map<String, MethodHandle> getters, Map<String, MethodHandle> setters) {
+        MethodHandle handle = listenerHandle(listener);
+        if (!listener.isFastInvoke()) {
+            return handle.asType(methodType(void.class, eventClass));
+        }
+
+        // Reads each parameter from the event, collapsing each read to the single event parameter.
+        List<String> params = requireNonNull(listener.getParams());
+        Class<?> returnType = handle.type().returnType();
+        handle = handle.asType(methodType(returnType, fieldTypes(event, params)));
+        if (params.isEmpty()) {
+            handle = MethodHandles.dropArguments(handle, 0, eventClass);
+        } else {
+            handle = MethodHandles.filterArguments(handle, 0, FastStream.of(params).map(getters::get).toArray(new MethodHandle[0]));
+            handle = MethodHandles.permuteArguments(handle, methodType(returnType, eventClass), new int[params.size()]);
+        }
+
+        if (event.cancelable && listener.canCancel()) {
+            // Listener returned true to cancel the event.
+            MethodHandle cancel = MethodHandles.dropArguments(MethodHandles.insertArguments(setters.get(CANCELED_FIELD), 1, true), 0, boolean.class);
+            MethodHandle cancelIf = MethodHandles.guardWithTest(
+                    MethodHandles.dropArguments(MethodHandles.identity(boolean.class), 1, eventClass),
+                    cancel,
+                    MethodHandles.dropArguments(MH_NOOP, 0, boolean.class, eventClass)
+            );
+            return MethodHandles.foldArguments(cancelIf, handle);
+        }
+        if (event.resultEvent && listener.setsResult()) {
+            // Listener returned a result, which replaces the current result unless DEFAULT or null.
+            MethodHandle merge = MethodHandles.filterArguments(MH_RESULT_MERGE, 0, getters.get(EventListenerList.RESULT_FIELD));
+            MethodHandle set = MethodHandles.permuteArguments(setters.get(EventListenerList.RESULT_FIELD), methodType(void.class, Result.class, eventClass), 1, 0);
+            MethodHandle setMerged = MethodHandles.foldArguments(MethodHandles.dropArguments(set, 2, Result.class), merge);
+            setMerged = MethodHandles.permuteArguments(setMerged, methodType(void.class, Result.class, eventClass), 1, 0);
+            return MethodHandles.foldArguments(setMerged, handle);
+        }
+        return handle.asType(methodType(void.class, eventClass));
+    }
+
+    /**
+     * Builds the acquire of the thread's reusable event instance, as generated dispatchers do.
+     * <p>
+     * If the thread's instance is already in use, by a re-entrant fire or a previous fire which threw,
+     * it is discarded, and a new instance is acquired in its place.
+     */
+    private static MethodHandle acquireHandle(EventListenerList event, Class<? extends Event> eventClass, List<String> factoryParams, MethodType dispatchType) {
+        EventInstances instances = new EventInstances(eventClass);
+        List<Class<?>> paramTypes = dispatchType.parameterList();
+
+        MethodHandle get = MH_EVENT_INSTANCES_GET.bindTo(instances).asType(methodType(eventClass));
+        MethodHandle getNew = MethodHandles.foldArguments(get, MH_EVENT_INSTANCES_REMOVE.bindTo(instances));
+
+        Class<?>[] fieldTypes = FastStream.of(event.fields.values()).<Class<?>>map(e -> e.type).toArray(new Class<?>[0]);
+        MethodHandle acquire = findVirtual(eventClass, EventClassGenerator.ACQUIRE, methodType(boolean.class, fieldTypes));
+        acquire = bindFactoryParams(event, factoryParams, methodType(boolean.class, paramTypes).insertParameterTypes(0, eventClass), acquire, new ArrayList<>(event.fields.keySet()), 1);
+
+        MethodHandle returnEvent = MethodHandles.dropArguments(MethodHandles.identity(eventClass), 1, paramTypes);
+        MethodHandle acquireNew = MethodHandles.foldArguments(
+                MethodHandles.foldArguments(returnEvent, acquire.asType(acquire.type().changeReturnType(void.class))),
+                getNew
+        );
+        MethodHandle acquireOrNew = MethodHandles.guardWithTest(acquire, returnEvent, MethodHandles.dropArguments(acquireNew, 0, eventClass));
+        return MethodHandles.foldArguments(acquireOrNew, get);
+    }
+
+    /**
+     * Adapts the given handle, taking the named event fields, to take the factory parameters instead.
+     * <p>
+     * Factories are not required to provide every field, those which are omitted start as their default value.
+     * The {@link ResultEvent} result starts as {@link Result#DEFAULT}.
+     *
+     * @param event         The event.
+     * @param factoryParams The factory parameter names.
+     * @param type          The type to adapt to, the leading parameters followed by the factory parameters.
+     * @param handle        The handle, taking the leading parameters followed by the named fields.
+     * @param names         The field names.
+     * @param leading       The number of leading parameters, passed through unchanged.
+     * @return The adapted handle.
+     */
+    private static MethodHandle bindFactoryParams(EventListenerList event, List<String> factoryParams, MethodType type, MethodHandle handle, List<String> names, int leading) {
+        for (int i = names.size() - 1; i >= 0; i--) {
+            if (!factoryParams.contains(names.get(i))) {
+                handle = MethodHandles.insertArguments(handle, leading + i, defaultValue(event.fields.get(names.get(i))));
+            }
+        }
+
+        List<Integer> reorder = new ArrayList<>();
+        for (int i = 0; i < leading; i++) {
+            reorder.add(i);
+        }
+        for (String name : names) {
+            int index = factoryParams.indexOf(name);
+            if (index != -1) {
+                reorder.add(leading + index);
+            }
+        }
+        Class<?>[] paramTypes = FastStream.of(reorder).map(type::parameterType).toArray(new Class<?>[0]);
+        handle = handle.asType(methodType(type.returnType(), paramTypes));
+        return MethodHandles.permuteArguments(handle, type, reorder.stream().mapToInt(e -> e).toArray());
+    }
+
+    @Nullable
+    private static Object defaultValue(EventField field) {
+        if (field.getter.getDeclaringClass() == ResultEvent.class) return Result.DEFAULT;
+        if (!field.type.isPrimitive()) return null;
+
+        return Array.get(Array.newInstance(field.type, 1), 0);
+    }
+
+    /**
+     * Calls each step in order, as a balanced tree of folds.
+     */
+    private static MethodHandle sequence(List<MethodHandle> steps, MethodType type) {
+        if (steps.isEmpty()) return MethodHandles.dropArguments(MH_NOOP, 0, type.parameterList());
+        if (steps.size() == 1) return steps.get(0);
+
+        int mid = steps.size() / 2;
+        return MethodHandles.foldArguments(sequence(steps.subList(mid, steps.size()), type), sequence(steps.subList(0, mid), type));
+    }
+
+    private static MethodHandle listenerHandle(ListenerHandle listener) {
+        MethodHandle handle = SneakyUtils.sneaky(() -> MethodHandles.publicLookup().unreflect(listener.handle));
+        return listener.instance != null ? handle.bindTo(listener.instance) : handle;
+    }
+
+    private static MethodHandle findVirtual(Class<?> clazz, String name, MethodType type) {
+        return SneakyUtils.sneaky(() -> MethodHandles.publicLookup().findVirtual(clazz, name, type));
+    }
+
+    private static List<Class<?>> fieldTypes(EventListenerList event, List<String> names) {
+        return FastStream.of(names).<Class<?>>map(e -> event.fields.get(e).type).toList();
+    }
+
+    private static class MethodHandleFireTask extends AsyncFireTask {
+
+        private final MethodHandle dispatcher;
+        private final Object[] args;
+
+        private MethodHandleFireTask(MethodHandle dispatcher, Object[] args) {
+            this.dispatcher = dispatcher;
+            this.args = args;
+        }
+
+        @Override
+        protected Object fire() {
+            try {
+                return (Object) dispatcher.invokeExact(args);
+            } catch (Throwable ex) {
+                // Listeners may sneaky throw checked exceptions.
+                throw SneakyUtils.<RuntimeException>throwUnchecked(ex);
+            }
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package net.covers1624.eventbus.internal;
 
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import net.covers1624.eventbus.Environment;
+import net.covers1624.eventbus.ParameterNameSource;
+import net.covers1624.eventbus.ParameterNameStats;
 import net.covers1624.eventbus.ParameterNames;
 import net.covers1624.quack.collection.FastStream;
 import org.jetbrains.annotations.ApiStatus;
@@ -16,12 +19,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Created by covers1624 on 9/4/21.
@@ -32,22 +39,46 @@ class MethodParamLookup {
     private static final Logger LOGGER = LoggerFactory.getLogger(MethodParamLookup.class);
 
     private final Environment env;
+    private final List<ParameterNameSource> sources;
+    private final Stats stats = new Stats();
 
-    private final Map<Class<?>, Map<String, List<String>>> asmParamCache = new ConcurrentHashMap<>();
-    private final Map<Class<?>, Map<String, List<String>>> metadataParamCache = new ConcurrentHashMap<>();
-    private final Map<Method, List<String>> paramCache = new ConcurrentHashMap<>();
+    // Weakly keyed, so cached names never prevent a class from being unloaded.
+    private final Map<Class<?>, Map<String, List<String>>> asmParamCache;
+    private final Map<Class<?>, Map<String, List<String>>> metadataParamCache;
+    // Resolved names of each method, keyed by the method's name and descriptor, for each declaring class.
+    private final Map<Class<?>, Map<String, List<String>>> paramCache;
+    @Nullable
+    private volatile Map<String, Map<String, List<String>>> indexedParams;
 
     public MethodParamLookup(Environment env) {
         this.env = env;
+        sources = ImmutableList.copyOf(new LinkedHashSet<>(env.getParameterNameSources()));
+        asmParamCache = newCache(env);
+        metadataParamCache = newCache(env);
+        paramCache = newCache(env);
+    }
+
+    private static <V> Map<Class<?>, V> newCache(Environment env) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().weakKeys();
+        long expiry = env.getParameterNameCacheExpiry();
+        if (expiry > 0) {
+            builder.expireAfterAccess(expiry, TimeUnit.MILLISECONDS);
+        }
+        return builder.<Class<?>, V>build().asMap();
     }
 
     /**
      * Get the parameter names for a given {@link Method}.
      * <p>
+     * Each of the {@link Environment#getParameterNameSources()} are tried in order, by default:
+     * <p>
      * First it will try and load the {@link ParameterNames} annotation on the method.
      * <p>
      * Next, it will try loading from the META-INF folder, with metadata extracted at compile time
-     * via the accompanying annotation processor.
+     * via the accompanying annotation processor. The {@link ParamIndex} of every compilation is loaded once,
+     * the per-class files written by older versions of the processor are looked up for any class not indexed.
+     * <p>
+     * Next, it will try the reflection {@link Parameter} names, present if the class was compiled with {@code -parameters}.
      * <p>
      * Finally, it will try loading the bytecode of the class, parsing out the local variable table.
      * <p>
@@ -58,33 +89,68 @@ class MethodParamLookup {
      * @see ParameterNames
      */
     public List<String> getMethodParams(Method method) {
+        Map<String, List<String>> methods = paramCache.computeIfAbsent(method.getDeclaringClass(), e -> new ConcurrentHashMap<>());
+        String key = getKey(method);
         synchronized (method) {
-            List<String> params = paramCache.get(method);
+            List<String> params = methods.get(key);
             if (params != null) return params;
 
             params = computeMethodParams(method);
             if (params == null) return ImmutableList.of();
 
-            paramCache.put(method, params);
+            methods.put(key, params);
             return params;
         }
     }
 
+    /**
+     * @return The live statistics of each source.
+     */
+    public ParameterNameStats getStats() {
+        return stats;
+    }
+
     @Nullable
     private List<String> computeMethodParams(Method method) {
-        // Try loading via annotation.
-        List<String> params = loadNamedParams(method);
-        if (params != null) return params;
-
-        String key = method.getName() + Type.getMethodDescriptor(method);
+        for (ParameterNameSource source : sources) {
+            long start = System.nanoTime();
+            List<String> params = computeMethodParams(source, method);
+            stats.record(source, params != null, System.nanoTime() - start);
+            if (params != null) {
+                if (source == ParameterNameSource.BYTECODE) {
+                    LOGGER.debug("Resolved parameter names of {} from class bytecode.", method);
+                }
+                return params;
+            }
+        }
+        return null;
+    }
 
-        // Try via AnnotationProcessor metadata.
-        params = loadMetaParams(method.getDeclaringClass()).get(key);
-        if (params != null) return params;
+    @Nullable
+    private List<String> computeMethodParams(ParameterNameSource source, Method method) {
+        switch (source) {
+            case ANNOTATION:
+                return loadNamedParams(method);
+            case METADATA: {
+                // Try via AnnotationProcessor metadata.
+                Map<String, List<String>> classParams = loadIndexedParams().get(method.getDeclaringClass().getName());
+                if (classParams == null) {
+                    classParams = loadMetaParams(method.getDeclaringClass());
+                }
+                return classParams.get(getKey(method));
+            }
+            case REFLECTION:
+                return loadReflectParams(method);
+            case BYTECODE:
+                // Try by reading the class bytecode.
+                return loadAsmParams(method.getDeclaringClass()).get(getKey(method));
+            default:
+                throw new IllegalArgumentException("Unknown source: " + source);
+        }
+    }
 
-        // Try by reading the class bytecode.
-        params = loadAsmParams(method.getDeclaringClass()).get(key);
-        return params;
+    private static String getKey(Method method) {
+        return method.getName() + Type.getMethodDescriptor(method);
     }
 
     @Nullable
@@ -103,6 +169,44 @@ class MethodParamLookup {
                 .toImmutableList();
     }
 
+    @Nullable
+    private List<String> loadReflectParams(Method method) {
+        Parameter[] parameters = method.getParameters();
+        List<String> params = new ArrayList<>(parameters.length);
+        for (Parameter parameter : parameters) {
+            if (!parameter.isNamePresent()) return null;
+
+            params.add(parameter.getName().intern());
+        }
+        return ImmutableList.copyOf(params);
+    }
+
+    private Map<String, Map<String, List<String>>> loadIndexedParams() {
+        Map<String, Map<String, List<String>>> indexed = indexedParams;
+        if (indexed != null) return indexed;
+
+        synchronized (this) {
+            indexed = indexedParams;
+            if (indexed != null) return indexed;
+
+            indexed = new HashMap<>();
+            try {
+                for (InputStream is : env.getResourceStreams(ParamIndex.RESOURCE)) {
+                    try (InputStream ignored = is) {
+                        ParamIndex.read(is, indexed);
+                    } catch (IOException ex) {
+                        LOGGER.error("Error parsing resource: " + ParamIndex.RESOURCE, ex);
+                    }
+                }
+            } catch (IOException ex) {
+                LOGGER.error("Error finding resources: " + ParamIndex.RESOURCE, ex);
+            }
+            indexed = ImmutableMap.copyOf(indexed);
+            indexedParams = indexed;
+            return indexed;
+        }
+    }
+
     private Map<String, List<String>> loadMetaParams(Class<?> clazz) {
         synchronized (clazz) {
             Map<String, List<String>> params = metadataParamCache.get(clazz);
@@ -110,7 +214,11 @@ class MethodParamLookup {
 
             String resource = "/META-INF/eventbus/" + clazz.getName() + ".params";
             try (InputStream is = env.getResourceStream(resource)) {
-                if (is == null) return ImmutableMap.of();
+                if (is == null) {
+                    // Cache misses too, most classes won't have one.
+                    metadataParamCache.put(clazz, ImmutableMap.of());
+                    return ImmutableMap.of();
+                }
 
                 params = new HashMap<>();
                 BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
@@ -136,6 +244,7 @@ class MethodParamLookup {
                 return params;
             } catch (IOException ex) {
                 LOGGER.error("Error parsing resource: " + resource, ex);
+                metadataParamCache.put(clazz, ImmutableMap.of());
                 return ImmutableMap.of();
             }
         }
@@ -162,6 +271,48 @@ class MethodParamLookup {
         }
     }
 
+    private static class Stats implements ParameterNameStats {
+
+        private final LongAdder[] hits = newAdders();
+        private final LongAdder[] misses = newAdders();
+        private final LongAdder[] nanos = newAdders();
+
+        public void record(ParameterNameSource source, boolean hit, long time) {
+            (hit ? hits : misses)[source.ordinal()].increment();
+            nanos[source.ordinal()].add(time);
+        }
+
+        @Override
+        public long getHits(ParameterNameSource source) {
+            return hits[source.ordinal()].sum();
+        }
+
+        @Override
+        public long getMisses(ParameterNameSource source) {
+            return misses[source.ordinal()].sum();
+        }
+
+        @Override
+        public long getTimeNanos(ParameterNameSource source) {
+            return nanos[source.ordinal()].sum();
+        }
+
+        @Override
+        public String toString() {
+            return FastStream.of(ParameterNameSource.values())
+                    .map(e -> e + "{hits=" + getHits(e) + ", misses=" + getMisses(e) + ", time=" + TimeUnit.NANOSECONDS.toMicros(getTimeNanos(e)) + "us}")
+                    .join(", ");
+        }
+
+        private static LongAdder[] newAdders() {
+            LongAdder[] adders = new LongAdder[ParameterNameSource.values().length];
+            for (int i = 0; i < adders.length; i++) {
+                adders[i] = new LongAdder();
+            }
+            return adders;
+        }
+    }
+
     private static class MethodParamClassVisitor extends ClassVisitor {
 
         public final Map<String, List<String>> methodParamMap;
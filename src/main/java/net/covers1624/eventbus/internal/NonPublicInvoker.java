@@ -0,0 +1,199 @@
+package net.covers1624.eventbus.internal;
+
+import com.google.common.collect.MapMaker;
+import net.covers1624.eventbus.Environment;
+import net.covers1624.eventbus.SubscribeEvent;
+import net.covers1624.quack.asm.ClassBuilder;
+import net.covers1624.quack.asm.ClassBuilder.FieldBuilder;
+import net.covers1624.quack.util.SneakyUtils;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Type;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static net.covers1624.eventbus.internal.Utils.asmName;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Calls a non-public {@link SubscribeEvent} method, registered with a {@link MethodHandles.Lookup}.
+ * <p>
+ * Dispatchers call {@link #method} on {@link #instance}, the same as any other listener.
+ * <p>
+ * The instance is a generated class, calling a {@link MethodHandle} of the method held in a static final field.
+ * One class is generated per method and environment, each registered receiver is an instance of it. Class names
+ * are derived from the method and the environment, not the order of registration, keeping the class cache keys
+ * of dispatchers calling them stable between runs. On Java 15 and above, this class is replaced by the version in
+ * the multi-release sources, which calls the method directly from a hidden class.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public final class NonPublicInvoker {
+
+    private static final AtomicInteger ENV_COUNTER = new AtomicInteger();
+
+    private static final Type OBJECT_TYPE = Type.getType(Object.class);
+    private static final Type METHOD_HANDLE_TYPE = Type.getType(MethodHandle.class);
+    private static final Method M_CLAIM_HANDLE = SneakyUtils.sneaky(() -> NonPublicInvoker.class.getDeclaredMethod("claimHandle", Class.class));
+
+    // The invoker classes generated for each class, per environment, keyed by method name and descriptor.
+    // Each environment may define classes in a different class loader, which can't see the others.
+    private static final ClassValue<Map<Environment, Map<String, InvokerClass>>> INVOKERS = new ClassValue<Map<Environment, Map<String, InvokerClass>>>() {
+        @Override
+        protected Map<Environment, Map<String, InvokerClass>> computeValue(Class<?> type) {
+            return new MapMaker().weakKeys().makeMap();
+        }
+    };
+
+    // The index of each environment, keeping invoker names unique between environments sharing a class loader.
+    private static final Map<Environment, Integer> ENV_INDICES = new MapMaker().weakKeys().makeMap();
+
+    // Handles for invoker classes which have been defined, but not yet initialized.
+    private static final Map<String, MethodHandle> PENDING_HANDLES = new ConcurrentHashMap<>();
+
+    public final Object instance;
+    public final Method method;
+
+    private NonPublicInvoker(Object instance, Method method) {
+        this.instance = instance;
+        this.method = method;
+    }
+
+    /**
+     * Create an invoker for the given method.
+     *
+     * @param env      The environment to define classes in.
+     * @param lookup   The lookup, with access to the method.
+     * @param receiver The instance to call the method on, {@code null} for static methods.
+     * @param method   The method.
+     * @return The invoker.
+     * @throws IllegalAccessException If the lookup does not have access to the method.
+     */
+    public static NonPublicInvoker create(Environment env, MethodHandles.Lookup lookup, @Nullable Object receiver, Method method) throws IllegalAccessException {
+        // Checked for every registration, the cached class may have been generated from another lookup.
+        MethodHandle handle = lookup.unreflect(method);
+
+        boolean isStatic = Modifier.isStatic(method.getModifiers());
+        InvokerClass invoker = INVOKERS.get(method.getDeclaringClass())
+                .computeIfAbsent(env, e -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method.getName() + Type.getMethodDescriptor(method), e -> generateClass(env, method, isStatic, handle));
+        try {
+            return new NonPublicInvoker(
+                    isStatic ? invoker.ctor.newInstance() : invoker.ctor.newInstance(receiver),
+                    invoker.invoke
+            );
+        } catch (ReflectiveOperationException ex) {
+            throw new RuntimeException("Failed to create invoker for " + method, ex);
+        }
+    }
+
+    private static InvokerClass generateClass(Environment env, Method method, boolean isStatic, MethodHandle handle) {
+        // The receiver is held as an Object, the owner may not be accessible from the invoker.
+        MethodHandle erased = isStatic ? handle : handle.asType(handle.type().changeParameterType(0, Object.class));
+        Type invokeDesc = Type.getMethodType(Type.getReturnType(method), Type.getArgumentTypes(method));
+        Type handleDesc = Type.getType(erased.type().toMethodDescriptorString());
+
+        int envIndex = ENV_INDICES.computeIfAbsent(env, e -> ENV_COUNTER.getAndIncrement());
+        ClassBuilder classGen = new ClassBuilder(
+                ACC_PUBLIC | ACC_SUPER | ACC_FINAL | ACC_SYNTHETIC,
+                Type.getObjectType(asmName(method.getDeclaringClass().getName()) + "$$Invoker$$" + methodIndex(method) + "$" + envIndex)
+        );
+        FieldBuilder handleField = classGen.addField(ACC_PRIVATE | ACC_STATIC | ACC_FINAL, "handle", METHOD_HANDLE_TYPE);
+        FieldBuilder receiverField = isStatic ? null : classGen.addField(ACC_PRIVATE | ACC_FINAL, "receiver", OBJECT_TYPE);
+
+        classGen.addMethod(ACC_STATIC, "<clinit>", Type.getMethodType(Type.VOID_TYPE)).withBody(gen -> {
+            gen.ldc(classGen.name());
+            gen.methodInsn(INVOKESTATIC, M_CLAIM_HANDLE);
+            gen.putField(handleField);
+            gen.ret();
+        });
+        classGen.addMethod(ACC_PUBLIC, "<init>", isStatic ? Type.getMethodType(Type.VOID_TYPE) : Type.getMethodType(Type.VOID_TYPE, OBJECT_TYPE)).withBody(gen -> {
+            gen.loadThis();
+            gen.methodInsn(INVOKESPECIAL, OBJECT_TYPE, "<init>", Type.getMethodType(Type.VOID_TYPE), false);
+            if (receiverField != null) {
+                gen.loadThis();
+                gen.loadParam(0);
+                gen.putField(receiverField);
+            }
+            gen.ret();
+        });
+        classGen.addMethod(ACC_PUBLIC | ACC_FINAL, "invoke", invokeDesc).withBody(gen -> {
+            gen.getField(handleField);
+            if (receiverField != null) {
+                gen.loadThis();
+                gen.getField(receiverField);
+            }
+            for (int i = 0; i < invokeDesc.getArgumentTypes().length; i++) {
+                gen.loadParam(i);
+            }
+            gen.methodInsn(INVOKEVIRTUAL, METHOD_HANDLE_TYPE, "invokeExact", handleDesc, false);
+            gen.ret();
+        });
+
+        byte[] bytes = ClassCache.build(null, new ClassCache.Key("invoker"), classGen, Collections.emptyList());
+        String cName = classGen.name().getInternalName().replace("/", ".");
+        Class<?> clazz = env.defineClass(cName, bytes);
+        PENDING_HANDLES.put(cName, erased);
+        try {
+            // Initialize now, claiming the handle.
+            Class.forName(cName, true, clazz.getClassLoader());
+            return new InvokerClass(
+                    isStatic ? clazz.getConstructor() : clazz.getConstructor(Object.class),
+                    clazz.getMethod("invoke", method.getParameterTypes())
+            );
+        } catch (ReflectiveOperationException ex) {
+            throw new RuntimeException("Failed to create invoker for " + method, ex);
+        } finally {
+            PENDING_HANDLES.remove(cName);
+        }
+    }
+
+    /**
+     * Gets the index of the given method, within its class's methods, sorted by signature.
+     * <p>
+     * Stable between runs, unlike the order of {@link Class#getDeclaredMethods()}.
+     *
+     * @param method The method.
+     * @return The index.
+     */
+    private static int methodIndex(Method method) {
+        Method[] methods = method.getDeclaringClass().getDeclaredMethods();
+        Arrays.sort(methods, Comparator.comparing(Method::toString));
+        return Arrays.asList(methods).indexOf(method);
+    }
+
+    /**
+     * Called from the static initializer of generated invokers to obtain their handle.
+     *
+     * @param invoker The generated invoker class.
+     * @return The handle of the invoker's method.
+     */
+    public static MethodHandle claimHandle(Class<?> invoker) {
+        MethodHandle handle = PENDING_HANDLES.remove(invoker.getName());
+        if (handle == null) throw new IllegalStateException("No pending handle for " + invoker.getName());
+
+        return handle;
+    }
+
+    private static final class InvokerClass {
+
+        public final Constructor<?> ctor;
+        public final Method invoke;
+
+        private InvokerClass(Constructor<?> ctor, Method invoke) {
+            this.ctor = ctor;
+            this.invoke = invoke;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package net.covers1624.eventbus.internal;
+
+import net.covers1624.quack.util.SneakyUtils;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+
+/**
+ * Support methods for dispatching parallel listeners.
+ * <p>
+ * Called from generated dispatchers.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public final class ParallelSupport {
+
+    private ParallelSupport() {
+    }
+
+    /**
+     * Runs all the given tasks on the given pool, waiting for every task to complete.
+     * <p>
+     * The calling thread runs the first task itself, instead of idling until the others complete.
+     * If any task throws, the first exception is rethrown once all tasks have completed.
+     *
+     * @param pool  The pool.
+     * @param tasks The tasks.
+     */
+    public static void invokeAll(ForkJoinPool pool, ForkJoinTask<?>[] tasks) {
+        Thread thread = Thread.currentThread();
+        boolean inPool = thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool;
+        for (int i = 1; i < tasks.length; i++) {
+            if (inPool) {
+                tasks[i].fork();
+            } else {
+                pool.execute(tasks[i]);
+            }
+        }
+
+        Throwable failure = null;
+        try {
+            tasks[0].invoke();
+        } catch (Throwable ex) {
+            failure = ex;
+        }
+        for (int i = 1; i < tasks.length; i++) {
+            try {
+                tasks[i].join();
+            } catch (Throwable ex) {
+                if (failure == null) {
+                    failure = ex;
+                } else {
+                    failure.addSuppressed(ex);
+                }
+            }
+        }
+        if (failure != null) {
+            // Listeners may sneaky throw checked exceptions.
+            throw SneakyUtils.<RuntimeException>throwUnchecked(failure);
+        }
+    }
+}
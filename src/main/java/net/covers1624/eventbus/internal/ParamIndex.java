@@ -0,0 +1,138 @@
+package net.covers1624.eventbus.internal;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the aggregated parameter name index, written by the annotation processor
+ * once per compilation, at {@link #RESOURCE}.
+ * <p>
+ * The index is a string table, followed by each class, its method keys, and their parameter names,
+ * all referenced by their index in the string table. Indexes may be concatenated, such as when merging jars.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public class ParamIndex {
+
+    public static final String RESOURCE = "/META-INF/eventbus/params.bin";
+
+    private static final int MAGIC = 0xEB0CA4A5;
+    private static final int VERSION = 1;
+
+    /**
+     * Write an index.
+     *
+     * @param os     The stream to write to.
+     * @param params The parameter names of each method, keyed by method name and descriptor, for each class.
+     * @throws IOException If an IO error occurs.
+     */
+    public static void write(OutputStream os, Map<String, Map<String, List<String>>> params) throws IOException {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<String, List<String>>> clazz : params.entrySet()) {
+            strings.putIfAbsent(clazz.getKey(), strings.size());
+            for (Map.Entry<String, List<String>> method : clazz.getValue().entrySet()) {
+                strings.putIfAbsent(method.getKey(), strings.size());
+                for (String param : method.getValue()) {
+                    strings.putIfAbsent(param, strings.size());
+                }
+            }
+        }
+
+        DataOutputStream dos = new DataOutputStream(os);
+        dos.writeInt(MAGIC);
+        dos.writeByte(VERSION);
+        writeVarInt(dos, strings.size());
+        for (String str : strings.keySet()) {
+            dos.writeUTF(str);
+        }
+        writeVarInt(dos, params.size());
+        for (Map.Entry<String, Map<String, List<String>>> clazz : params.entrySet()) {
+            writeVarInt(dos, strings.get(clazz.getKey()));
+            writeVarInt(dos, clazz.getValue().size());
+            for (Map.Entry<String, List<String>> method : clazz.getValue().entrySet()) {
+                writeVarInt(dos, strings.get(method.getKey()));
+                writeVarInt(dos, method.getValue().size());
+                for (String param : method.getValue()) {
+                    writeVarInt(dos, strings.get(param));
+                }
+            }
+        }
+        dos.flush();
+    }
+
+    /**
+     * Read all indexes from the given stream, adding them to the given map.
+     * <p>
+     * All strings are interned.
+     *
+     * @param is     The stream to read.
+     * @param params The map to add to, see {@link #write}.
+     * @throws IOException If an IO error occurs, or the index is invalid.
+     */
+    public static void read(InputStream is, Map<String, Map<String, List<String>>> params) throws IOException {
+        DataInputStream dis = new DataInputStream(new BufferedInputStream(is));
+        while (true) {
+            dis.mark(4);
+            if (dis.read() == -1) break;
+            dis.reset();
+
+            if (dis.readInt() != MAGIC) throw new IOException("Invalid magic.");
+            int version = dis.readUnsignedByte();
+            if (version != VERSION) throw new IOException("Unsupported version " + version + ".");
+
+            String[] strings = new String[readVarInt(dis)];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = dis.readUTF().intern();
+            }
+            int numClasses = readVarInt(dis);
+            for (int i = 0; i < numClasses; i++) {
+                String clazz = strings[readVarInt(dis)];
+                int numMethods = readVarInt(dis);
+                Map<String, List<String>> methods = new HashMap<>();
+                for (int j = 0; j < numMethods; j++) {
+                    String key = strings[readVarInt(dis)];
+                    List<String> names = new ArrayList<>();
+                    int numParams = readVarInt(dis);
+                    for (int k = 0; k < numParams; k++) {
+                        names.add(strings[readVarInt(dis)]);
+                    }
+                    methods.put(key, ImmutableList.copyOf(names));
+                }
+                params.merge(clazz, ImmutableMap.copyOf(methods), ParamIndex::mergeMethods);
+            }
+        }
+    }
+
+    private static Map<String, List<String>> mergeMethods(Map<String, List<String>> a, Map<String, List<String>> b) {
+        Map<String, List<String>> merged = new HashMap<>(a);
+        merged.putAll(b);
+        return ImmutableMap.copyOf(merged);
+    }
+
+    private static void writeVarInt(DataOutputStream dos, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            dos.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dos.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream dis) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = dis.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("VarInt too long.");
+    }
+}
@@ -0,0 +1,76 @@
+package net.covers1624.eventbus.internal;
+
+import net.covers1624.eventbus.ListenerRegistration;
+import org.jetbrains.annotations.ApiStatus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects listener modifications made on a single thread, applying them to each
+ * {@link EventListenerList} at once.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+class RegistrationBatch {
+
+    private final Map<EventListenerList, List<ListenerHandle>> changes = new LinkedHashMap<>();
+    private final List<ListenerRegistration> registrations = new ArrayList<>();
+
+    /**
+     * Queues the given listener to be added to the given list.
+     *
+     * @param list         The list.
+     * @param handle       The listener.
+     * @param registration The registration for the listener.
+     */
+    void add(EventListenerList list, ListenerHandle handle, ListenerRegistration registration) {
+        changes.computeIfAbsent(list, e -> new ArrayList<>()).add(handle);
+        registrations.add(registration);
+    }
+
+    /**
+     * Queues the given list to have its unregistered listeners removed.
+     *
+     * @param list The list.
+     */
+    void remove(EventListenerList list) {
+        changes.computeIfAbsent(list, e -> new ArrayList<>());
+    }
+
+    /**
+     * Drops all queued listeners. Removals are kept, as their listeners are already unregistered.
+     */
+    void discard() {
+        changes.replaceAll((k, v) -> new ArrayList<>());
+        registrations.clear();
+    }
+
+    /**
+     * Moves all modifications of this batch into the given batch.
+     *
+     * @param other The batch.
+     */
+    void mergeInto(RegistrationBatch other) {
+        changes.forEach((list, added) -> other.changes.computeIfAbsent(list, e -> new ArrayList<>()).addAll(added));
+        other.registrations.addAll(registrations);
+    }
+
+    /**
+     * Applies all modifications of this batch, publishing a single new snapshot per list.
+     */
+    void apply() {
+        changes.forEach(EventListenerList::applyChanges);
+    }
+
+    /**
+     * @return The registrations of each listener added by this batch.
+     */
+    List<ListenerRegistration> getRegistrations() {
+        return Collections.unmodifiableList(registrations);
+    }
+}
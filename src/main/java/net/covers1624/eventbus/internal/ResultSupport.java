@@ -0,0 +1,42 @@
+package net.covers1624.eventbus.internal;
+
+import net.covers1624.eventbus.ResultEvent.Result;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Support methods for {@link net.covers1624.eventbus.ResultEvent} dispatch.
+ * <p>
+ * Called from generated dispatchers, these are trivially inlined by the JIT.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+public final class ResultSupport {
+
+    private ResultSupport() {
+    }
+
+    public static Result deny() {
+        return Result.DENY;
+    }
+
+    public static Result defaultResult() {
+        return Result.DEFAULT;
+    }
+
+    public static Result allow() {
+        return Result.ALLOW;
+    }
+
+    /**
+     * Merges the result returned by a fast invoke listener into the current result.
+     *
+     * @param current  The current result.
+     * @param returned The result returned by the listener.
+     * @return The new result, {@code current} if the listener returned {@code null} or {@link Result#DEFAULT}.
+     */
+    public static Result merge(Result current, @Nullable Result returned) {
+        return returned == null || returned == Result.DEFAULT ? current : returned;
+    }
+}
@@ -0,0 +1,253 @@
+package net.covers1624.eventbus.internal;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.reflect.TypeToken;
+import net.covers1624.eventbus.*;
+import net.covers1624.quack.collection.FastStream;
+import org.jetbrains.annotations.ApiStatus;
+import org.jetbrains.annotations.Nullable;
+import org.objectweb.asm.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.TypeVariable;
+import java.lang.reflect.WildcardType;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static net.covers1624.quack.util.SneakyUtils.unsafeCast;
+
+/**
+ * Finds the {@link SubscribeEvent} methods declared by a class, for {@link EventBus#register}.
+ * <p>
+ * Methods of any access are found, non-public methods are only registered when a lookup is provided.
+ * <p>
+ * First it will try loading the subscriber index from the META-INF folder, written at compile time
+ * by the accompanying annotation processor. This skips scanning the class's methods and parsing
+ * their annotations, and provides the parameter names of fast invoke listeners.
+ * <p>
+ * Otherwise, the class's declared methods are scanned.
+ * <p>
+ * The result is cached per class, registering further instances of a class does no lookups.
+ * <p>
+ * Created by covers1624 on 18/10/26.
+ */
+@ApiStatus.Internal
+class SubscriberLookup {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SubscriberLookup.class);
+
+    private final Environment env;
+    private final MethodParamLookup paramLookup;
+
+    // Stored on the class itself, so the subscribers never prevent the class from being unloaded.
+    private final ClassValue<List<Subscriber>> staticSubscribers = new ClassValue<List<Subscriber>>() {
+        @Override
+        protected List<Subscriber> computeValue(Class<?> type) {
+            return findSubscribers(type, true);
+        }
+    };
+    private final ClassValue<List<Subscriber>> instanceSubscribers = new ClassValue<List<Subscriber>>() {
+        @Override
+        protected List<Subscriber> computeValue(Class<?> type) {
+            return findSubscribers(type, false);
+        }
+    };
+
+    public SubscriberLookup(Environment env, MethodParamLookup paramLookup) {
+        this.env = env;
+        this.paramLookup = paramLookup;
+    }
+
+    /**
+     * Get the subscribers declared by the given class.
+     *
+     * @param clazz    The class.
+     * @param isStatic If {@code static} subscribers should be returned, otherwise non-static subscribers.
+     * @return The subscribers, of any access.
+     * @see #isSubscriberMethod(int, boolean)
+     */
+    public List<Subscriber> getSubscribers(Class<?> clazz, boolean isStatic) {
+        return (isStatic ? staticSubscribers : instanceSubscribers).get(clazz);
+    }
+
+    private List<Subscriber> findSubscribers(Class<?> clazz, boolean isStatic) {
+        List<Subscriber> subscribers = loadIndex(clazz, isStatic);
+        if (subscribers == null) {
+            subscribers = scan(clazz, isStatic);
+        }
+        return subscribers;
+    }
+
+    @Nullable
+    private List<Subscriber> loadIndex(Class<?> clazz, boolean isStatic) {
+        String resource = "/META-INF/eventbus/" + clazz.getName() + ".subscribers";
+        try (InputStream is = env.getResourceStream(resource)) {
+            if (is == null) return null;
+
+            List<Subscriber> subscribers = new ArrayList<>();
+            BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) continue;
+
+                // <name><desc> <static|instance> <consumer|fast> <event> <priority> <receiveCanceled> <parallel> [params]
+                String[] split = line.split(" ");
+                if (split.length != 7 && split.length != 8) throw new IOException("Invalid line: " + line);
+                if (split[1].equals("static") != isStatic) continue;
+
+                int descStart = split[0].indexOf('(');
+                Method method = clazz.getDeclaredMethod(split[0].substring(0, descStart), getParameterTypes(clazz, split[0].substring(descStart)));
+                Class<? extends Event> event = unsafeCast(Class.forName(split[3], false, clazz.getClassLoader()));
+                EventPriority priority = EventPriority.valueOf(split[4]);
+                boolean receiveCanceled = Boolean.parseBoolean(split[5]);
+                boolean parallel = Boolean.parseBoolean(split[6]);
+                if (split[2].equals("consumer")) {
+                    subscribers.add(new Subscriber(method, event, priority, receiveCanceled, parallel, getGenericFilter(event, method), null));
+                } else {
+                    List<String> params = split.length == 8
+                            ? FastStream.of(split[7].split(",")).map(String::intern).toImmutableList()
+                            : ImmutableList.of();
+                    subscribers.add(new Subscriber(method, event, priority, receiveCanceled, parallel, null, params));
+                }
+            }
+            return subscribers;
+        } catch (IOException | ReflectiveOperationException | IllegalArgumentException ex) {
+            LOGGER.warn("Failed to read subscriber index {}. Falling back to scanning the class.", resource, ex);
+            return null;
+        }
+    }
+
+    private List<Subscriber> scan(Class<?> clazz, boolean isStatic) {
+        List<Subscriber> subscribers = new ArrayList<>();
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (!isSubscriberMethod(method.getModifiers(), isStatic)) continue;
+
+            SubscribeEvent sub = method.getDeclaredAnnotation(SubscribeEvent.class);
+            if (sub == null) continue;
+
+            LOGGER.debug("Considering method {} for event subscription.", method);
+            Class<? extends Event>[] events = sub.value();
+            if (events.length > 1) throw new IllegalStateException("Unable to register to more than one event. Method: " + method);
+
+            Class<?>[] args = method.getParameterTypes();
+            Class<? extends Event> annotationEvent = events.length == 1 ? events[0] : null;
+            Class<? extends Event> paramEvent = args.length == 1 && Event.class.isAssignableFrom(args[0]) ? unsafeCast(args[0]) : null;
+
+            if (paramEvent != null) {
+                // First and only parameter is an Event, register as an event consumer.
+                if (annotationEvent != null && !paramEvent.equals(annotationEvent)) {
+                    LOGGER.error("Parameter and Annotation disagree on event type.");
+                    continue;
+                }
+                subscribers.add(new Subscriber(method, paramEvent, sub.priority(), sub.receiveCanceled(), sub.parallel(), getGenericFilter(paramEvent, method), null));
+            } else if (annotationEvent != null) {
+                List<String> params = paramLookup.getMethodParams(method);
+                if (params.size() != args.length) {
+                    LOGGER.error("Unable to extract all method param names. " + method);
+                    continue;
+                }
+                subscribers.add(new Subscriber(method, annotationEvent, sub.priority(), sub.receiveCanceled(), sub.parallel(), null, params));
+            } else {
+                LOGGER.debug(" Unable to determine subscribed event. " + method);
+            }
+        }
+        return subscribers;
+    }
+
+    /**
+     * Checks if a method with the given modifiers may be registered as a subscriber.
+     * <p>
+     * Other than its access, a method must have no modifiers, besides {@code static} for static subscribers.
+     *
+     * @param modifiers The method modifiers.
+     * @param isStatic  If static subscribers are being registered.
+     * @return If the method may be registered.
+     */
+    public static boolean isSubscriberMethod(int modifiers, boolean isStatic) {
+        return (modifiers & ~(Modifier.PUBLIC | Modifier.PROTECTED | Modifier.PRIVATE)) == (isStatic ? Modifier.STATIC : 0);
+    }
+
+    private static Class<?>[] getParameterTypes(Class<?> clazz, String desc) throws ClassNotFoundException {
+        Type[] args = Type.getArgumentTypes(desc);
+        Class<?>[] types = new Class<?>[args.length];
+        for (int i = 0; i < args.length; i++) {
+            types[i] = getClass(clazz, args[i]);
+        }
+        return types;
+    }
+
+    private static Class<?> getClass(Class<?> clazz, Type type) throws ClassNotFoundException {
+        switch (type.getSort()) {
+            case Type.BOOLEAN: return boolean.class;
+            case Type.CHAR: return char.class;
+            case Type.BYTE: return byte.class;
+            case Type.SHORT: return short.class;
+            case Type.INT: return int.class;
+            case Type.FLOAT: return float.class;
+            case Type.LONG: return long.class;
+            case Type.DOUBLE: return double.class;
+            case Type.ARRAY: return Class.forName(type.getDescriptor().replace('/', '.'), false, clazz.getClassLoader());
+            default: return Class.forName(type.getClassName(), false, clazz.getClassLoader());
+        }
+    }
+
+    /**
+     * Resolves the generic type a {@link GenericEvent} consumer method is filtered to.
+     *
+     * @param event  The event class.
+     * @param method The consumer method.
+     * @return The type to filter to, {@code null} if the parameter is not parameterized with a concrete type.
+     */
+    @Nullable
+    private static java.lang.reflect.Type getGenericFilter(Class<? extends Event> event, Method method) {
+        if (!GenericEvent.class.isAssignableFrom(event)) return null;
+
+        java.lang.reflect.Type paramType = method.getGenericParameterTypes()[0];
+        if (!(paramType instanceof ParameterizedType)) return null;
+
+        java.lang.reflect.Type resolved = TypeToken.of(paramType).resolveType(GenericEvent.class.getTypeParameters()[0]).getType();
+        if (resolved instanceof TypeVariable || resolved instanceof WildcardType) return null;
+        return resolved;
+    }
+
+    /**
+     * A {@link SubscribeEvent} method.
+     */
+    public static final class Subscriber {
+
+        public final Method method;
+        public final Class<? extends Event> event;
+        public final EventPriority priority;
+        public final boolean receiveCanceled;
+        public final boolean parallel;
+        /**
+         * The generic type an event consumer is filtered to, {@code null} for all types.
+         */
+        @Nullable
+        public final java.lang.reflect.Type genericFilter;
+        /**
+         * The parameter names of a fast invoke listener, {@code null} for event consumers.
+         */
+        @Nullable
+        public final List<String> params;
+
+        public Subscriber(Method method, Class<? extends Event> event, EventPriority priority, boolean receiveCanceled, boolean parallel, @Nullable java.lang.reflect.Type genericFilter, @Nullable List<String> params) {
+            this.method = method;
+            this.event = event;
+            this.priority = priority;
+            this.receiveCanceled = receiveCanceled;
+            this.parallel = parallel;
+            this.genericFilter = genericFilter;
+            this.params = params;
+        }
+    }
+}
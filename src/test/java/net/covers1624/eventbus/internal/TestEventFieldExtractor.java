@@ -3,7 +3,6 @@ package net.covers1624.eventbus.internal;
 import net.covers1624.eventbus.CancelableEvent;
 import net.covers1624.eventbus.Event;
 import net.covers1624.eventbus.GenericEvent;
-import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
 
 import java.util.Map;
@@ -16,7 +15,6 @@ import static org.junit.jupiter.api.Assertions.*;
 public class TestEventFieldExtractor {
 
     @Test
-    @Disabled ("Cancellable events need some work.")
     public void testCancelableEvent() {
         Map<String, EventField> fields = EventFieldExtractor.getEventFields(CancelableEvent.class);
         assertEquals(1, fields.size());
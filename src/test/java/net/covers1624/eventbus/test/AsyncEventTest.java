@@ -0,0 +1,121 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class AsyncEventTest extends TestBase {
+
+    @Test
+    public void testFireAsync() throws Throwable {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "Async Event Thread"));
+        try {
+            EventBus bus = new EventBusImpl(withExecutor(executor));
+            List<String> calls = new ArrayList<>();
+            bus.registerListener(AsyncEvent.Listener.class, EventPriority.LOW, value -> calls.add("low:" + value + ":" + Thread.currentThread().getName()));
+            bus.registerListener(AsyncEvent.class, EventPriority.HIGH, e -> calls.add("high:" + e.getValue() + ":" + Thread.currentThread().getName()));
+            AsyncEvent.Factory factory = bus.constructFactory(AsyncEvent.Factory.class, AsyncEvent.class);
+
+            CompletableFuture<Void> future = factory.fire(1);
+            assertNull(future.get());
+            assertEquals(2, calls.size());
+            assertEquals("high:1:Async Event Thread", calls.get(0));
+            assertEquals("low:1:Async Event Thread", calls.get(1));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testReturnsEvent() throws Throwable {
+        List<Runnable> tasks = new ArrayList<>();
+        EventBus bus = new EventBusImpl(withExecutor(tasks::add));
+        bus.registerListener(AsyncReturningEvent.class, e -> e.setValue(e.getValue() + 1));
+        AsyncReturningEvent.Factory factory = bus.constructFactory(AsyncReturningEvent.Factory.class, AsyncReturningEvent.class);
+
+        CompletableFuture<AsyncReturningEvent> future = factory.fire(1);
+        assertFalse(future.isDone());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertEquals(2, future.get().getValue());
+    }
+
+    @Test
+    public void testExceptional() {
+        EventBus bus = new EventBusImpl(withExecutor(Runnable::run));
+        bus.registerListener(AsyncEvent.Listener.class, value -> {
+            throw new IllegalStateException("Listener failed.");
+        });
+        AsyncEvent.Factory factory = bus.constructFactory(AsyncEvent.Factory.class, AsyncEvent.class);
+
+        CompletableFuture<Void> future = factory.fire(1);
+        assertTrue(future.isCompletedExceptionally());
+        ExecutionException ex = assertThrows(ExecutionException.class, future::get);
+        assertTrue(ex.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testInvalidFutureType() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        assertThrows(IllegalArgumentException.class, () -> bus.constructFactory(InvalidAsyncEvent.Factory.class, InvalidAsyncEvent.class));
+    }
+
+    private static TestEnvironment withExecutor(Executor executor) {
+        return new TestEnvironment() {
+            @Override
+            public Executor getAsyncExecutor() {
+                return executor;
+            }
+        };
+    }
+
+    public interface AsyncEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract CompletableFuture<Void> fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+
+    public interface AsyncReturningEvent extends Event {
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract CompletableFuture<AsyncReturningEvent> fire(int value);
+        }
+    }
+
+    public interface InvalidAsyncEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract CompletableFuture<String> fire(int value);
+        }
+    }
+}
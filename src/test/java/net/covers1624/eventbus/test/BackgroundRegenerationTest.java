@@ -0,0 +1,165 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class BackgroundRegenerationTest extends TestBase {
+
+    @Test
+    public void testStaleUntilRegenerated() throws InterruptedException {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            AtomicInteger generated = new AtomicInteger();
+            EventBus bus = new EventBusImpl(withExecutor(executor, generated));
+            List<String> calls = new ArrayList<>();
+            bus.registerListener(ValueEvent.Listener.class, value -> calls.add("a"));
+            ValueEvent.Factory factory = bus.constructFactory(ValueEvent.Factory.class, ValueEvent.class);
+
+            // The first fire is always generated on the firing thread.
+            factory.fire(0);
+            assertEquals(1, calls.size());
+            assertEquals(1, generated.get());
+
+            // Hold the executor, so the regeneration can't run yet.
+            CountDownLatch latch = new CountDownLatch(1);
+            executor.execute(() -> {
+                try {
+                    latch.await();
+                } catch (InterruptedException ignored) {
+                }
+            });
+            for (int i = 0; i < 10; i++) {
+                bus.registerListener(ValueEvent.Listener.class, value -> calls.add("b"));
+            }
+
+            calls.clear();
+            factory.fire(0);
+            assertEquals(1, calls.size());
+            assertEquals("a", calls.get(0));
+
+            latch.countDown();
+            bus.awaitConsistent();
+            calls.clear();
+            factory.fire(0);
+            assertEquals(11, calls.size());
+            // All registrations are coalesced into a single regeneration.
+            assertEquals(2, generated.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnregister() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            EventBus bus = new EventBusImpl(withExecutor(executor, new AtomicInteger()));
+            AtomicInteger calls = new AtomicInteger();
+            ListenerRegistration registration = bus.registerListener(ValueEvent.Listener.class, value -> calls.incrementAndGet());
+            ValueEvent.Factory factory = bus.constructFactory(ValueEvent.Factory.class, ValueEvent.class);
+            factory.fire(0);
+            assertEquals(1, calls.get());
+
+            registration.unregister();
+            bus.awaitConsistent();
+            factory.fire(0);
+            assertEquals(1, calls.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRejectedByExecutor() {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        EventBus bus = new EventBusImpl(withExecutor(executor, new AtomicInteger()));
+        AtomicInteger calls = new AtomicInteger();
+        bus.registerListener(ValueEvent.Listener.class, value -> calls.incrementAndGet());
+        ValueEvent.Factory factory = bus.constructFactory(ValueEvent.Factory.class, ValueEvent.class);
+        factory.fire(0);
+        assertEquals(1, calls.get());
+
+        executor.shutdownNow();
+        bus.registerListener(ValueEvent.Listener.class, value -> calls.incrementAndGet());
+
+        // Rebuilt on the firing thread instead.
+        calls.set(0);
+        factory.fire(0);
+        assertEquals(2, calls.get());
+
+        // Nothing is left pending.
+        assertTimeoutPreemptively(Duration.ofSeconds(10), bus::awaitConsistent);
+        assertTimeoutPreemptively(Duration.ofSeconds(10), bus::freeze);
+        calls.set(0);
+        factory.fire(0);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testAwaitConsistentWithoutExecutor() {
+        AtomicInteger generated = new AtomicInteger();
+        EventBus bus = new EventBusImpl(withExecutor(null, generated));
+        AtomicInteger calls = new AtomicInteger();
+        ValueEvent.Factory factory = bus.constructFactory(ValueEvent.Factory.class, ValueEvent.class);
+        bus.registerListener(ValueEvent.Listener.class, value -> calls.incrementAndGet());
+
+        // Regenerated eagerly, instead of on the next fire.
+        bus.awaitConsistent();
+        assertEquals(1, generated.get());
+        factory.fire(0);
+        assertEquals(1, calls.get());
+        assertEquals(1, generated.get());
+    }
+
+    private static TestEnvironment withExecutor(ScheduledExecutorService executor, AtomicInteger generated) {
+        return new TestEnvironment() {
+            @Override
+            public Class<?> defineClass(String cName, byte[] bytes) {
+                if (cName.startsWith(ValueEvent.Factory.class.getName() + "$$Impl")) {
+                    generated.incrementAndGet();
+                }
+                return super.defineClass(cName, bytes);
+            }
+
+            @Override
+            public ScheduledExecutorService getRegenerationExecutor() {
+                return executor;
+            }
+
+            @Override
+            public long getRegenerationDelay() {
+                return 1;
+            }
+        };
+    }
+
+    public interface ValueEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+}
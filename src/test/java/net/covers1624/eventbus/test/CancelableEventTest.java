@@ -0,0 +1,239 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class CancelableEventTest extends TestBase {
+
+    private static final List<String> CALLS = new ArrayList<>();
+
+    @Test
+    public void testCancel() {
+        doTest(1);
+    }
+
+    @Test
+    public void testCancelChunked() {
+        doTest(100);
+    }
+
+    private void doTest(int count) {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            bus.registerListener(CancelEvent.Listener.class, EventPriority.HIGHEST, value -> calls.add("fast-before"));
+            bus.registerListener(CancelEvent.class, EventPriority.HIGH, e -> e.setCanceled(e.getValue() > 0));
+            bus.registerListener(CancelEvent.Listener.class, EventPriority.NORMAL, value -> calls.add("fast"));
+            bus.registerListener(CancelEvent.Listener.class, EventPriority.NORMAL, true, value -> calls.add("fast-receive"));
+            bus.registerListener(CancelEvent.class, EventPriority.LOW, e -> calls.add("cons"));
+            bus.registerListener(CancelEvent.class, EventPriority.LOW, true, e -> calls.add("cons-receive"));
+        }
+        CancelEvent.Factory factory = bus.constructFactory(CancelEvent.Factory.class, CancelEvent.class);
+
+        assertFalse(factory.fire(0).isCanceled());
+        assertEquals(count, count(calls, "fast-before"));
+        assertEquals(count, count(calls, "fast"));
+        assertEquals(count, count(calls, "fast-receive"));
+        assertEquals(count, count(calls, "cons"));
+        assertEquals(count, count(calls, "cons-receive"));
+
+        calls.clear();
+        assertTrue(factory.fire(1).isCanceled());
+        assertEquals(count, count(calls, "fast-before"));
+        assertEquals(0, count(calls, "fast"));
+        assertEquals(count, count(calls, "fast-receive"));
+        assertEquals(0, count(calls, "cons"));
+        assertEquals(count, count(calls, "cons-receive"));
+    }
+
+    @Test
+    public void testUncancel() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(CancelEvent.class, EventPriority.HIGH, e -> e.setCanceled(true));
+        bus.registerListener(CancelEvent.Listener.class, EventPriority.NORMAL, value -> calls.add("skipped"));
+        bus.registerListener(CancelEvent.class, EventPriority.NORMAL, true, e -> e.setCanceled(false));
+        bus.registerListener(CancelEvent.Listener.class, EventPriority.LOW, value -> calls.add("called"));
+        CancelEvent.Factory factory = bus.constructFactory(CancelEvent.Factory.class, CancelEvent.class);
+
+        assertFalse(factory.fire(0).isCanceled());
+        assertEquals(1, calls.size());
+        assertEquals("called", calls.get(0));
+    }
+
+    @Test
+    public void testSubscribeMethods() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        CALLS.clear();
+        bus.registerListener(CancelEvent.class, EventPriority.HIGHEST, e -> e.setCanceled(true));
+        bus.register(CancelableEventTest.class);
+        CancelEvent.Factory factory = bus.constructFactory(CancelEvent.Factory.class, CancelEvent.class);
+
+        factory.fire(0);
+        assertEquals(1, CALLS.size());
+        assertEquals("receive", CALLS.get(0));
+    }
+
+    @Test
+    public void testFactoryCanceled() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(PreCanceledEvent.Listener.class, value -> calls.add("fast"));
+        bus.registerListener(PreCanceledEvent.Listener.class, EventPriority.NORMAL, true, value -> calls.add("fast-receive"));
+        PreCanceledEvent.Factory factory = bus.constructFactory(PreCanceledEvent.Factory.class, PreCanceledEvent.class);
+
+        factory.fire(0, true);
+        assertEquals(1, calls.size());
+        assertEquals("fast-receive", calls.get(0));
+
+        calls.clear();
+        factory.fire(0, false);
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void testFastCancel() {
+        doTestFastCancel(1);
+    }
+
+    @Test
+    public void testFastCancelChunked() {
+        doTestFastCancel(100);
+    }
+
+    private void doTestFastCancel(int count) {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            bus.registerListener(FastCancelEvent.Listener.class, EventPriority.HIGH, value -> value > 0);
+            bus.registerListener(FastCancelEvent.Listener.class, EventPriority.NORMAL, value -> {
+                calls.add("fast");
+                return false;
+            });
+            bus.registerListener(FastCancelEvent.Listener.class, EventPriority.LOW, true, value -> {
+                calls.add("fast-receive");
+                return false;
+            });
+        }
+        FastCancelEvent.Factory factory = bus.constructFactory(FastCancelEvent.Factory.class, FastCancelEvent.class);
+
+        assertFalse(factory.fire(0));
+        assertEquals(count, count(calls, "fast"));
+        assertEquals(count, count(calls, "fast-receive"));
+
+        calls.clear();
+        assertTrue(factory.fire(1));
+        assertEquals(0, count(calls, "fast"));
+        assertEquals(count, count(calls, "fast-receive"));
+    }
+
+    @Test
+    public void testFastCancelAfterConsumer() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(CancelEvent.class, EventPriority.HIGH, e -> calls.add("cons"));
+        bus.registerListener(CancelEvent.CancelingListener.class, EventPriority.NORMAL, value -> value > 0);
+        bus.registerListener(CancelEvent.Listener.class, EventPriority.LOW, value -> calls.add("fast"));
+        CancelEvent.Factory factory = bus.constructFactory(CancelEvent.Factory.class, CancelEvent.class);
+
+        assertFalse(factory.fire(0).isCanceled());
+        assertEquals(2, calls.size());
+
+        calls.clear();
+        assertTrue(factory.fire(1).isCanceled());
+        assertEquals(1, calls.size());
+        assertEquals("cons", calls.get(0));
+    }
+
+    @Test
+    public void testBooleanListenerNotCancelable() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        assertThrows(IllegalArgumentException.class, () -> bus.registerListener(NotCancelableEvent.Listener.class, value -> true));
+    }
+
+    @SubscribeEvent
+    public static void onEvent(CancelEvent event) {
+        CALLS.add("skipped");
+    }
+
+    @SubscribeEvent (receiveCanceled = true)
+    public static void onEventReceive(CancelEvent event) {
+        CALLS.add("receive");
+    }
+
+    private static int count(List<String> calls, String call) {
+        return (int) calls.stream().filter(call::equals).count();
+    }
+
+    public interface CancelEvent extends CancelableEvent {
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract CancelEvent fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+
+        interface CancelingListener extends EventListener {
+
+            boolean fire(int value);
+        }
+    }
+
+    public interface PreCanceledEvent extends CancelableEvent {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value, boolean canceled);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+
+    @FastInvokeOnly
+    public interface FastCancelEvent extends CancelableEvent {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract boolean fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            boolean fire(int value);
+        }
+    }
+
+    public interface NotCancelableEvent extends Event {
+
+        int getValue();
+
+        interface Listener extends EventListener {
+
+            boolean fire(int value);
+        }
+    }
+}
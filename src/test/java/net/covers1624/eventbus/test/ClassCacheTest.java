@@ -0,0 +1,199 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class ClassCacheTest extends TestBase {
+
+    private static final List<String> CALLS = new ArrayList<>();
+
+    @Test
+    public void testReuse(@TempDir Path dir) throws Throwable {
+        // Populates the cache. The decorator generated at compile time is used, and never cached.
+        fire(dir);
+        assertEquals(3, fire(dir));
+        List<Path> entries = entries(dir);
+        assertFalse(entries.isEmpty());
+        for (Path entry : entries) {
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(0));
+        }
+
+        // A second bus loads the same classes, under different names, without rewriting them.
+        assertEquals(3, fire(dir));
+        assertEquals(entries, entries(dir));
+        for (Path entry : entries) {
+            assertEquals(0, Files.getLastModifiedTime(entry).toMillis());
+        }
+    }
+
+    @Test
+    public void testInvalidated(@TempDir Path dir) throws Throwable {
+        fire(dir);
+        fire(dir);
+        int numEntries = entries(dir).size();
+
+        EventBus bus = new EventBusImpl(withCache(dir));
+        bus.registerListener(CachedEvent.Listener.class, EventPriority.HIGH, value -> CALLS.add("high"));
+        CachedEvent.Factory factory = bus.constructFactory(CachedEvent.Factory.class, CachedEvent.class);
+        CALLS.clear();
+        factory.fire(1);
+        assertEquals(1, CALLS.size());
+        // A new dispatcher entry, the decorator is reused.
+        assertEquals(numEntries + 1, entries(dir).size());
+    }
+
+    @Test
+    public void testCorruptEntry(@TempDir Path dir) throws Throwable {
+        fire(dir);
+        for (Path entry : entries(dir)) {
+            Files.write(entry, new byte[] { 1, 2, 3 });
+        }
+
+        assertEquals(3, fire(dir));
+    }
+
+    @Test
+    public void testAsync(@TempDir Path dir) throws Throwable {
+        for (int i = 0; i < 2; i++) {
+            EventBus bus = new EventBusImpl(withCache(dir));
+            AtomicInteger calls = new AtomicInteger();
+            bus.registerListener(AsyncCachedEvent.class, e -> calls.addAndGet(e.getValue()));
+            AsyncCachedEvent.Factory factory = bus.constructFactory(AsyncCachedEvent.Factory.class, AsyncCachedEvent.class);
+            assertEquals(2, factory.fire(2).get().getValue());
+            assertEquals(2, calls.get());
+        }
+    }
+
+    @Test
+    public void testForeignFilesKept(@TempDir Path dir) throws Throwable {
+        Path unrelated = Files.createDirectories(dir.resolve("unrelated"));
+        Files.write(unrelated.resolve("file"), new byte[] { 1 });
+        // Looks like a cache directory, but was not created by one.
+        Path foreign = Files.createDirectories(dir.resolve("eventbus-classes/foreign"));
+        Files.write(foreign.resolve("file"), new byte[] { 1 });
+
+        assertEquals(3, fire(dir));
+        assertTrue(Files.exists(unrelated.resolve("file")));
+        assertTrue(Files.exists(foreign.resolve("file")));
+    }
+
+    @Test
+    public void testOtherVersions(@TempDir Path dir) throws Throwable {
+        String entry = String.join("", Collections.nCopies(8, "0123abcd"));
+        Path expired = Files.createDirectories(dir.resolve("eventbus-classes/expired"));
+        Files.write(expired.resolve(entry), new byte[] { 1 });
+        Files.createFile(expired.resolve(".last-used"));
+        Files.setLastModifiedTime(expired.resolve(".last-used"), FileTime.fromMillis(0));
+        // Another process, on a different version, sharing the cache.
+        Path recent = Files.createDirectories(dir.resolve("eventbus-classes/recent"));
+        Files.write(recent.resolve(entry), new byte[] { 1 });
+        Files.createFile(recent.resolve(".last-used"));
+
+        assertEquals(3, fire(dir));
+        assertFalse(Files.exists(expired));
+        assertTrue(Files.exists(recent.resolve(entry)));
+    }
+
+    @Test
+    public void testStaleTempFiles(@TempDir Path dir) throws Throwable {
+        fire(dir);
+        Path versionDir = entries(dir).get(0).getParent();
+        Path stale = Files.createFile(versionDir.resolve("stale.tmp"));
+        Files.setLastModifiedTime(stale, FileTime.fromMillis(0));
+        // May still be being written by another process.
+        Path fresh = Files.createFile(versionDir.resolve("fresh.tmp"));
+
+        assertEquals(3, fire(dir));
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(fresh));
+    }
+
+    private static int fire(Path dir) {
+        EventBus bus = new EventBusImpl(withCache(dir));
+        bus.register(ClassCacheTest.class);
+        bus.registerListener(CachedEvent.Listener.class, value -> CALLS.add("lambda:" + value));
+        bus.registerListener(CachedEvent.class, EventPriority.LOW, e -> CALLS.add("consumer:" + e.getValue()));
+        CachedEvent.Factory factory = bus.constructFactory(CachedEvent.Factory.class, CachedEvent.class);
+
+        CALLS.clear();
+        factory.fire(1);
+        assertEquals("method:1", CALLS.get(0));
+        assertEquals("lambda:1", CALLS.get(1));
+        assertEquals("consumer:1", CALLS.get(2));
+        return CALLS.size();
+    }
+
+    private static List<Path> entries(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(e -> !e.getFileName().toString().equals(".last-used"))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static TestEnvironment withCache(Path dir) {
+        return new TestEnvironment() {
+            @Override
+            public Executor getAsyncExecutor() {
+                // Generated classes resolve through the context class loader, which the common pool does not share.
+                return Runnable::run;
+            }
+
+            @Override
+            public Path getClassCacheDir() {
+                return dir;
+            }
+        };
+    }
+
+    @SubscribeEvent (value = CachedEvent.class, priority = EventPriority.HIGH)
+    public static void onCached(int value) {
+        CALLS.add("method:" + value);
+    }
+
+    public interface CachedEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+
+    public interface AsyncCachedEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract CompletableFuture<AsyncCachedEvent> fire(int value);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.CompiledClasses;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class CompiledClassesTest extends TestBase {
+
+    @Test
+    public void testEventClass() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<CompiledEvent> events = new ArrayList<>();
+        bus.registerListener(CompiledEvent.class, events::add);
+        bus.constructFactory(CompiledEvent.Factory.class, CompiledEvent.class).fire(1, "a");
+
+        assertEquals(1, events.size());
+        CompiledEvent event = events.get(0);
+        assertEquals(CompiledEvent.class.getName() + CompiledClasses.EVENT_SUFFIX, event.getClass().getName());
+        assertEquals(1, event.getValue());
+        assertEquals("a", event.getName());
+        event.setName("b");
+        assertEquals("b", event.getName());
+    }
+
+    @Test
+    public void testReusableEventClass() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> classes = new ArrayList<>();
+        bus.registerListener(ReusedEvent.class, e -> classes.add(e.getClass().getName() + ":" + e.getValue()));
+        ReusedEvent.Factory factory = bus.constructFactory(ReusedEvent.Factory.class, ReusedEvent.class);
+        factory.fire(1);
+        factory.fire(2);
+
+        String cName = ReusedEvent.class.getName() + CompiledClasses.REUSABLE_EVENT_SUFFIX;
+        assertEquals(2, classes.size());
+        assertEquals(cName + ":1", classes.get(0));
+        assertEquals(cName + ":2", classes.get(1));
+    }
+
+    @Test
+    public void testDecorator() {
+        EventBus first = new EventBusImpl(WITH_RESOURCES);
+        EventBus second = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        first.registerListener(DecoratedEvent.Listener.class, value -> calls.add("first:" + value));
+        second.registerListener(DecoratedEvent.Listener.class, value -> calls.add("second:" + value));
+
+        // The compiled decorator is shared by every factory, each with its own invoker.
+        DecoratedEvent.Factory firstFactory = first.constructFactory(DecoratedEvent.Factory.class, DecoratedEvent.class);
+        DecoratedEvent.Factory secondFactory = second.constructFactory(DecoratedEvent.Factory.class, DecoratedEvent.class);
+        assertEquals(DecoratedEvent.Factory.class.getName() + CompiledClasses.DECORATOR_SUFFIX, firstFactory.getClass().getName());
+        assertEquals(firstFactory.getClass(), secondFactory.getClass());
+
+        assertEquals(1, firstFactory.fire(1).getValue());
+        assertEquals(2, secondFactory.fire(2).getValue());
+        first.freeze();
+        assertEquals(3, firstFactory.fire(3).getValue());
+        assertEquals(4, secondFactory.fire(4).getValue());
+
+        assertEquals(4, calls.size());
+        assertEquals("first:1", calls.get(0));
+        assertEquals("second:2", calls.get(1));
+        assertEquals("first:3", calls.get(2));
+        assertEquals("second:4", calls.get(3));
+    }
+
+    public interface CompiledEvent extends Event {
+
+        int getValue();
+
+        String getName();
+
+        void setName(String name);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value, String name);
+        }
+    }
+
+    @ReuseEventInstance
+    public interface ReusedEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+    }
+
+    public interface DecoratedEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract DecoratedEvent fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+}
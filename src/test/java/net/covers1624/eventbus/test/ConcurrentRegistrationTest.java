@@ -0,0 +1,172 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class ConcurrentRegistrationTest extends TestBase {
+
+    @Test
+    public void testRegisterDuringFire() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(CountEvent.Listener.class, EventPriority.HIGH, value -> {
+            calls.add("high:" + value);
+            if (value == 0) {
+                bus.registerListener(CountEvent.Listener.class, EventPriority.LOW, v -> calls.add("added:" + v));
+            }
+        });
+        CountEvent.Factory factory = bus.constructFactory(CountEvent.Factory.class, CountEvent.class);
+
+        // The fire in progress keeps its snapshot.
+        factory.fire(0);
+        assertEquals(1, calls.size());
+
+        calls.clear();
+        factory.fire(1);
+        assertEquals(2, calls.size());
+        assertEquals("high:1", calls.get(0));
+        assertEquals("added:1", calls.get(1));
+    }
+
+    @Test
+    public void testBatch() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        AtomicInteger calls = new AtomicInteger();
+        CountEvent.Factory factory = bus.constructFactory(CountEvent.Factory.class, CountEvent.class);
+        factory.fire(0);
+
+        ListenerRegistration registration = bus.registerBatch(b -> {
+            for (int i = 0; i < 100; i++) {
+                b.registerListener(CountEvent.Listener.class, value -> calls.incrementAndGet());
+            }
+            // Nothing is applied until the batch completes.
+            factory.fire(0);
+            assertEquals(0, calls.get());
+        });
+        factory.fire(0);
+        assertEquals(100, calls.get());
+
+        registration.unregister();
+        factory.fire(0);
+        assertEquals(100, calls.get());
+    }
+
+    @Test
+    public void testNestedBatch() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        AtomicInteger calls = new AtomicInteger();
+        CountEvent.Factory factory = bus.constructFactory(CountEvent.Factory.class, CountEvent.class);
+
+        ListenerRegistration registration = bus.registerBatch(b -> {
+            b.registerListener(CountEvent.Listener.class, value -> calls.incrementAndGet());
+            b.registerBatch(b2 -> b2.registerListener(CountEvent.Listener.class, value -> calls.incrementAndGet()));
+            factory.fire(0);
+            assertEquals(0, calls.get());
+        });
+        factory.fire(0);
+        assertEquals(2, calls.get());
+
+        // The outer registration includes the nested batch.
+        registration.unregister();
+        factory.fire(0);
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testBatchDiscardedOnThrow() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        AtomicInteger calls = new AtomicInteger();
+        ListenerRegistration existing = bus.registerListener(CountEvent.Listener.class, value -> calls.incrementAndGet());
+        CountEvent.Factory factory = bus.constructFactory(CountEvent.Factory.class, CountEvent.class);
+
+        assertThrows(IllegalStateException.class, () -> bus.registerBatch(b -> {
+            b.registerListener(CountEvent.Listener.class, value -> calls.incrementAndGet());
+            existing.unregister();
+            throw new IllegalStateException();
+        }));
+        // The registration is discarded, the removal is not.
+        factory.fire(0);
+        assertEquals(0, calls.get());
+    }
+
+    @Test
+    public void testConcurrentRegistration() throws Throwable {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        AtomicInteger calls = new AtomicInteger();
+        CountEvent.Factory factory = bus.constructFactory(CountEvent.Factory.class, CountEvent.class);
+
+        int threads = 4;
+        int perThread = 50;
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread firing = new Thread(() -> {
+            while (!done.get()) {
+                try {
+                    factory.fire(0);
+                } catch (Throwable ex) {
+                    failure.set(ex);
+                    return;
+                }
+            }
+        });
+        firing.start();
+
+        List<Thread> registering = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    assertTrue(start.await(10, TimeUnit.SECONDS));
+                    for (int j = 0; j < perThread; j++) {
+                        bus.registerListener(CountEvent.Listener.class, EventPriority.values()[j % EventPriority.values().length], value -> {
+                            if (value == 1) calls.incrementAndGet();
+                        });
+                    }
+                } catch (Throwable ex) {
+                    failure.set(ex);
+                }
+            });
+            thread.start();
+            registering.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : registering) {
+            thread.join();
+        }
+        done.set(true);
+        firing.join();
+        if (failure.get() != null) throw failure.get();
+
+        factory.fire(1);
+        assertEquals(threads * perThread, calls.get());
+    }
+
+    public interface CountEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+}
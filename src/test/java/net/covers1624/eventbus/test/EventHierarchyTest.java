@@ -0,0 +1,207 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class EventHierarchyTest extends TestBase {
+
+    private static final List<String> CALLS = new ArrayList<>();
+
+    @Test
+    public void testParentListeners() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(ChildEvent.class, EventPriority.HIGH, e -> calls.add("child-high:" + e.getName() + ":" + e.getValue()));
+        bus.registerListener(ParentEvent.class, EventPriority.HIGH, e -> calls.add("parent-high:" + e.getName()));
+        bus.registerListener(ParentEvent.Listener.class, EventPriority.LOW, name -> calls.add("parent-low:" + name));
+        bus.registerListener(ChildEvent.Listener.class, EventPriority.NORMAL, (name, value) -> calls.add("child-normal:" + value));
+        ChildEvent.Factory factory = bus.constructFactory(ChildEvent.Factory.class, ChildEvent.class);
+        ParentEvent.Factory parentFactory = bus.constructFactory(ParentEvent.Factory.class, ParentEvent.class);
+
+        factory.fire("a", 1);
+        assertEquals(4, calls.size());
+        assertEquals("parent-high:a", calls.get(0));
+        assertEquals("child-high:a:1", calls.get(1));
+        assertEquals("child-normal:1", calls.get(2));
+        assertEquals("parent-low:a", calls.get(3));
+
+        // Child listeners are not called for the parent.
+        calls.clear();
+        parentFactory.fire("b");
+        assertEquals(2, calls.size());
+        assertEquals("parent-high:b", calls.get(0));
+        assertEquals("parent-low:b", calls.get(1));
+    }
+
+    @Test
+    public void testRegisterParentAfterFire() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        ChildEvent.Factory factory = bus.constructFactory(ChildEvent.Factory.class, ChildEvent.class);
+        factory.fire("a", 1);
+
+        ListenerRegistration registration = bus.registerListener(ParentEvent.Listener.class, calls::add);
+        factory.fire("b", 2);
+        assertEquals(1, calls.size());
+        assertEquals("b", calls.get(0));
+
+        registration.unregister();
+        factory.fire("c", 3);
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    public void testGrandParent() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(GrandChildEvent.class, e -> calls.add("grandchild"));
+        GrandChildEvent.Factory factory = bus.constructFactory(GrandChildEvent.Factory.class, GrandChildEvent.class);
+        factory.fire("a", 1);
+        assertEquals(1, calls.size());
+
+        // Registered after the grandchild's list already exists.
+        bus.registerListener(ParentEvent.class, e -> calls.add("parent"));
+        bus.registerListener(ChildEvent.class, e -> calls.add("child"));
+        calls.clear();
+        factory.fire("a", 1);
+        assertEquals(3, calls.size());
+        assertEquals("parent", calls.get(0));
+        assertEquals("child", calls.get(1));
+        assertEquals("grandchild", calls.get(2));
+    }
+
+    @Test
+    public void testCancelableParent() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(CancelParentEvent.class, EventPriority.HIGHEST, e -> e.setCanceled(true));
+        bus.registerListener(CancelChildEvent.class, e -> calls.add("skipped"));
+        bus.registerListener(CancelChildEvent.class, EventPriority.NORMAL, true, e -> calls.add("receive"));
+        CancelChildEvent.Factory factory = bus.constructFactory(CancelChildEvent.Factory.class, CancelChildEvent.class);
+
+        assertTrue(factory.fire().isCanceled());
+        assertEquals(1, calls.size());
+        assertEquals("receive", calls.get(0));
+    }
+
+    @Test
+    public void testBaseEvents() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        assertThrows(IllegalArgumentException.class, () -> bus.registerListener(Event.class, e -> { }));
+        assertThrows(IllegalArgumentException.class, () -> bus.registerListener(CancelableEvent.class, e -> { }));
+
+        // Not parents of their implementors.
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(CancelChildEvent.class, e -> calls.add("child"));
+        bus.constructFactory(CancelChildEvent.Factory.class, CancelChildEvent.class).fire();
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    public void testSubscribeMethods() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        CALLS.clear();
+        bus.register(EventHierarchyTest.class);
+        ChildEvent.Factory factory = bus.constructFactory(ChildEvent.Factory.class, ChildEvent.class);
+
+        factory.fire("a", 1);
+        assertEquals(2, CALLS.size());
+        assertEquals("parent:a", CALLS.get(0));
+        assertEquals("child:1", CALLS.get(1));
+    }
+
+    @Test
+    public void testFastInvokeOnlyChild() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(ParentEvent.class, e -> calls.add("consumer"));
+        bus.registerListener(ParentEvent.Listener.class, calls::add);
+        FastChildEvent.Factory factory = bus.constructFactory(FastChildEvent.Factory.class, FastChildEvent.class);
+
+        factory.fire("a");
+        assertEquals(1, calls.size());
+        assertEquals("a", calls.get(0));
+    }
+
+    @SubscribeEvent
+    public static void onParent(ParentEvent event) {
+        CALLS.add("parent:" + event.getName());
+    }
+
+    @SubscribeEvent (ChildEvent.class)
+    public static void onChild(int value) {
+        CALLS.add("child:" + value);
+    }
+
+    public interface ParentEvent extends Event {
+
+        String getName();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(String name);
+        }
+    }
+
+    public interface ChildEvent extends ParentEvent {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(String name, int value);
+        }
+    }
+
+    public interface GrandChildEvent extends ChildEvent {
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name, int value);
+        }
+    }
+
+    public interface CancelParentEvent extends CancelableEvent {
+
+        abstract class Factory extends EventFactory {
+
+            public abstract CancelParentEvent fire();
+        }
+    }
+
+    public interface CancelChildEvent extends CancelParentEvent {
+
+        abstract class Factory extends EventFactory {
+
+            public abstract CancelChildEvent fire();
+        }
+    }
+
+    @FastInvokeOnly
+    public interface FastChildEvent extends ParentEvent {
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class FreezeTest extends TestBase {
+
+    @Test
+    public void doTest() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        AtomicInteger fast = new AtomicInteger();
+        AtomicInteger cons = new AtomicInteger();
+        ListenerRegistration reg = bus.registerListener(SimpleEvent.Listener.class, value -> fast.addAndGet(value));
+        bus.registerListener(SimpleEvent.class, e -> cons.addAndGet(e.getValue()));
+        SimpleEvent.Factory factory = bus.constructFactory(SimpleEvent.Factory.class, SimpleEvent.class);
+
+        bus.freeze();
+        factory.fire(2);
+        factory.fire(3);
+        assertEquals(5, fast.get());
+        assertEquals(5, cons.get());
+
+        assertThrows(IllegalStateException.class, () -> bus.registerListener(SimpleEvent.Listener.class, value -> { }));
+        assertThrows(IllegalStateException.class, () -> bus.registerListener(SimpleEvent.class, e -> { }));
+        assertThrows(IllegalStateException.class, () -> bus.register(FreezeTest.class));
+        assertThrows(IllegalStateException.class, reg::unregister);
+
+        // Events first seen after the bus is frozen still work.
+        OtherEvent.Factory otherFactory = bus.constructFactory(OtherEvent.Factory.class, OtherEvent.class);
+        otherFactory.fire();
+    }
+
+    public interface SimpleEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+
+    public interface OtherEvent extends Event {
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire();
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package net.covers1624.eventbus.test;
+
+import com.google.common.reflect.TypeToken;
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class GenericEventTest extends TestBase {
+
+    private static final Type LIST_OF_STRING = new TypeToken<List<String>>() { }.getType();
+
+    private static final List<String> CALLS = new ArrayList<>();
+
+    @Test
+    public void testFiltering() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(GenEvent.class, EventPriority.HIGH, e -> calls.add("all:" + e.getObject()));
+        bus.registerGenericListener(GenEvent.class, String.class, EventPriority.NORMAL, e -> calls.add("string:" + e.getObject()));
+        bus.registerGenericListener(GenEvent.Listener.class, Integer.class, EventPriority.NORMAL, object -> calls.add("integer:" + object));
+        bus.registerGenericListener(GenEvent.class, LIST_OF_STRING, EventPriority.NORMAL, e -> calls.add("list:" + e.getObject()));
+        GenEvent.Factory factory = bus.constructFactory(GenEvent.Factory.class, GenEvent.class);
+
+        factory.fire(String.class, "a");
+        factory.fire(Integer.class, 1);
+        factory.fire(Long.class, 2L);
+        // Equal, but not identical.
+        factory.fire(new TypeToken<List<String>>() { }.getType(), "b");
+
+        assertEquals(7, calls.size());
+        assertEquals("all:a", calls.get(0));
+        assertEquals("string:a", calls.get(1));
+        assertEquals("all:1", calls.get(2));
+        assertEquals("integer:1", calls.get(3));
+        assertEquals("all:2", calls.get(4));
+        assertEquals("all:b", calls.get(5));
+        assertEquals("list:b", calls.get(6));
+    }
+
+    @Test
+    public void testSubscribeMethods() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        CALLS.clear();
+        bus.register(GenericEventTest.class);
+        GenEvent.Factory factory = bus.constructFactory(GenEvent.Factory.class, GenEvent.class);
+
+        factory.fire(String.class, "a");
+        factory.fire(Integer.class, 1);
+        assertEquals(3, CALLS.size());
+        assertEquals("string:a", CALLS.get(0));
+        assertEquals("wildcard:a", CALLS.get(1));
+        assertEquals("wildcard:1", CALLS.get(2));
+    }
+
+    @Test
+    public void testNotGeneric() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        assertThrows(IllegalArgumentException.class, () -> bus.registerGenericListener(NotGenericEvent.class, String.class, EventPriority.NORMAL, e -> { }));
+    }
+
+    @SubscribeEvent (priority = EventPriority.HIGH)
+    public static void onString(GenEvent<String> event) {
+        CALLS.add("string:" + event.getObject());
+    }
+
+    @SubscribeEvent
+    public static void onAny(GenEvent<?> event) {
+        CALLS.add("wildcard:" + event.getObject());
+    }
+
+    public interface GenEvent<T> extends GenericEvent<T> {
+
+        T getObject();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(Type genericType, Object object);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(Object object);
+        }
+    }
+
+    public interface NotGenericEvent extends Event {
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire();
+        }
+    }
+}
@@ -26,6 +26,38 @@ public class LargeNumberOfEventSubscribersTest extends TestBase {
         assertEquals(1000, i.get());
     }
 
+    @Test
+    public void doTestHuge() {
+        AtomicInteger fast = new AtomicInteger();
+        AtomicInteger cons = new AtomicInteger();
+        for (int j = 0; j < 100000; j++) {
+            if (j % 2 == 0) {
+                BUS.registerListener(HugeEvent.Listener.class, value -> fast.addAndGet(value));
+            } else {
+                BUS.registerListener(HugeEvent.class, e -> {
+                    cons.addAndGet(e.getValue());
+                    e.setValue(e.getValue() + 1);
+                });
+            }
+        }
+        HugeEvent.FACTORY.fire(1);
+        // Each fast invoke listener must observe the value set by the previous consumer.
+        assertEquals(1250025000, fast.get());
+        assertEquals(1250025000, cons.get());
+    }
+
+    @Test
+    public void doTestMaxInstanceFields() {
+        // The most instances stored in static fields, all assigned by the dispatcher's static initializer.
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        AtomicInteger sum = new AtomicInteger();
+        for (int j = 0; j < 4096; j++) {
+            bus.registerListener(HugeEvent.Listener.class, value -> sum.addAndGet(value));
+        }
+        bus.constructFactory(HugeEvent.Factory.class, HugeEvent.class).fire(2);
+        assertEquals(8192, sum.get());
+    }
+
     //    public static void main(String[] args) {
     //        for (int i = 0; i < 1000; i++) {
     //            System.out.println("BUS.registerListener(SimpleEvent.Listener.class, (s, s2, s3, s4, s5) -> assertEquals(" + i + ", i.getAndIncrement()));");
@@ -1059,4 +1091,23 @@ public class LargeNumberOfEventSubscribersTest extends TestBase {
             void fire(String string1, String string2, String string3, String string4, String string5);
         }
     }
+
+    public interface HugeEvent extends Event {
+
+        Factory FACTORY = BUS.constructFactory(Factory.class, HugeEvent.class);
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
 }
@@ -0,0 +1,74 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class LazyMaterializationTest extends TestBase {
+
+    @Test
+    public void testMixed() {
+        doTest(1);
+    }
+
+    @Test
+    public void testMixedChunked() {
+        doTest(200);
+    }
+
+    private void doTest(int count) {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<Integer> before = new ArrayList<>();
+        List<Integer> after = new ArrayList<>();
+        List<String> afterNames = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            bus.registerListener(MixedEvent.Listener.class, EventPriority.HIGH, (name, value) -> before.add(value));
+            bus.registerListener(MixedEvent.class, EventPriority.NORMAL, e -> e.setValue(e.getValue() + 1));
+            bus.registerListener(MixedEvent.Listener.class, EventPriority.LOW, (name, value) -> after.add(value));
+            bus.registerListener(MixedEvent.NameListener.class, EventPriority.LOW, afterNames::add);
+        }
+        MixedEvent.Factory factory = bus.constructFactory(MixedEvent.Factory.class, MixedEvent.class);
+
+        factory.fire("name", 0);
+        assertEquals(count, before.size());
+        assertEquals(count, after.size());
+        assertEquals(count, afterNames.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(0, before.get(i));
+            assertEquals(count, after.get(i));
+            assertEquals("name", afterNames.get(i));
+        }
+    }
+
+    public interface MixedEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(String name, int value);
+        }
+
+        interface NameListener extends EventListener {
+
+            void fire(String name);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.ResultEvent.Result;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class MethodHandleDispatchTest extends TestBase {
+
+    private static final List<String> CALLS = new ArrayList<>();
+
+    @Test
+    public void testFastInvoke() {
+        EventBus bus = new EventBusImpl(withExecutor(Runnable::run, new ArrayList<>()));
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(PlainEvent.Listener.class, EventPriority.LOW, (name, value) -> calls.add("low:" + name + value));
+        bus.registerListener(PlainEvent.Listener.class, EventPriority.HIGH, (name, value) -> calls.add("high:" + name + value));
+        PlainEvent.Factory factory = bus.constructFactory(PlainEvent.Factory.class, PlainEvent.class);
+
+        factory.fire("a", 1);
+        assertEquals(2, calls.size());
+        assertEquals("high:a1", calls.get(0));
+        assertEquals("low:a1", calls.get(1));
+    }
+
+    @Test
+    public void testConsumers() {
+        EventBus bus = new EventBusImpl(withExecutor(Runnable::run, new ArrayList<>()));
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(ValueEvent.class, EventPriority.HIGH, e -> e.setValue(e.getValue() * 10));
+        bus.registerListener(ValueEvent.Listener.class, EventPriority.NORMAL, value -> calls.add("fast:" + value));
+        bus.registerListener(ValueEvent.class, EventPriority.LOW, e -> calls.add("cons:" + e.getValue()));
+        ValueEvent.Factory factory = bus.constructFactory(ValueEvent.Factory.class, ValueEvent.class);
+
+        ValueEvent event = factory.fire(2);
+        assertEquals(20, event.getValue());
+        assertFalse(event.isCanceled());
+        assertEquals(2, calls.size());
+        assertEquals("fast:20", calls.get(0));
+        assertEquals("cons:20", calls.get(1));
+    }
+
+    @Test
+    public void testCancel() {
+        EventBus bus = new EventBusImpl(withExecutor(Runnable::run, new ArrayList<>()));
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(ValueEvent.CancelingListener.class, EventPriority.HIGHEST, value -> value > 1);
+        bus.registerListener(ValueEvent.class, EventPriority.HIGH, e -> e.setCanceled(e.getValue() > 0));
+        bus.registerListener(ValueEvent.Listener.class, EventPriority.NORMAL, value -> calls.add("fast"));
+        bus.registerListener(ValueEvent.Listener.class, EventPriority.NORMAL, true, value -> calls.add("fast-receive"));
+        bus.registerListener(ValueEvent.class, EventPriority.LOW, true, e -> {
+            calls.add("uncancel");
+            e.setCanceled(false);
+        });
+        bus.registerListener(ValueEvent.class, EventPriority.LOWEST, e -> calls.add("cons"));
+        ValueEvent.Factory factory = bus.constructFactory(ValueEvent.Factory.class, ValueEvent.class);
+
+        assertFalse(factory.fire(0).isCanceled());
+        assertEquals(4, calls.size());
+
+        // Canceled by the consumer, skipping the first fast listener.
+        calls.clear();
+        assertFalse(factory.fire(1).isCanceled());
+        assertEquals(3, calls.size());
+        assertEquals("fast-receive", calls.get(0));
+        assertEquals("uncancel", calls.get(1));
+        assertEquals("cons", calls.get(2));
+
+        // Canceled by the fast listener, skipping the canceling consumer too.
+        calls.clear();
+        assertFalse(factory.fire(2).isCanceled());
+        assertEquals(3, calls.size());
+    }
+
+    @Test
+    public void testResult() {
+        EventBus bus = new EventBusImpl(withExecutor(Runnable::run, new ArrayList<>()));
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(DecisionEvent.Listener.class, EventPriority.HIGH, value -> value == 1 ? Result.DENY : null);
+        bus.registerListener(DecisionEvent.Listener.class, EventPriority.NORMAL, value -> {
+            calls.add("fast");
+            return Result.DEFAULT;
+        });
+        bus.registerListener(DecisionEvent.class, EventPriority.LOW, e -> {
+            calls.add("cons");
+            if (e.getValue() == 2) {
+                e.setResult(Result.ALLOW);
+            }
+        });
+        DecisionEvent.Factory factory = bus.constructFactory(DecisionEvent.Factory.class, DecisionEvent.class);
+
+        assertEquals(Result.DEFAULT, factory.fire(0));
+        assertEquals(2, calls.size());
+
+        // Deny short circuits the remaining listeners.
+        calls.clear();
+        assertEquals(Result.DENY, factory.fire(1));
+        assertEquals(0, calls.size());
+
+        calls.clear();
+        assertEquals(Result.ALLOW, factory.fire(2));
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void testReused() {
+        EventBus bus = new EventBusImpl(withExecutor(Runnable::run, new ArrayList<>()));
+        bus.registerListener(ReusedEvent.class, e -> e.setValue(e.getValue() * 10));
+        ReusedEvent.Factory factory = bus.constructFactory(ReusedEvent.Factory.class, ReusedEvent.class);
+
+        ReusedEvent first = factory.fire(1);
+        assertEquals(10, first.getValue());
+        ReusedEvent second = factory.fire(2);
+        assertSame(first, second);
+        assertEquals(20, second.getValue());
+    }
+
+    @Test
+    public void testAsync() throws Throwable {
+        List<Runnable> tasks = new ArrayList<>();
+        EventBus bus = new EventBusImpl(withExecutor(tasks::add, new ArrayList<>()));
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(AsyncEvent.Listener.class, value -> calls.add("fast:" + value));
+        AsyncEvent.Factory factory = bus.constructFactory(AsyncEvent.Factory.class, AsyncEvent.class);
+
+        CompletableFuture<Void> future = factory.fire(1);
+        assertFalse(future.isDone());
+        assertEquals(0, calls.size());
+        assertEquals(1, tasks.size());
+        tasks.get(0).run();
+        assertNull(future.get());
+        assertEquals(1, calls.size());
+    }
+
+    @Test
+    public void testGeneric() {
+        EventBus bus = new EventBusImpl(withExecutor(Runnable::run, new ArrayList<>()));
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(GenEvent.class, EventPriority.HIGH, e -> calls.add("all:" + e.getObject()));
+        bus.registerGenericListener(GenEvent.class, String.class, EventPriority.NORMAL, e -> calls.add("string:" + e.getObject()));
+        GenEvent.Factory factory = bus.constructFactory(GenEvent.Factory.class, GenEvent.class);
+
+        factory.fire(String.class, "a");
+        factory.fire(Integer.class, 1);
+        assertEquals(3, calls.size());
+        assertEquals("all:a", calls.get(0));
+        assertEquals("string:a", calls.get(1));
+        assertEquals("all:1", calls.get(2));
+    }
+
+    @Test
+    public void testListenerChangesDefineNoClasses() {
+        List<String> defined = new ArrayList<>();
+        EventBus bus = new EventBusImpl(withExecutor(Runnable::run, defined));
+        CALLS.clear();
+        bus.register(MethodHandleDispatchTest.class);
+        PlainEvent.Factory factory = bus.constructFactory(PlainEvent.Factory.class, PlainEvent.class);
+        factory.fire("a", 1);
+        int initial = defined.size();
+
+        ListenerRegistration registration = bus.registerListener(PlainEvent.Listener.class, (name, value) -> CALLS.add("lambda:" + name + value));
+        factory.fire("b", 2);
+        registration.unregister();
+        factory.fire("c", 3);
+
+        assertEquals(initial, defined.size(), defined::toString);
+        assertEquals(4, CALLS.size());
+        assertEquals("subscriber:a1", CALLS.get(0));
+        assertEquals("subscriber:b2", CALLS.get(1));
+        assertEquals("lambda:b2", CALLS.get(2));
+        assertEquals("subscriber:c3", CALLS.get(3));
+    }
+
+    @Test
+    public void testWithoutDefineClass() {
+        // Classes for these events were generated by the annotation processor, every bus shares them.
+        for (int i = 0; i < 2; i++) {
+            EventBus bus = new EventBusImpl(new TestEnvironment() {
+                @Override
+                public Class<?> defineClass(String cName, byte[] bytes) {
+                    throw new UnsupportedOperationException("Unable to define " + cName);
+                }
+
+                @Override
+                public DispatchBackend getDispatchBackend() {
+                    return DispatchBackend.METHOD_HANDLE;
+                }
+            });
+            CALLS.clear();
+            bus.register(MethodHandleDispatchTest.class);
+            bus.registerListener(ValueEvent.class, e -> e.setValue(e.getValue() * 10));
+            bus.registerListener(ReusedEvent.class, e -> CALLS.add("reused:" + e.getValue()));
+
+            bus.constructFactory(PlainEvent.Factory.class, PlainEvent.class).fire("a", 1);
+            assertEquals(20, bus.constructFactory(ValueEvent.Factory.class, ValueEvent.class).fire(2).getValue());
+            bus.constructFactory(ReusedEvent.Factory.class, ReusedEvent.class).fire(3);
+
+            assertEquals(2, CALLS.size());
+            assertEquals("subscriber:a1", CALLS.get(0));
+            assertEquals("reused:3", CALLS.get(1));
+        }
+    }
+
+    @Test
+    public void testFreeze() {
+        EventBus bus = new EventBusImpl(withExecutor(Runnable::run, new ArrayList<>()));
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(PlainEvent.Listener.class, (name, value) -> calls.add(name + value));
+        PlainEvent.Factory factory = bus.constructFactory(PlainEvent.Factory.class, PlainEvent.class);
+        bus.freeze();
+
+        factory.fire("a", 1);
+        assertEquals(1, calls.size());
+        assertEquals("a1", calls.get(0));
+        assertThrows(IllegalStateException.class, () -> bus.registerListener(PlainEvent.Listener.class, (name, value) -> { }));
+    }
+
+    @SubscribeEvent (PlainEvent.class)
+    public static void onPlain(String name, int value) {
+        CALLS.add("subscriber:" + name + value);
+    }
+
+    private static TestEnvironment withExecutor(Executor executor, List<String> defined) {
+        return new TestEnvironment() {
+            @Override
+            public Class<?> defineClass(String cName, byte[] bytes) {
+                defined.add(cName);
+                return super.defineClass(cName, bytes);
+            }
+
+            @Override
+            public DispatchBackend getDispatchBackend() {
+                return DispatchBackend.METHOD_HANDLE;
+            }
+
+            @Override
+            public Executor getAsyncExecutor() {
+                return executor;
+            }
+        };
+    }
+
+    public interface PlainEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(String name, int value);
+        }
+    }
+
+    public interface ValueEvent extends CancelableEvent {
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract ValueEvent fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+
+        interface CancelingListener extends EventListener {
+
+            boolean fire(int value);
+        }
+    }
+
+    @ShortCircuit (Result.DENY)
+    public interface DecisionEvent extends ResultEvent {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract Result fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            Result fire(int value);
+        }
+    }
+
+    @ReuseEventInstance
+    public interface ReusedEvent extends Event {
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract ReusedEvent fire(int value);
+        }
+    }
+
+    public interface AsyncEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract CompletableFuture<Void> fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+
+    public interface GenEvent<T> extends GenericEvent<T> {
+
+        T getObject();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(Type genericType, Object object);
+        }
+    }
+}
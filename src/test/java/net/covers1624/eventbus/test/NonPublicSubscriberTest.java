@@ -0,0 +1,178 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import net.covers1624.eventbus.util.AccessibleClassLoader;
+import net.covers1624.eventbus.util.ThreadContextClassLoader;
+import org.junit.jupiter.api.Test;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class NonPublicSubscriberTest extends TestBase {
+
+    private static final List<String> CALLS = new ArrayList<>();
+
+    @Test
+    public void testLookup() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        bus.register(Subscriber.LOOKUP, new Subscriber("a"));
+        bus.register(Subscriber.LOOKUP, Subscriber.class);
+        CALLS.clear();
+        bus.constructFactory(PrivateEvent.Factory.class, PrivateEvent.class).fire(1);
+
+        assertEquals(6, CALLS.size());
+        assertEquals("static:1", CALLS.get(0));
+        assertEquals("a:private:1", CALLS.get(1));
+        assertEquals("a:package:1", CALLS.get(2));
+        assertEquals("a:protected:1", CALLS.get(3));
+        assertTrue(CALLS.subList(4, 6).containsAll(Arrays.asList("a:consumer:1", "a:public:1")), CALLS::toString);
+    }
+
+    @Test
+    public void testNoLookup() {
+        // Without a lookup, non-public methods are ignored.
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        bus.register(new Subscriber("a"));
+        bus.register(Subscriber.class);
+        CALLS.clear();
+        bus.constructFactory(PrivateEvent.Factory.class, PrivateEvent.class).fire(2);
+
+        assertEquals(1, CALLS.size());
+        assertEquals("a:public:2", CALLS.get(0));
+    }
+
+    @Test
+    public void testUnregister() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        ListenerRegistration registration = bus.register(Subscriber.LOOKUP, new Subscriber("a"));
+        PrivateEvent.Factory factory = bus.constructFactory(PrivateEvent.Factory.class, PrivateEvent.class);
+        CALLS.clear();
+        factory.fire(3);
+        registration.unregister();
+        factory.fire(4);
+
+        assertEquals(5, CALLS.size());
+        assertTrue(CALLS.stream().allMatch(e -> e.endsWith(":3")), CALLS::toString);
+    }
+
+    @Test
+    public void testInvokerShared() {
+        AtomicInteger defined = new AtomicInteger();
+        EventBus bus = new EventBusImpl(new TestEnvironment() {
+            @Override
+            public Class<?> defineClass(String cName, byte[] bytes) {
+                if (cName.startsWith(SharedSubscriber.class.getName() + "$$Invoker")) {
+                    defined.incrementAndGet();
+                }
+                return super.defineClass(cName, bytes);
+            }
+        });
+        for (int i = 0; i < 3; i++) {
+            bus.register(SharedSubscriber.LOOKUP, new SharedSubscriber(String.valueOf(i)));
+        }
+        CALLS.clear();
+        bus.constructFactory(PrivateEvent.Factory.class, PrivateEvent.class).fire(5);
+
+        assertEquals(3, CALLS.size());
+        assertTrue(CALLS.containsAll(Arrays.asList("0:shared:5", "1:shared:5", "2:shared:5")), CALLS::toString);
+        // One class for the method, not one per instance. Java 15+ defines hidden classes, not through the environment.
+        assertTrue(defined.get() <= 1, () -> "Defined " + defined.get() + " invoker classes.");
+    }
+
+    @Test
+    public void testSeparateClassLoaders() {
+        // Invokers defined for one environment can't be seen by dispatchers defined in another's class loader.
+        for (int i = 0; i < 2; i++) {
+            AccessibleClassLoader cl = new ThreadContextClassLoader();
+            EventBus bus = new EventBusImpl(new TestEnvironment() {
+                @Override
+                public Class<?> defineClass(String cName, byte[] bytes) {
+                    return cl.defineClass(cName, bytes);
+                }
+            });
+            bus.register(SharedSubscriber.LOOKUP, new SharedSubscriber(String.valueOf(i)));
+            CALLS.clear();
+            bus.constructFactory(PrivateEvent.Factory.class, PrivateEvent.class).fire(6);
+
+            assertEquals(1, CALLS.size());
+            assertEquals(i + ":shared:6", CALLS.get(0));
+        }
+    }
+
+    public static class SharedSubscriber {
+
+        private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+        private final String name;
+
+        private SharedSubscriber(String name) {
+            this.name = name;
+        }
+
+        @SubscribeEvent (PrivateEvent.class)
+        private void onShared(int value) {
+            CALLS.add(name + ":shared:" + value);
+        }
+    }
+
+    public static class Subscriber {
+
+        // Must be the subscriber's own lookup, nested classes compiled for Java 8 are not nestmates.
+        private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+        private final String name;
+
+        private Subscriber(String name) {
+            this.name = name;
+        }
+
+        @SubscribeEvent (value = PrivateEvent.class, priority = EventPriority.HIGHEST)
+        private static void onStatic(int value) {
+            CALLS.add("static:" + value);
+        }
+
+        @SubscribeEvent (value = PrivateEvent.class, priority = EventPriority.HIGH)
+        private void onPrivate(int value) {
+            CALLS.add(name + ":private:" + value);
+        }
+
+        @SubscribeEvent (PrivateEvent.class)
+        void onPackage(int value) {
+            CALLS.add(name + ":package:" + value);
+        }
+
+        @SubscribeEvent (value = PrivateEvent.class, priority = EventPriority.LOW)
+        protected void onProtected(int value) {
+            CALLS.add(name + ":protected:" + value);
+        }
+
+        @SubscribeEvent (priority = EventPriority.LOWEST)
+        private void onConsumer(PrivateEvent event) {
+            CALLS.add(name + ":consumer:" + event.getValue());
+        }
+
+        @SubscribeEvent (priority = EventPriority.LOWEST)
+        public void onPublic(PrivateEvent event) {
+            CALLS.add(name + ":public:" + event.getValue());
+        }
+    }
+
+    public interface PrivateEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+    }
+}
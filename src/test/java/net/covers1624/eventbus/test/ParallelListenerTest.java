@@ -0,0 +1,172 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class ParallelListenerTest extends TestBase {
+
+    private static final Set<String> THREADS = ConcurrentHashMap.newKeySet();
+    private static final AtomicInteger NORMAL = new AtomicInteger();
+    private static final List<Integer> AFTER = Collections.synchronizedList(new ArrayList<>());
+    private static CountDownLatch latch;
+
+    @Test
+    public void testConcurrentTier() {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        // Generated classes resolve through the context class loader, which pool workers must share.
+        ForkJoinPool pool = new ForkJoinPool(2, p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setContextClassLoader(cl);
+            return thread;
+        }, null, false);
+        try {
+            EventBus bus = new EventBusImpl(withPool(pool));
+            THREADS.clear();
+            NORMAL.set(0);
+            AFTER.clear();
+            // Both listeners must run at the same time to release the latch.
+            latch = new CountDownLatch(2);
+            bus.register(ParallelListenerTest.class);
+            ValueEvent.Factory factory = bus.constructFactory(ValueEvent.Factory.class, ValueEvent.class);
+
+            factory.fire(1);
+            assertEquals(2, THREADS.size());
+            assertEquals(2, NORMAL.get());
+            // The next tier only runs once the parallel tier has completed.
+            assertEquals(1, AFTER.size());
+            assertEquals(2, AFTER.get(0));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelEvent() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        Set<Integer> calls = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 100; i++) {
+            int idx = i;
+            bus.registerListener(ParallelEvent.Listener.class, value -> calls.add(value * 1000 + idx));
+            bus.registerListener(ParallelEvent.class, e -> calls.add(e.getValue() * 1000 + idx + 100));
+        }
+        bus.registerListener(ParallelEvent.class, EventPriority.LOW, e -> calls.add(-1));
+        ParallelEvent.Factory factory = bus.constructFactory(ParallelEvent.Factory.class, ParallelEvent.class);
+
+        factory.fire(1);
+        assertEquals(201, calls.size());
+        for (int i = 0; i < 200; i++) {
+            assertTrue(calls.contains(1000 + i));
+        }
+    }
+
+    @Test
+    public void testExceptional() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        AtomicInteger calls = new AtomicInteger();
+        bus.registerListener(ParallelEvent.Listener.class, value -> calls.incrementAndGet());
+        bus.registerListener(ParallelEvent.Listener.class, value -> {
+            throw new IllegalStateException("Listener failed.");
+        });
+        bus.registerListener(ParallelEvent.Listener.class, value -> calls.incrementAndGet());
+        ParallelEvent.Factory factory = bus.constructFactory(ParallelEvent.Factory.class, ParallelEvent.class);
+
+        assertThrows(IllegalStateException.class, () -> factory.fire(1));
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void testCancelWithinTier() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(ParallelCancelableEvent.class, e -> e.setCanceled(true));
+        bus.registerListener(ParallelCancelableEvent.class, e -> calls.add("skipped"));
+        ParallelCancelableEvent.Factory factory = bus.constructFactory(ParallelCancelableEvent.Factory.class, ParallelCancelableEvent.class);
+
+        assertTrue(factory.fire().isCanceled());
+        // Consumers of the same tier are forked together, both observe the event. See SubscribeEvent#parallel.
+        assertEquals(1, calls.size());
+    }
+
+    @SubscribeEvent (parallel = true)
+    public static void onFirst(ValueEvent event) throws InterruptedException {
+        onParallel();
+    }
+
+    @SubscribeEvent (value = ValueEvent.class, parallel = true)
+    public static void onSecond(int value) throws InterruptedException {
+        onParallel();
+    }
+
+    @SubscribeEvent (value = ValueEvent.class, priority = EventPriority.LOW)
+    public static void onAfter(int value) {
+        AFTER.add(NORMAL.get());
+    }
+
+    private static void onParallel() throws InterruptedException {
+        THREADS.add(Thread.currentThread().getName());
+        latch.countDown();
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        NORMAL.incrementAndGet();
+    }
+
+    private static TestEnvironment withPool(ForkJoinPool pool) {
+        return new TestEnvironment() {
+            @Override
+            public ForkJoinPool getParallelPool() {
+                return pool;
+            }
+        };
+    }
+
+    public interface ValueEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+    }
+
+    @ParallelDispatch
+    public interface ParallelEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value);
+        }
+    }
+
+    @ParallelDispatch
+    public interface ParallelCancelableEvent extends CancelableEvent {
+
+        abstract class Factory extends EventFactory {
+
+            public abstract ParallelCancelableEvent fire();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package net.covers1624.eventbus.test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import net.covers1624.eventbus.Event;
+import net.covers1624.eventbus.EventBus;
+import net.covers1624.eventbus.EventFactory;
+import net.covers1624.eventbus.EventListener;
+import net.covers1624.eventbus.ParameterNameSource;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import net.covers1624.eventbus.internal.ParamIndex;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class ParamIndexTest extends TestBase {
+
+    @Test
+    public void testReadWrite() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        ParamIndex.write(bos, ImmutableMap.of(
+                "a.A", ImmutableMap.of("fire(IJ)V", ImmutableList.of("value", "time")),
+                "a.B", ImmutableMap.of("fire(I)V", ImmutableList.of("value"))
+        ));
+        // Concatenated, as if merged into a single jar.
+        ParamIndex.write(bos, ImmutableMap.of(
+                "a.A", ImmutableMap.of("other()V", ImmutableList.of())
+        ));
+
+        Map<String, Map<String, List<String>>> index = new HashMap<>();
+        ParamIndex.read(new ByteArrayInputStream(bos.toByteArray()), index);
+
+        assertEquals(2, index.size());
+        assertEquals(ImmutableList.of("value", "time"), index.get("a.A").get("fire(IJ)V"));
+        assertEquals(ImmutableList.of(), index.get("a.A").get("other()V"));
+        assertEquals(ImmutableList.of("value"), index.get("a.B").get("fire(I)V"));
+    }
+
+    @Test
+    public void testIndexUsed() {
+        assertNotNull(TestBase.class.getResource(ParamIndex.RESOURCE));
+
+        // Only the index is available, no class bytes or per-class files.
+        List<String> lookups = new ArrayList<>();
+        EventBus bus = new EventBusImpl(new TestEnvironment() {
+            @Override
+            public @Nullable InputStream getResourceStream(String resource) {
+                lookups.add(resource);
+                if (!resource.equals(ParamIndex.RESOURCE)) return null;
+                return super.getResourceStream(resource);
+            }
+        });
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(IndexedEvent.Listener.class, (value, name) -> calls.add(name + ":" + value));
+        bus.constructFactory(IndexedEvent.Factory.class, IndexedEvent.class).fire("a", 1);
+
+        assertEquals(1, calls.size());
+        assertEquals("a:1", calls.get(0));
+        assertEquals(1, lookups.stream().filter(ParamIndex.RESOURCE::equals).count());
+        assertTrue(lookups.stream().noneMatch(e -> e.endsWith(".params") || e.endsWith(".class")), lookups::toString);
+    }
+
+    @Test
+    public void testClassParamsWithoutIndex() {
+        // An environment which never sees the index, such as one only able to return a single copy of it.
+        List<String> lookups = new ArrayList<>();
+        EventBus bus = new EventBusImpl(new TestEnvironment() {
+            @Override
+            public @Nullable InputStream getResourceStream(String resource) {
+                lookups.add(resource);
+                if (!resource.endsWith(".params")) return null;
+                return super.getResourceStream(resource);
+            }
+        });
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(IndexedEvent.Listener.class, (value, name) -> calls.add(name + ":" + value));
+        bus.constructFactory(IndexedEvent.Factory.class, IndexedEvent.class).fire("a", 1);
+
+        assertEquals(1, calls.size());
+        assertEquals("a:1", calls.get(0));
+        assertTrue(lookups.stream().noneMatch(e -> e.endsWith(".class")), lookups::toString);
+        assertTrue(lookups.contains("/META-INF/eventbus/" + IndexedEvent.Listener.class.getName() + ".params"), lookups::toString);
+        assertEquals(0, bus.getParameterNameStats().getHits(ParameterNameSource.REFLECTION));
+    }
+
+    public interface IndexedEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name, int value);
+        }
+
+        interface Listener extends EventListener {
+
+            void fire(int value, String name);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+import org.objectweb.asm.AnnotationVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class ParameterNameSourceTest extends TestBase {
+
+    private static final List<String> CALLS = new ArrayList<>();
+
+    // Compiled with -parameters, and without debug information.
+    private static final Class<?> REFLECTED = WITH_RESOURCES.defineClass("net.covers1624.eventbus.test.ReflectedListener", generateReflected());
+
+    @Test
+    public void testReflection() throws ReflectiveOperationException {
+        EventBus bus = new EventBusImpl(withSources(ParameterNameSource.ANNOTATION, ParameterNameSource.METADATA, ParameterNameSource.REFLECTION));
+        bus.register(REFLECTED.getConstructor().newInstance());
+        CALLS.clear();
+        bus.constructFactory(SourceEvent.Factory.class, SourceEvent.class).fire("a", 1);
+
+        assertEquals(1, CALLS.size());
+        assertEquals("reflected:1", CALLS.get(0));
+
+        ParameterNameStats stats = bus.getParameterNameStats();
+        // The listener method, missing from the metadata.
+        assertEquals(1, stats.getHits(ParameterNameSource.REFLECTION));
+        // The factory method, resolved from metadata.
+        assertEquals(1, stats.getHits(ParameterNameSource.METADATA));
+        assertEquals(1, stats.getMisses(ParameterNameSource.METADATA));
+        assertEquals(2, stats.getMisses(ParameterNameSource.ANNOTATION));
+        assertEquals(0, stats.getHits(ParameterNameSource.BYTECODE) + stats.getMisses(ParameterNameSource.BYTECODE));
+    }
+
+    @Test
+    public void testOrder() {
+        EventBus bus = new EventBusImpl(withSources(ParameterNameSource.BYTECODE, ParameterNameSource.METADATA));
+        bus.register(SourceListener.class);
+        CALLS.clear();
+        bus.constructFactory(SourceEvent.Factory.class, SourceEvent.class).fire("a", 2);
+
+        assertEquals(1, CALLS.size());
+        assertEquals("a:2", CALLS.get(0));
+
+        ParameterNameStats stats = bus.getParameterNameStats();
+        // The listener method, tried first.
+        assertEquals(1, stats.getHits(ParameterNameSource.BYTECODE));
+        // Abstract factory methods have no local variable table.
+        assertEquals(1, stats.getMisses(ParameterNameSource.BYTECODE));
+        assertEquals(1, stats.getHits(ParameterNameSource.METADATA));
+        assertEquals(0, stats.getHits(ParameterNameSource.ANNOTATION) + stats.getMisses(ParameterNameSource.ANNOTATION));
+        assertEquals(0, stats.getHits(ParameterNameSource.REFLECTION) + stats.getMisses(ParameterNameSource.REFLECTION));
+    }
+
+    public static void record(String call) {
+        CALLS.add(call);
+    }
+
+    private static TestEnvironment withSources(ParameterNameSource... sources) {
+        return new TestEnvironment() {
+            @Override
+            public @Nullable InputStream getResourceStream(String resource) {
+                // No subscriber indexes, the listener parameters must be resolved.
+                if (resource.endsWith(".subscribers")) return null;
+                return super.getResourceStream(resource);
+            }
+
+            @Override
+            public List<ParameterNameSource> getParameterNameSources() {
+                return Arrays.asList(sources);
+            }
+        };
+    }
+
+    private static byte[] generateReflected() {
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(V1_8, ACC_PUBLIC | ACC_SUPER, "net/covers1624/eventbus/test/ReflectedListener", null, "java/lang/Object", null);
+
+        MethodVisitor ctor = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        ctor.visitCode();
+        ctor.visitVarInsn(ALOAD, 0);
+        ctor.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        ctor.visitInsn(RETURN);
+        ctor.visitMaxs(0, 0);
+        ctor.visitEnd();
+
+        MethodVisitor mv = cw.visitMethod(ACC_PUBLIC, "onEvent", "(I)V", null, null);
+        mv.visitParameter("value", 0);
+        AnnotationVisitor av = mv.visitAnnotation(Type.getDescriptor(SubscribeEvent.class), true);
+        AnnotationVisitor value = av.visitArray("value");
+        value.visit(null, Type.getType(SourceEvent.class));
+        value.visitEnd();
+        av.visitEnd();
+        mv.visitCode();
+        mv.visitTypeInsn(NEW, "java/lang/StringBuilder");
+        mv.visitInsn(DUP);
+        mv.visitLdcInsn("reflected:");
+        mv.visitMethodInsn(INVOKESPECIAL, "java/lang/StringBuilder", "<init>", "(Ljava/lang/String;)V", false);
+        mv.visitVarInsn(ILOAD, 1);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "append", "(I)Ljava/lang/StringBuilder;", false);
+        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/StringBuilder", "toString", "()Ljava/lang/String;", false);
+        mv.visitMethodInsn(INVOKESTATIC, Type.getInternalName(ParameterNameSourceTest.class), "record", "(Ljava/lang/String;)V", false);
+        mv.visitInsn(RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    public static class SourceListener {
+
+        @SubscribeEvent (SourceEvent.class)
+        public static void onEvent(String name, int value) {
+            record(name + ":" + value);
+        }
+    }
+
+    public interface SourceEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(String name, int value);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package net.covers1624.eventbus.test;
+
+import com.google.common.io.ByteStreams;
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import net.covers1624.eventbus.util.AccessibleClassLoader;
+import org.jetbrains.annotations.Nullable;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class PluginUnloadTest extends TestBase {
+
+    @Test
+    public void testPluginUnloaded() throws Throwable {
+        WeakReference<ClassLoader> pluginLoader = runPlugin();
+
+        for (int i = 0; i < 50 && pluginLoader.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(pluginLoader.get(), "Plugin class loader was not unloaded.");
+    }
+
+    // Kept separate, so nothing on the test's stack references the plugin.
+    private static WeakReference<ClassLoader> runPlugin() throws Throwable {
+        PluginClassLoader pluginLoader = new PluginClassLoader();
+        AccessibleClassLoader generatedLoader = new AccessibleClassLoader(pluginLoader);
+        EventBus bus = new EventBusImpl(new TestEnvironment() {
+            @Override
+            public @Nullable InputStream getResourceStream(String resource) {
+                return pluginLoader.getResourceAsStream(resource.substring(1));
+            }
+
+            @Override
+            public Class<?> defineClass(String cName, byte[] bytes) {
+                return generatedLoader.defineClass(cName, bytes);
+            }
+        });
+
+        Method run = pluginLoader.loadClass(Plugin.class.getName()).getMethod("run", EventBus.class);
+        assertNotSame(Plugin.class, run.getDeclaringClass());
+        assertEquals("static:1,lambda:1,instance:1,lambda:2,instance:2", run.invoke(null, bus));
+        return new WeakReference<>(pluginLoader);
+    }
+
+    // Loads everything within Plugin itself, delegating all other classes.
+    private static class PluginClassLoader extends ClassLoader {
+
+        public PluginClassLoader() {
+            super(PluginUnloadTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (!name.startsWith(Plugin.class.getName())) return super.loadClass(name, resolve);
+
+            synchronized (getClassLoadingLock(name)) {
+                Class<?> clazz = findLoadedClass(name);
+                if (clazz != null) return clazz;
+
+                try (InputStream is = getParent().getResourceAsStream(name.replace('.', '/') + ".class")) {
+                    if (is == null) throw new ClassNotFoundException(name);
+                    byte[] bytes = ByteStreams.toByteArray(is);
+                    return defineClass(name, bytes, 0, bytes.length);
+                } catch (IOException ex) {
+                    throw new ClassNotFoundException(name, ex);
+                }
+            }
+        }
+    }
+
+    public static class Plugin {
+
+        private static final List<String> CALLS = new ArrayList<>();
+
+        public static String run(EventBus bus) {
+            ListenerRegistration registration = bus.register(Plugin.class);
+            bus.register(new Plugin());
+            bus.registerListener(PluginEvent.Listener.class, value -> CALLS.add("lambda:" + value));
+            PluginEvent.Factory factory = bus.constructFactory(PluginEvent.Factory.class, PluginEvent.class);
+            factory.fire(1);
+            registration.unregister();
+            bus.freeze();
+            factory.fire(2);
+            return String.join(",", CALLS);
+        }
+
+        @SubscribeEvent (PluginEvent.class)
+        public static void onStatic(int value) {
+            CALLS.add("static:" + value);
+        }
+
+        @SubscribeEvent (priority = EventPriority.LOW)
+        public void onInstance(PluginEvent event) {
+            CALLS.add("instance:" + event.getValue());
+        }
+
+        @ReuseEventInstance
+        public interface PluginEvent extends Event {
+
+            int getValue();
+
+            abstract class Factory extends EventFactory {
+
+                public abstract void fire(int value);
+            }
+
+            interface Listener extends EventListener {
+
+                void fire(int value);
+            }
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.ResultEvent.Result;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class ResultEventTest extends TestBase {
+
+    @Test
+    public void testLastWins() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(AnyEvent.Listener.class, EventPriority.HIGH, value -> {
+            calls.add("deny");
+            return Result.DENY;
+        });
+        bus.registerListener(AnyEvent.Listener.class, EventPriority.NORMAL, value -> {
+            calls.add("default");
+            return Result.DEFAULT;
+        });
+        bus.registerListener(AnyEvent.Listener.class, EventPriority.LOW, value -> {
+            calls.add("value");
+            return value > 0 ? Result.ALLOW : null;
+        });
+        AnyEvent.Factory factory = bus.constructFactory(AnyEvent.Factory.class, AnyEvent.class);
+
+        assertEquals(Result.DENY, factory.fire(0));
+        assertEquals(3, calls.size());
+        assertEquals(Result.ALLOW, factory.fire(1));
+        assertEquals(6, calls.size());
+    }
+
+    @Test
+    public void testDefaultResult() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        bus.registerListener(AnyEvent.class, e -> assertEquals(Result.DEFAULT, e.getResult()));
+        AnyEvent.Factory factory = bus.constructFactory(AnyEvent.Factory.class, AnyEvent.class);
+
+        assertEquals(Result.DEFAULT, factory.fire(0));
+    }
+
+    @Test
+    public void testFirstDecision() {
+        doTestFirstDecision(1);
+    }
+
+    @Test
+    public void testFirstDecisionChunked() {
+        doTestFirstDecision(100);
+    }
+
+    private void doTestFirstDecision(int count) {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            bus.registerListener(FirstEvent.Listener.class, EventPriority.HIGHEST, value -> {
+                calls.add("first");
+                return null;
+            });
+            bus.registerListener(FirstEvent.Listener.class, EventPriority.HIGH, value -> value == 1 ? Result.DENY : Result.DEFAULT);
+            bus.registerListener(FirstEvent.Listener.class, EventPriority.NORMAL, value -> {
+                calls.add("fast");
+                return Result.DEFAULT;
+            });
+            bus.registerListener(FirstEvent.class, EventPriority.LOW, e -> {
+                calls.add("cons");
+                if (e.getValue() == 2) {
+                    e.setResult(Result.ALLOW);
+                }
+            });
+            bus.registerListener(FirstEvent.Listener.class, EventPriority.LOWEST, value -> {
+                calls.add("last");
+                return Result.DENY;
+            });
+        }
+        FirstEvent.Factory factory = bus.constructFactory(FirstEvent.Factory.class, FirstEvent.class);
+
+        assertEquals(Result.DENY, factory.fire(0).getResult());
+        assertEquals(count, count(calls, "first"));
+        assertEquals(count, count(calls, "fast"));
+        assertEquals(count, count(calls, "cons"));
+        assertEquals(1, count(calls, "last"));
+
+        calls.clear();
+        assertEquals(Result.DENY, factory.fire(1).getResult());
+        assertEquals(count, count(calls, "first"));
+        assertEquals(0, count(calls, "fast"));
+        assertEquals(0, count(calls, "cons"));
+        assertEquals(0, count(calls, "last"));
+
+        calls.clear();
+        assertEquals(Result.ALLOW, factory.fire(2).getResult());
+        assertEquals(count, count(calls, "first"));
+        assertEquals(count, count(calls, "fast"));
+        assertEquals(1, count(calls, "cons"));
+        assertEquals(0, count(calls, "last"));
+    }
+
+    @Test
+    public void testVeto() {
+        doTestVeto(1);
+    }
+
+    @Test
+    public void testVetoChunked() {
+        doTestVeto(100);
+    }
+
+    private void doTestVeto(int count) {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            bus.registerListener(VetoEvent.Listener.class, EventPriority.HIGH, value -> {
+                calls.add("allow");
+                return Result.ALLOW;
+            });
+            bus.registerListener(VetoEvent.Listener.class, EventPriority.NORMAL, value -> value > 0 ? Result.DENY : null);
+            bus.registerListener(VetoEvent.Listener.class, EventPriority.LOW, value -> {
+                calls.add("after");
+                return null;
+            });
+        }
+        VetoEvent.Factory factory = bus.constructFactory(VetoEvent.Factory.class, VetoEvent.class);
+
+        assertEquals(Result.ALLOW, factory.fire(0, Result.DEFAULT));
+        assertEquals(count, count(calls, "allow"));
+        assertEquals(count, count(calls, "after"));
+
+        calls.clear();
+        assertEquals(Result.DENY, factory.fire(1, Result.DEFAULT));
+        assertEquals(count, count(calls, "allow"));
+        assertEquals(0, count(calls, "after"));
+
+        // Already vetoed by the factory.
+        calls.clear();
+        assertEquals(Result.DENY, factory.fire(0, Result.DENY));
+        assertEquals(0, calls.size());
+    }
+
+    @Test
+    public void testCancelableResult() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> calls = new ArrayList<>();
+        bus.registerListener(CancelableResultEvent.CancelingListener.class, EventPriority.HIGHEST, value -> value == 1);
+        bus.registerListener(CancelableResultEvent.Listener.class, EventPriority.HIGH, value -> {
+            calls.add("result");
+            return value == 2 ? Result.ALLOW : null;
+        });
+        bus.registerListener(CancelableResultEvent.Listener.class, EventPriority.NORMAL, true, value -> {
+            calls.add("receive");
+            return null;
+        });
+        CancelableResultEvent.Factory factory = bus.constructFactory(CancelableResultEvent.Factory.class, CancelableResultEvent.class);
+
+        CancelableResultEvent event = factory.fire(0);
+        assertFalse(event.isCanceled());
+        assertEquals(Result.DEFAULT, event.getResult());
+        assertEquals(2, calls.size());
+
+        calls.clear();
+        event = factory.fire(1);
+        assertTrue(event.isCanceled());
+        assertEquals(Result.DEFAULT, event.getResult());
+        assertEquals(1, calls.size());
+        assertEquals("receive", calls.get(0));
+
+        calls.clear();
+        event = factory.fire(2);
+        assertEquals(Result.ALLOW, event.getResult());
+        assertEquals(1, calls.size());
+        assertEquals("result", calls.get(0));
+    }
+
+    @Test
+    public void testResultListenerNotResultEvent() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        assertThrows(IllegalArgumentException.class, () -> bus.registerListener(PlainEvent.Listener.class, value -> Result.ALLOW));
+    }
+
+    @Test
+    public void testShortCircuitNotResultEvent() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        assertThrows(IllegalArgumentException.class, () -> bus.registerListener(NotResultEvent.class, e -> { }));
+    }
+
+    private static int count(List<String> calls, String call) {
+        return (int) calls.stream().filter(call::equals).count();
+    }
+
+    public interface AnyEvent extends ResultEvent {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract Result fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            Result fire(int value);
+        }
+    }
+
+    @ShortCircuit ({ Result.DENY, Result.ALLOW })
+    public interface FirstEvent extends ResultEvent {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract FirstEvent fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            Result fire(int value);
+        }
+    }
+
+    @FastInvokeOnly
+    @ShortCircuit (Result.DENY)
+    public interface VetoEvent extends ResultEvent {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract Result fire(int value, Result result);
+        }
+
+        interface Listener extends EventListener {
+
+            Result fire(int value);
+        }
+    }
+
+    @ShortCircuit ({ Result.DENY, Result.ALLOW })
+    public interface CancelableResultEvent extends CancelableEvent, ResultEvent {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract CancelableResultEvent fire(int value);
+        }
+
+        interface Listener extends EventListener {
+
+            Result fire(int value);
+        }
+
+        interface CancelingListener extends EventListener {
+
+            boolean fire(int value);
+        }
+    }
+
+    public interface PlainEvent extends Event {
+
+        int getValue();
+
+        interface Listener extends EventListener {
+
+            Result fire(int value);
+        }
+    }
+
+    @ShortCircuit (Result.DENY)
+    public interface NotResultEvent extends Event {
+
+        int getValue();
+    }
+}
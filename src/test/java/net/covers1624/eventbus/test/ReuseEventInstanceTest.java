@@ -0,0 +1,91 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class ReuseEventInstanceTest extends TestBase {
+
+    @Test
+    public void testReused() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<ReusedEvent> instances = new ArrayList<>();
+        List<Integer> values = new ArrayList<>();
+        bus.registerListener(ReusedEvent.class, e -> {
+            instances.add(e);
+            values.add(e.getValue());
+            e.setValue(e.getValue() * 10);
+        });
+        ReusedEvent.Factory factory = bus.constructFactory(ReusedEvent.Factory.class, ReusedEvent.class);
+
+        ReusedEvent first = factory.fire("a", 1);
+        assertEquals(10, first.getValue());
+        ReusedEvent second = factory.fire("b", 2);
+        assertSame(first, second);
+        assertEquals("b", second.getName());
+        assertEquals(20, second.getValue());
+
+        assertSame(instances.get(0), instances.get(1));
+        assertEquals(1, values.get(0));
+        assertEquals(2, values.get(1));
+    }
+
+    @Test
+    public void testReentrant() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        ReusedEvent.Factory factory = bus.constructFactory(ReusedEvent.Factory.class, ReusedEvent.class);
+        List<String> names = new ArrayList<>();
+        bus.registerListener(ReusedEvent.class, e -> {
+            if (e.getValue() > 0) {
+                ReusedEvent inner = factory.fire("inner", e.getValue() - 1);
+                assertNotSame(e, inner);
+            }
+            names.add(e.getName());
+        });
+
+        factory.fire("outer", 1);
+        assertEquals("inner", names.get(0));
+        assertEquals("outer", names.get(1));
+    }
+
+    @Test
+    public void testListenerThrows() {
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        List<String> names = new ArrayList<>();
+        bus.registerListener(ReusedEvent.class, e -> {
+            if (e.getValue() < 0) throw new IllegalArgumentException();
+            names.add(e.getName());
+        });
+        ReusedEvent.Factory factory = bus.constructFactory(ReusedEvent.Factory.class, ReusedEvent.class);
+
+        assertThrows(IllegalArgumentException.class, () -> factory.fire("a", -1));
+        factory.fire("b", 1);
+        factory.fire("c", 1);
+        assertEquals(2, names.size());
+        assertEquals("b", names.get(0));
+        assertEquals("c", names.get(1));
+    }
+
+    @ReuseEventInstance
+    public interface ReusedEvent extends Event {
+
+        String getName();
+
+        int getValue();
+
+        void setValue(int value);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract ReusedEvent fire(String name, int value);
+        }
+    }
+}
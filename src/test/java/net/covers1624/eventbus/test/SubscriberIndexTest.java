@@ -0,0 +1,117 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class SubscriberIndexTest extends TestBase {
+
+    private static final List<String> CALLS = new ArrayList<>();
+
+    @Test
+    public void testIndexed() {
+        assertNotNull(TestBase.class.getResource("/META-INF/eventbus/" + Indexed.class.getName() + ".subscribers"));
+
+        EventBus bus = new EventBusImpl(WITH_RESOURCES);
+        bus.register(new Indexed("a"));
+        bus.register(new Indexed("b"));
+        bus.register(Indexed.class);
+        CALLS.clear();
+        bus.constructFactory(IndexedEvent.Factory.class, IndexedEvent.class).fire(1);
+
+        assertEquals(5, CALLS.size());
+        assertEquals("static:1", CALLS.get(0));
+        assertEquals("a:fast:1", CALLS.get(1));
+        assertEquals("b:fast:1", CALLS.get(2));
+        assertEquals("a:consumer:1", CALLS.get(3));
+        assertEquals("b:consumer:1", CALLS.get(4));
+    }
+
+    @Test
+    public void testIndexUsed() {
+        // Not annotated, only registered via the index.
+        EventBus bus = new EventBusImpl(withIndex(Plain.class, "onValue(I)V instance fast " + IndexedEvent.class.getName() + " HIGH false false value"));
+        bus.register(new Plain());
+        CALLS.clear();
+        bus.constructFactory(IndexedEvent.Factory.class, IndexedEvent.class).fire(2);
+
+        assertEquals(1, CALLS.size());
+        assertEquals("plain:2", CALLS.get(0));
+    }
+
+    @Test
+    public void testStaleIndex() {
+        EventBus bus = new EventBusImpl(withIndex(Indexed.class, "missing(I)V instance fast " + IndexedEvent.class.getName() + " HIGH false false value"));
+        bus.register(new Indexed("a"));
+        CALLS.clear();
+        bus.constructFactory(IndexedEvent.Factory.class, IndexedEvent.class).fire(3);
+
+        assertEquals(2, CALLS.size());
+        assertEquals("a:fast:3", CALLS.get(0));
+        assertEquals("a:consumer:3", CALLS.get(1));
+    }
+
+    private static TestEnvironment withIndex(Class<?> clazz, String index) {
+        return new TestEnvironment() {
+            @Override
+            public InputStream getResourceStream(String resource) {
+                if (resource.equals("/META-INF/eventbus/" + clazz.getName() + ".subscribers")) {
+                    return new ByteArrayInputStream(index.getBytes(StandardCharsets.UTF_8));
+                }
+                return TestBase.class.getResourceAsStream(resource);
+            }
+        };
+    }
+
+    public static class Indexed {
+
+        private final String name;
+
+        public Indexed(String name) {
+            this.name = name;
+        }
+
+        @SubscribeEvent (value = IndexedEvent.class, priority = EventPriority.HIGH)
+        public void onFast(int value) {
+            CALLS.add(name + ":fast:" + value);
+        }
+
+        @SubscribeEvent (priority = EventPriority.LOW)
+        public void onConsumer(IndexedEvent event) {
+            CALLS.add(name + ":consumer:" + event.getValue());
+        }
+
+        @SubscribeEvent (value = IndexedEvent.class, priority = EventPriority.HIGHEST)
+        public static void onStatic(int value) {
+            CALLS.add("static:" + value);
+        }
+    }
+
+    public static class Plain {
+
+        public void onValue(int value) {
+            CALLS.add("plain:" + value);
+        }
+    }
+
+    public interface IndexedEvent extends Event {
+
+        int getValue();
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire(int value);
+        }
+    }
+}
@@ -25,15 +25,19 @@ public abstract class TestBase {
             return null;
         }
     };
-    public static TestEnvironment WITH_RESOURCES = new TestEnvironment() {
+    public static TestEnvironment WITH_RESOURCES = new TestEnvironment();
+
+    /**
+     * Resolves resources from the test classpath, defining classes in a shared class loader.
+     * Tests override whatever else they need.
+     */
+    public static class TestEnvironment implements Environment {
+
         @Override
         @Nullable
         public InputStream getResourceStream(String resource) {
             return TestBase.class.getResourceAsStream(resource);
         }
-    };
-
-    public static abstract class TestEnvironment implements Environment {
 
         @Override
         public Class<?> defineClass(String cName, byte[] bytes) {
@@ -0,0 +1,71 @@
+package net.covers1624.eventbus.test;
+
+import net.covers1624.eventbus.*;
+import net.covers1624.eventbus.internal.EventBusImpl;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Created by covers1624 on 18/10/26.
+ */
+public class UnregisterTest extends TestBase {
+
+    private static final EventBus BUS = new EventBusImpl(WITH_RESOURCES);
+
+    private static final AtomicInteger METHOD_CALLS = new AtomicInteger();
+
+    @Test
+    public void doTest() {
+        AtomicInteger a = new AtomicInteger();
+        AtomicInteger b = new AtomicInteger();
+        AtomicInteger c = new AtomicInteger();
+        ListenerRegistration regA = BUS.registerListener(SimpleEvent.Listener.class, a::incrementAndGet);
+        ListenerRegistration regB = BUS.registerListener(SimpleEvent.class, e -> b.incrementAndGet());
+        BUS.registerListener(SimpleEvent.Listener.class, c::incrementAndGet);
+        ListenerRegistration regMethods = BUS.register(UnregisterTest.class);
+
+        SimpleEvent.FACTORY.fire();
+        assertEquals(1, a.get());
+        assertEquals(1, b.get());
+        assertEquals(1, c.get());
+        assertEquals(1, METHOD_CALLS.get());
+
+        regA.unregister();
+        regB.unregister();
+        regMethods.unregister();
+        SimpleEvent.FACTORY.fire();
+        assertEquals(1, a.get());
+        assertEquals(1, b.get());
+        assertEquals(2, c.get());
+        assertEquals(1, METHOD_CALLS.get());
+
+        // Unregistering again does nothing.
+        regA.unregister();
+        SimpleEvent.FACTORY.fire();
+        assertEquals(1, a.get());
+        assertEquals(3, c.get());
+    }
+
+    @SubscribeEvent
+    public static void onSimpleEvent(SimpleEvent event) {
+        METHOD_CALLS.incrementAndGet();
+    }
+
+    public interface SimpleEvent extends Event {
+
+        Factory FACTORY = BUS.constructFactory(Factory.class, SimpleEvent.class);
+
+        abstract class Factory extends EventFactory {
+
+            public abstract void fire();
+        }
+
+        interface Listener extends EventListener {
+
+            void fire();
+        }
+    }
+}